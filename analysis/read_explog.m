@@ -0,0 +1,81 @@
+function Out = read_explog(filename)
+%READ_EXPLOG reads an exploration log (as written by ExplorerLogWriter) into a struct
+% with a field per column, named as csv2struct would name them (eg: Num_Tests).
+%
+% Reads .csv and binary .explog logs, either of which may be gzipped (.gz).
+% Unlike csv2struct, doesn't go through xlsread, so it copes with logs of
+% millions of rows. Older CSV logs (w/ trailing commas) can be read too.
+%
+% Winning_Control is a cell array of hex strings for CSV logs; binary logs
+% instead give Winning_Control_Hi & Winning_Control_Lo as int64 columns.
+% For a log rotated into parts, read each part & concatenate the fields.
+
+[~, ~, ext] = fileparts(filename);
+tmpDir = '';
+if strcmpi(ext, '.gz')
+    tmpDir = tempname;
+    files = gunzip(filename, tmpDir);
+    filename = files{1};
+    [~, ~, ext] = fileparts(filename);
+end
+
+if strcmpi(ext, '.explog')
+    Out = read_binary(filename);
+else
+    Out = read_csv(filename);
+end
+
+if ~isempty(tmpDir), rmdir(tmpDir, 's'); end
+end
+
+function Out = read_csv(filename)
+fid = fopen(filename, 'r');
+header = strtrim(strsplit(fgetl(fid), ','));
+format = '';
+for c = 1:numel(header)
+    if strcmp(header{c}, 'Winning Control'), format = [format '%s'];
+    else format = [format '%f']; end
+end
+data = textscan(fid, format, 'Delimiter', ',');
+fclose(fid);
+
+for c = 1:numel(header)
+    if isempty(header{c}), continue; end   %trailing comma of older logs
+    Out.(field_name(header{c})) = data{c};
+end
+end
+
+function Out = read_binary(filename)
+fid = fopen(filename, 'r', 'ieee-be');
+if fread(fid, 1, 'int32') ~= hex2dec('484C4F47')
+    fclose(fid);
+    error('read_explog:format', 'Not an exploration log: %s', filename);
+end
+version = fread(fid, 1, 'int32');
+if version ~= 1
+    fclose(fid);
+    error('read_explog:version', 'Unsupported exploration log version %d: %s', version, filename);
+end
+nCol = fread(fid, 1, 'int32');
+header = cell(1, nCol);
+for c = 1:nCol
+    len = fread(fid, 1, 'uint16');
+    header{c} = fread(fid, [1 len], 'uint8=>char');
+end
+data = fread(fid, [nCol Inf], 'int64=>int64')';
+fclose(fid);
+
+for c = 1:nCol
+    if strncmp(header{c}, 'Winning Control', 15)
+        Out.(field_name(header{c})) = data(:, c);
+    else
+        Out.(field_name(header{c})) = double(data(:, c));
+    end
+end
+end
+
+function name = field_name(column)
+name = strtrim(column);
+name(name==' ') = '_';
+name = genvarname(name);
+end
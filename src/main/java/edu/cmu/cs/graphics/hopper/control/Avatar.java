@@ -1,5 +1,6 @@
 package edu.cmu.cs.graphics.hopper.control;
 
+import edu.cmu.cs.graphics.hopper.problems.ContactIndex;
 import org.jbox2d.callbacks.DebugDraw;
 import org.jbox2d.common.Color3f;
 import org.jbox2d.common.Vec2;
@@ -41,6 +42,10 @@ public abstract class Avatar<C extends Control> {
     /** Returns a deep copy of the current state of this avatar as a POJO, suitable for serializing to JSON */
     public abstract Object getState();
 
+    /** Registers listeners for contacts involving specific bodies of this avatar (called once the avatar & its world
+     * have been initialized). Preferred over onBeginContact/onEndContact, which hear about every contact. */
+    public void registerContactListeners(ContactIndex contacts) {}
+
     /** Runs any responsive logic for this avatar when a contact occurs during simulation */
     public void onBeginContact(Contact contact) {}
     public void onEndContact(Contact contact) {}
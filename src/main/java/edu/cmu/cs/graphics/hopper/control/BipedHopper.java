@@ -1,6 +1,7 @@
 package edu.cmu.cs.graphics.hopper.control;
 
 import edu.cmu.cs.graphics.hopper.VecUtils;
+import edu.cmu.cs.graphics.hopper.problems.ContactIndex;
 import org.jbox2d.callbacks.DebugDraw;
 import org.jbox2d.collision.shapes.CircleShape;
 import org.jbox2d.collision.shapes.PolygonShape;
@@ -410,32 +411,35 @@ public class BipedHopper extends Avatar<BipedHopperControl> {
     }
 
     @Override
-    public void onBeginContact(Contact contact) {
-        //Start "in contact with ground" status if applicable
-        Body groundContactBody = getGroundContactBody();
-        Body bodyA = contact.getFixtureA().getBody();
-        Body bodyB = contact.getFixtureB().getBody();
-
-        if (bodyA == groundContactBody || bodyB == groundContactBody)
-            setFootInContact(true);
-
-        if (bodyA == m_chassis || bodyB == m_chassis)
-            setChassisInContact(true);
-    }
-
-    @Override
-    public void onEndContact(Contact contact) {
-        //End "in contact with ground" status if applicable
+    public void registerContactListeners(ContactIndex contacts) {
+        //Track "in contact with ground" status of the active leg's foot (either foot may be active at the time of contact)
+        ContactIndex.Listener footListener = new ContactIndex.Listener() {
+            @Override
+            public void onBeginContact(Contact contact, Body body, Body other) {
+                if (body == getGroundContactBody())
+                    setFootInContact(true);
+            }
 
-        Body groundContactBody = getGroundContactBody();
-        Body bodyA = contact.getFixtureA().getBody();
-        Body bodyB = contact.getFixtureB().getBody();
+            @Override
+            public void onEndContact(Contact contact, Body body, Body other) {
+                if (body == getGroundContactBody())
+                    setFootInContact(false);
+            }
+        };
+        for (int i = 0; i < NUM_LEGS; i++)
+            contacts.register(m_foot[i], null, footListener);
 
-        if (bodyA == groundContactBody || bodyB == groundContactBody)
-            setFootInContact(false);
+        contacts.register(m_chassis, null, new ContactIndex.Listener() {
+            @Override
+            public void onBeginContact(Contact contact, Body body, Body other) {
+                setChassisInContact(true);
+            }
 
-        if (bodyA == m_chassis || bodyB == m_chassis)
-            setChassisInContact(false);
+            @Override
+            public void onEndContact(Contact contact, Body body, Body other) {
+                setChassisInContact(false);
+            }
+        });
     }
 
     protected void swapActiveLeg() {
@@ -463,8 +467,9 @@ public class BipedHopper extends Avatar<BipedHopperControl> {
         //Retract idle leg, lengthen active for landing
         //(to make this gradual, use lerp on current value (hacky, but seems to work well))
         float alpha = Math.min(1.0f, 5.0f * dt);
+        BipedHopperControl control = m_controlProvider.getCurrControl();
 
-        float idleLegTerminalLength = UPPER_LEG_DEFAULT_LENGTH + m_controlProvider.getCurrControl().idleThrustDelta;
+        float idleLegTerminalLength = UPPER_LEG_DEFAULT_LENGTH + control.idleThrustDelta;
         float activeLegTerminalLength = UPPER_LEG_DEFAULT_LENGTH;
 
 //        if (NUM_LEGS > 1)
@@ -478,8 +483,8 @@ public class BipedHopper extends Avatar<BipedHopperControl> {
 
         /////// ANGLE /////////////////////////////////////////////////////////////////////////////
         //Set leg position using hip based on desired landing location
-        float deltaFromTargetVel = m_bodyVel.x - m_controlProvider.getCurrControl().targetBodyVelX;
-        float desiredLandingOffsetX = (0.5f * m_bodyVel.x * m_nextStancePeriodEst) + (m_controlProvider.getCurrControl().targetBodyVelXLegPlacementGain * deltaFromTargetVel);
+        float deltaFromTargetVel = m_bodyVel.x - control.targetBodyVelX;
+        float desiredLandingOffsetX = (0.5f * m_bodyVel.x * m_nextStancePeriodEst) + (control.targetBodyVelXLegPlacementGain * deltaFromTargetVel);
 
         //Bound to some reasonable range
         float maxAllowedOffsetX = 0.5f * activeLegTerminalLength;
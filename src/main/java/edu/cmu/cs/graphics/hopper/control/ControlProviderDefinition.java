@@ -1,5 +1,7 @@
 package edu.cmu.cs.graphics.hopper.control;
 
+import edu.cmu.cs.graphics.hopper.math.Fingerprint;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -8,8 +10,17 @@ import java.util.List;
 public class ControlProviderDefinition<C extends Control> {
     public final List<C> controls;
 
+    //Computed on first use (not serialized, so entries saved before fingerprints existed load fine)
+    private transient volatile Fingerprint fingerprint;
+
+    @SuppressWarnings("unchecked")
     public ControlProviderDefinition(List<C> controls) {
-        this.controls = Collections.unmodifiableList(new ArrayList<C>(controls));
+        //Copy controls, so that later changes to the given ones (eg: by a provider) can't alter this definition
+        //(duplicate() returns a control of the same class)
+        List<C> copies = new ArrayList<C>(controls.size());
+        for (C control : controls)
+            copies.add((C)control.duplicate());
+        this.controls = Collections.unmodifiableList(copies);
     }
 
     public ControlProvider<C> create() {
@@ -19,6 +30,23 @@ public class ControlProviderDefinition<C extends Control> {
         return provider;
     }
 
+    /** Returns values of all controls in the sequence, in order (as ControlProvider.toNumericArray() does) */
+    public float[] toNumericArray() {
+        int numVals = 0;
+        float[][] controlVals = new float[controls.size()][];
+        for (int i = 0; i < controls.size(); i++) {
+            controlVals[i] = controls.get(i).toNumericArray();
+            numVals += controlVals[i].length;
+        }
+        float[] vals = new float[numVals];
+        int valIdx = 0;
+        for (float[] c : controlVals) {
+            System.arraycopy(c, 0, vals, valIdx, c.length);
+            valIdx += c.length;
+        }
+        return vals;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -26,13 +54,32 @@ public class ControlProviderDefinition<C extends Control> {
 
         ControlProviderDefinition that = (ControlProviderDefinition) o;
 
-        if (!controls.equals(that.controls)) return false;
-
-        return true;
+        //Compare cached fingerprints rather than walking the control lists
+        return getFingerprint().equals(that.getFingerprint());
     }
 
     @Override
     public int hashCode() {
-        return controls.hashCode();
+        return getFingerprint().hashCode();
+    }
+
+    /** Returns a stable 128-bit fingerprint of this sequence's control types & values (computed once, then cached) */
+    public Fingerprint getFingerprint() {
+        Fingerprint result = fingerprint;
+        if (result == null) {
+            Fingerprint.Hasher hasher = new Fingerprint.Hasher();
+            hasher.add(controls.size());
+            for (int i = 0; i < controls.size(); i++) {
+                Control control = controls.get(i);
+                hasher.add(control.getClass().getName());
+                float[] vals = control.toNumericArray();
+                hasher.add(vals.length);
+                for (int j = 0; j < vals.length; j++)
+                    hasher.add(vals[j]);
+            }
+            result = hasher.build();
+            fingerprint = result;
+        }
+        return result;
     }
 }
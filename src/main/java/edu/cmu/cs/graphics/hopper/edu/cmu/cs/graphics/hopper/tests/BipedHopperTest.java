@@ -388,8 +388,13 @@ public class BipedHopperTest extends TestbedTest {
     private void saveControlSequence() {
         String filename = "blah.csq";
         ProblemSolutionEntry entry = new ProblemSolutionEntry(new ObstacleProblemDefinition(1,2), provider.toDefinition());
-        IOUtils.instance().saveProblemSolutionEntry(entry, "", filename);
-        log.info("Saved control sequence to file: " + filename);
+        try {
+            IOUtils.instance().saveProblemSolutionEntry(entry, "", filename);
+            log.info("Saved control sequence to file: " + filename);
+        }
+        catch (IOException error) {
+            log.error("Error saving control sequence to file: " + filename + " (" + error + ")");
+        }
     }
 }
 
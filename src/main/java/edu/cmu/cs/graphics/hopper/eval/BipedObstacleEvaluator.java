@@ -1,8 +1,8 @@
 package edu.cmu.cs.graphics.hopper.eval;
 
 import edu.cmu.cs.graphics.hopper.control.Avatar;
-import edu.cmu.cs.graphics.hopper.control.BipedHopper;
 import edu.cmu.cs.graphics.hopper.control.ControlPrim;
+import edu.cmu.cs.graphics.hopper.problems.ContactIndex;
 import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
 import edu.cmu.cs.graphics.hopper.problems.ProblemInstance;
 import org.jbox2d.common.Color3f;
@@ -20,8 +20,9 @@ public class BipedObstacleEvaluator extends Evaluator {
 
     protected final BipedObstacleEvaluatorDefinition def;
 
-    //Fitness evaluation for current run
+    //Fitness evaluation for current run: how far forward the main body got from where it started
     protected float fitness;
+    protected float startX;
     protected Status status;
 
     protected float timeThatMinXReached;
@@ -33,6 +34,10 @@ public class BipedObstacleEvaluator extends Evaluator {
 
     protected boolean avatarFellOver;
 
+    //Early termination rules for current run, and the one which failed the run (if any)
+    protected TerminationRule[] terminationRules;
+    protected TerminationRuleDefinition terminatedBy;
+
     //Debug graphics stuff
     Color3f inSuccessRegionStatusColor = new Color3f();
     Color3f timeUprightStatusColor = new Color3f();
@@ -45,12 +50,35 @@ public class BipedObstacleEvaluator extends Evaluator {
     @Override
     public void init() {
         status = Status.RUNNING;
+        fitness = 0.0f;
+        startX = Float.NaN;
         timeThatMinXReached = -1.0f;
         timeThatUprightReached = -1.0f;
         timeInSuccessRegion = 0.0f;
         timeUpright = 0.0f;
         timeUprightInSuccessRegion = 0.0f;
         avatarFellOver = false;
+
+        terminationRules = new TerminationRule[def.terminationRules.size()];
+        for (int i = 0; i < terminationRules.length; i++) {
+            terminationRules[i] = def.terminationRules.get(i).create();
+            terminationRules[i].init();
+        }
+        terminatedBy = null;
+    }
+
+    @Override
+    public void registerContactListeners(ProblemInstance problem, ContactIndex contacts) {
+        //If main body touches ground at any point, then we consider that failure
+        contacts.register(problem.getAvatar().getMainBody(), problem.getGroundBody(), new ContactIndex.Listener() {
+            @Override
+            public void onBeginContact(Contact contact, Body body, Body other) {
+                avatarFellOver = true;
+            }
+
+            @Override
+            public void onEndContact(Contact contact, Body body, Body other) {}
+        });
     }
 
     @Override
@@ -61,24 +89,14 @@ public class BipedObstacleEvaluator extends Evaluator {
 
     @Override
     public void updateEvaluation(ProblemInstance problem) {
-        //If main body touches ground at any point, then we consider that failure
-        BipedHopper hopper = (BipedHopper)problem.getAvatar();
-        if (!avatarFellOver) {
-            //Check each contact... if one is the avatar chassis & one is the ground, mark it as falling over
-            for (Contact c : problem.getCurrentContacts()) {
-                Body chassis = hopper.getMainBody();
-                Body ground = problem.getGroundBody();
-                Body bodyA = c.getFixtureA().getBody();
-                Body bodyB = c.getFixtureB().getBody();
-                if ((bodyA == chassis && bodyB == ground) ||
-                        (bodyA == ground && bodyB == chassis))  {
-                    avatarFellOver = true;
-                }
-            }
-        }
+        //Update farthest distance forward
+        float x = problem.getAvatar().getMainBody().getPosition().x;
+        if (Float.isNaN(startX))
+            startX = x;
+        fitness = Math.max(fitness, x - startX);
 
         //Update whether we've crossed minimum x threshold
-        if (problem.getAvatar().getMainBody().getPosition().x > def.minXForSuccess) {
+        if (x > def.minXForSuccess) {
             if (timeThatMinXReached < 0)
                 timeThatMinXReached = problem.getSimTime();
             timeInSuccessRegion = problem.getSimTime() - timeThatMinXReached;
@@ -138,11 +156,27 @@ public class BipedObstacleEvaluator extends Evaluator {
         }
 //        else
 //            status = Status.RUNNING;
+
+        //If still running, give up early if some termination rule deems the run hopeless
+        if (status == Status.RUNNING) {
+            for (int i = 0; i < terminationRules.length; i++) {
+                if (terminationRules[i].shouldTerminate(problem)) {
+                    status = Status.FAILURE;
+                    terminatedBy = terminationRules[i].getDefinition();
+                    int stepsSaved = (int)((def.maxTime - problem.getSimTime()) * problem.updateHz);
+                    terminatedBy.recordTermination(Math.max(stepsSaved, 0));
+                    break;
+                }
+            }
+        }
     }
 
+    /** Returns the termination rule which failed the run early, or null if none did */
+    public TerminationRuleDefinition getTerminatedBy() {return terminatedBy;}
+
     @Override
     public void finishEvaluation(ProblemInstance problem) {
-        //TODO: Set fitness based on distance that avatar moved forward
+        //Fitness (distance the avatar moved forward) is kept up to date as the run goes
     }
 
     @Override
@@ -155,6 +189,10 @@ public class BipedObstacleEvaluator extends Evaluator {
         colors.add(timeUprightStatusColor);
         lines.add("Time upright in success region: " + numFormat.format(timeUprightInSuccessRegion));
         colors.add(timeUprightInSuccessRegionStatusColor);
+        if (terminatedBy != null) {
+            lines.add("Terminated early: " + terminatedBy.getName());
+            colors.add(Color3f.RED);
+        }
 
     }
 }
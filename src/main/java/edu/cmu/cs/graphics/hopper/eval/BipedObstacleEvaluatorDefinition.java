@@ -1,21 +1,37 @@
 package edu.cmu.cs.graphics.hopper.eval;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /** Creates an evaluator that judges success/fitness based on obstacle-clearing behavior of a biped hopper */
 public final class BipedObstacleEvaluatorDefinition extends EvaluatorDefinition {
     public final float maxTime;                                     //sim time (in seconds) before failure
     public final float minXForSuccess;                              //x position which avatar must reach for success
     public final float maxUprightDeviation;                        //max angular deviation (in radians) away from vertical before avatar is not considered upright
     public final float minConsecutiveUprightTimeAfterMinXReached;      //time (in seconds) which must pass while hopper is "upright" after reaching min x before success
+    public final List<TerminationRuleDefinition> terminationRules;  //rules which may fail hopeless runs before maxTime
 
     public BipedObstacleEvaluatorDefinition(float maxTime,
                                             float minXForSuccess,
                                             float maxUprightDeviation,
                                             float minConsecutiveUprightTimeAfterMinXReached)
+    {
+        this(maxTime, minXForSuccess, maxUprightDeviation, minConsecutiveUprightTimeAfterMinXReached,
+                Collections.<TerminationRuleDefinition>emptyList());
+    }
+
+    public BipedObstacleEvaluatorDefinition(float maxTime,
+                                            float minXForSuccess,
+                                            float maxUprightDeviation,
+                                            float minConsecutiveUprightTimeAfterMinXReached,
+                                            List<TerminationRuleDefinition> terminationRules)
     {
         this.maxTime = maxTime;
         this.minXForSuccess = minXForSuccess;
         this.maxUprightDeviation = maxUprightDeviation;
         this.minConsecutiveUprightTimeAfterMinXReached = minConsecutiveUprightTimeAfterMinXReached;
+        this.terminationRules = Collections.unmodifiableList(new ArrayList<TerminationRuleDefinition>(terminationRules));
     }
 
     @Override
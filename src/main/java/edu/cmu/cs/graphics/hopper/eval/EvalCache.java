@@ -1,28 +1,298 @@
 package edu.cmu.cs.graphics.hopper.eval;
 
 import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.math.Fingerprint;
 import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Provides cached evaluation results without having to run the evaluation again.
- * A bit hacky at the moment, but useful for quickly running tests
+ * Entries are held in memory, up to a fixed capacity; the least recently used ones are evicted beyond that. If backed by
+ * a persistent EvalStore, lookups that miss in memory fall through to the store, and (if write-through is enabled)
+ * results put into the cache are appended to the store as well.
+ * Entries are split over several independently locked LRU segments (by key hash), so that the cache is safe for use by
+ * multiple threads without them all contending for a single lock.
+ * Optionally (see setApproxCellSize()), lookups that miss exactly may be answered approximately, by a cached result for
+ * the same control on any problem whose params fall in the same quantization cell. A sampled fraction of approximate
+ * hits (and all approximate successes, since wrongly accepting one would record a false solution) are withheld as
+ * audits instead: the caller simulates them as if they'd missed, and the result put back is compared to the
+ * approximate one, tallying how often approximate results are wrong.
  */
 public class EvalCache {
-    HashMap<EvalCacheKey, EvalCacheValue> cachedEvals;
+    private static final Logger log = LoggerFactory.getLogger(EvalCache.class);
+
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+    public static final long DEFAULT_AUDIT_SEED = 12345L;
+    static final int NUM_SEGMENTS = 16;
+
+    //Rough per-entry footprint (map entry, key, value & definition objects), plus per-param/per-control footprint
+    static final int ENTRY_BYTES = 160;
+    static final int PROBLEM_PARAM_BYTES = 24;
+    static final int CONTROL_BYTES = 48;
+    static final int APPROX_ENTRY_BYTES = 120;
+
+    //Audits awaiting a true result beyond this many are dropped (eg: if their candidate was never simulated)
+    static final int MAX_PENDING_AUDITS = 4096;
+
+    /** An LRU map holding a share of the cache's entries (keyed by EvalCacheKey, or by Fingerprint for approximate ones) */
+    static final class Segment<K> extends LinkedHashMap<K, EvalCacheValue> {
+        private static final long serialVersionUID = 1L;
+
+        final EvalCache cache;
+        final int capacity;
+
+        Segment(EvalCache cache, int capacity) {
+            super(16, 0.75f, true);
+            this.cache = cache;
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, EvalCacheValue> eldest) {
+            if (size() <= capacity)
+                return false;
+            cache.numEvictions.incrementAndGet();
+            cache.numBytes.addAndGet(-estimateBytes(eldest.getKey()));
+            return true;
+        }
+    }
+
+    final Segment<EvalCacheKey>[] segments;
+    final Segment<Fingerprint>[] approxSegments;
+    final EvalStore store;
+    volatile boolean writeThrough = false;
+
+    //Approximate lookups (off if cell size <= 0)
+    volatile float approxCellSize = 0.0f;
+    volatile float auditRate = 0.05f;
+    //Seeded, so that which approximate hits are audited is reproducible from run to run
+    final Random auditRandom = new Random(DEFAULT_AUDIT_SEED);
+    final Map<Fingerprint, Evaluator.Status> pendingAudits = new LinkedHashMap<Fingerprint, Evaluator.Status>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Fingerprint, Evaluator.Status> eldest) {
+            return size() > MAX_PENDING_AUDITS;
+        }
+    };
+    //Quantized params fingerprint of the last problem looked up (lookups come in runs on the same problem)
+    volatile QuantizedProblem lastQuantizedProblem;
+
+    final AtomicLong numHits = new AtomicLong();
+    final AtomicLong numStoreHits = new AtomicLong();
+    final AtomicLong numMisses = new AtomicLong();
+    final AtomicLong numEvictions = new AtomicLong();
+    final AtomicLong numBytes = new AtomicLong();
+    final AtomicLong numApproxHits = new AtomicLong();
+    final AtomicLong numAudits = new AtomicLong();
+    final AtomicLong numAuditDisagreements = new AtomicLong();
 
     public EvalCache() {
-        cachedEvals = new HashMap<EvalCacheKey, EvalCacheValue>();
+        this(null);
+    }
+
+    /** Creates a cache of default capacity backed by given store (if non-null) */
+    public EvalCache(EvalStore store) {
+        this(DEFAULT_CAPACITY, store);
+    }
+
+    /** Creates a cache holding at most (roughly) capacity entries in memory, backed by given store (if non-null) */
+    public EvalCache(int capacity, EvalStore store) {
+        this.store = store;
+        int segmentCapacity = Math.max(1, (capacity + NUM_SEGMENTS - 1) / NUM_SEGMENTS);
+        segments = createSegments(segmentCapacity);
+        approxSegments = createSegments(segmentCapacity);
+    }
+
+    //(Generic arrays can't be created directly)
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <K> Segment<K>[] createSegments(int segmentCapacity) {
+        Segment<K>[] newSegments = new Segment[NUM_SEGMENTS];
+        for (int i = 0; i < NUM_SEGMENTS; i++)
+            newSegments[i] = new Segment<K>(this, segmentCapacity);
+        return newSegments;
+    }
+
+    public EvalStore getStore() {return store;}
+
+    /** Sets whether results put into this cache are also appended to its backing store (if any). Default is off. */
+    public void setWriteThrough(boolean val) {writeThrough = val;}
+
+    /** Sets size of the (per-param) quantization cells within which problems share approximate results; <= 0 turns
+     * approximate lookups off (the default). Set before adding entries, as only entries added after are indexed. */
+    public void setApproxCellSize(float val) {approxCellSize = val;}
+
+    /** Sets fraction of approximate failure hits withheld as audits (approximate successes are always audited) */
+    public void setAuditRate(float val) {auditRate = val;}
+
+    /** Sets seed of the random choice of approximate hits to audit (default DEFAULT_AUDIT_SEED) */
+    public void setAuditSeed(long val) {auditRandom.setSeed(val);}
+
+    /** Returns number of lookups answered from memory */
+    public long getNumHits() {return numHits.get();}
+    /** Returns number of lookups which missed in memory but were answered by the backing store */
+    public long getNumStoreHits() {return numStoreHits.get();}
+    public long getNumMisses() {return numMisses.get();}
+    public long getNumEvictions() {return numEvictions.get();}
+    /** Returns approximate memory held by in-memory entries (counting each entry's key as if it weren't shared) */
+    public long getNumBytes() {return numBytes.get();}
+    /** Returns number of lookups answered approximately (not counting those withheld as audits) */
+    public long getNumApproxHits() {return numApproxHits.get();}
+    /** Returns number of approximate hits withheld as audits whose true result has since been put into the cache */
+    public long getNumAudits() {return numAudits.get();}
+    /** Returns number of audits whose true result differed from the approximate one */
+    public long getNumAuditDisagreements() {return numAuditDisagreements.get();}
+
+    /** Returns number of entries held in memory */
+    public int size() {
+        int size = 0;
+        for (Segment<EvalCacheKey> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
     }
 
+    /** Adds entry to memory only (eg: when loading entries which came from elsewhere) */
     public void insert(EvalCacheKey key, EvalCacheValue val) {
-        cachedEvals.put(key, val);
+        Segment<EvalCacheKey> segment = segments[segmentIdx(key.hashCode())];
+        synchronized (segment) {
+            if (segment.put(key, val) == null)
+                numBytes.addAndGet(estimateBytes(key));
+        }
+
+        Fingerprint approxKey = approxKey(key.problemDef, key.controlDef);
+        if (approxKey != null) {
+            Segment<Fingerprint> approxSegment = approxSegments[segmentIdx(approxKey.hashCode())];
+            synchronized (approxSegment) {
+                if (approxSegment.put(approxKey, val) == null)
+                    numBytes.addAndGet(APPROX_ENTRY_BYTES);
+            }
+        }
+    }
+
+    /** Adds a freshly evaluated result, writing it through to the backing store if so configured */
+    public void put(ProblemDefinition problemDef, ControlProviderDefinition<?> controlDef, Evaluator.Status status) {
+        if (status == null || status == Evaluator.Status.RUNNING)
+            return;
+        EvalCacheKey key = new EvalCacheKey(problemDef, controlDef);
+        insert(key, new EvalCacheValue(status));
+
+        Evaluator.Status approxStatus;
+        synchronized (pendingAudits) {
+            approxStatus = pendingAudits.remove(key.getFingerprint());
+        }
+        if (approxStatus != null) {
+            numAudits.incrementAndGet();
+            if (approxStatus != status)
+                numAuditDisagreements.incrementAndGet();
+        }
+
+        if (writeThrough && store != null) {
+            try {
+                store.put(problemDef, controlDef, status);
+            }
+            catch (IOException error) {
+                log.error("Error writing eval through to eval store");
+            }
+        }
     }
 
     public EvalCacheValue getCachedEvaluation(ProblemDefinition problemDef, ControlProviderDefinition controlDef) {
         EvalCacheKey key = new EvalCacheKey(problemDef, controlDef);
-        EvalCacheValue value = cachedEvals.get(key);
-        return value;
+        Segment<EvalCacheKey> segment = segments[segmentIdx(key.hashCode())];
+        EvalCacheValue value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value != null) {
+            numHits.incrementAndGet();
+            return value;
+        }
+
+        if (store != null) {
+            Evaluator.Status status = store.get(key.getFingerprint());
+            if (status != null) {
+                numStoreHits.incrementAndGet();
+                return new EvalCacheValue(status);
+            }
+        }
+
+        Fingerprint approxKey = approxKey(problemDef, controlDef);
+        if (approxKey != null) {
+            Segment<Fingerprint> approxSegment = approxSegments[segmentIdx(approxKey.hashCode())];
+            synchronized (approxSegment) {
+                value = approxSegment.get(approxKey);
+            }
+            if (value != null) {
+                if (value.status != Evaluator.Status.SUCCESS && auditRandom.nextFloat() >= auditRate) {
+                    numApproxHits.incrementAndGet();
+                    return new EvalCacheValue(value.status, true);
+                }
+                synchronized (pendingAudits) {
+                    pendingAudits.put(key.getFingerprint(), value.status);
+                }
+            }
+        }
+        numMisses.incrementAndGet();
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getNumHits() + ", storeHits=" + getNumStoreHits() + ", misses=" + getNumMisses() +
+               ", evictions=" + getNumEvictions() + ", entries=" + size() + ", ~bytes=" + getNumBytes() +
+               (approxCellSize > 0 ? ", approxHits=" + getNumApproxHits() + ", audits=" + getNumAudits() +
+                                     ", auditDisagreements=" + getNumAuditDisagreements() : "");
+    }
+
+    private static int segmentIdx(int hash) {
+        return (hash ^ (hash >>> 16)) & (NUM_SEGMENTS - 1);
+    }
+
+    /** Returns key under which results for control on problem are shared approximately, or null if that's off */
+    private Fingerprint approxKey(ProblemDefinition problemDef, ControlProviderDefinition<?> controlDef) {
+        float cellSize = approxCellSize;
+        if (cellSize <= 0)
+            return null;
+        QuantizedProblem quantized = lastQuantizedProblem;
+        if (quantized == null || quantized.problemDef != problemDef || quantized.cellSize != cellSize) {
+            quantized = new QuantizedProblem(problemDef, cellSize);
+            lastQuantizedProblem = quantized;
+        }
+        return Fingerprint.combine(quantized.fingerprint, controlDef.getFingerprint());
+    }
+
+    /** Fingerprint of the quantization cell holding a problem's params */
+    static final class QuantizedProblem {
+        final ProblemDefinition problemDef;
+        final float cellSize;
+        final Fingerprint fingerprint;
+
+        QuantizedProblem(ProblemDefinition problemDef, float cellSize) {
+            this.problemDef = problemDef;
+            this.cellSize = cellSize;
+            Fingerprint.Hasher hasher = new Fingerprint.Hasher();
+            hasher.add(problemDef.getClass().getName());
+            double[] params = problemDef.getParamsArray();
+            problemDef.addParamsLayout(hasher, params);
+            for (int i = 0; i < params.length; i++)
+                hasher.add((long)Math.floor(params[i] / cellSize));
+            fingerprint = hasher.build();
+        }
+    }
+
+    private static long estimateBytes(Object key) {
+        if (!(key instanceof EvalCacheKey))
+            return APPROX_ENTRY_BYTES;
+        EvalCacheKey evalKey = (EvalCacheKey)key;
+        return ENTRY_BYTES + PROBLEM_PARAM_BYTES * evalKey.problemDef.getParamsArray().length +
+               CONTROL_BYTES * evalKey.controlDef.controls.size();
     }
 }
@@ -1,12 +1,16 @@
 package edu.cmu.cs.graphics.hopper.eval;
 
 import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.math.Fingerprint;
 import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
 
 public final class EvalCacheKey {
     public final ProblemDefinition problemDef;
     public final ControlProviderDefinition controlDef;
 
+    //Computed on first use (not serialized, so entries saved before fingerprints existed load fine)
+    private transient Fingerprint fingerprint;
+
     public EvalCacheKey(ProblemDefinition problemDef, ControlProviderDefinition controlDef) {
         this.problemDef = problemDef;
         this.controlDef = controlDef;
@@ -19,16 +23,18 @@ public final class EvalCacheKey {
 
         EvalCacheKey that = (EvalCacheKey) o;
 
-        if (!controlDef.equals(that.controlDef)) return false;
-        if (!problemDef.equals(that.problemDef)) return false;
-
-        return true;
+        return getFingerprint().equals(that.getFingerprint());
     }
 
     @Override
     public int hashCode() {
-        int result = problemDef.hashCode();
-        result = 31 * result + controlDef.hashCode();
-        return result;
+        return getFingerprint().hashCode();
+    }
+
+    /** Returns fingerprint of the (problem, control sequence) pair; see EvalFingerprint */
+    public Fingerprint getFingerprint() {
+        if (fingerprint == null)
+            fingerprint = EvalFingerprint.of(problemDef, controlDef);
+        return fingerprint;
     }
 }
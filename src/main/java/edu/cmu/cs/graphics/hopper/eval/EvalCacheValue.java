@@ -5,8 +5,15 @@ package edu.cmu.cs.graphics.hopper.eval;
  */
 public final class EvalCacheValue {
     public final Evaluator.Status status;
+    //True if the result is for a nearby problem rather than the one looked up (see EvalCache.setApproxCellSize())
+    public final transient boolean approximate;
 
     public EvalCacheValue(Evaluator.Status status) {
+        this(status, false);
+    }
+
+    public EvalCacheValue(Evaluator.Status status, boolean approximate) {
         this.status = status;
+        this.approximate = approximate;
     }
 }
@@ -0,0 +1,17 @@
+package edu.cmu.cs.graphics.hopper.eval;
+
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.math.Fingerprint;
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+
+/** Computes 128-bit fingerprints of (problem, control sequence) pairs, for use as eval cache keys & persistent record
+ * identities (see EvalStore). Built from the definitions' own cached fingerprints, so this is cheap after the first
+ * use of each definition. Two pairs which are equal (per their definitions' equals()) always share a fingerprint;
+ * distinct pairs collide with negligible probability. Never returns the all-zero fingerprint. */
+public final class EvalFingerprint {
+    private EvalFingerprint() {}
+
+    public static Fingerprint of(ProblemDefinition problemDef, ControlProviderDefinition<?> controlDef) {
+        return Fingerprint.combine(problemDef.getFingerprint(), controlDef.getFingerprint());
+    }
+}
@@ -0,0 +1,334 @@
+package edu.cmu.cs.graphics.hopper.eval;
+
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.math.Fingerprint;
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** Persistent eval cache held in a single directory: an append-only log of (fingerprint, status) records, plus a
+ * memory-mapped open-addressing hash index over it, keyed by (128-bit) EvalFingerprint.
+ * Opening a store only maps its index (no parsing), and lookups just probe the mapped index, so even very large stores
+ * open in milliseconds. The log is the durable record: if the index is missing, stale (eg: after a crash) or
+ * unreadable, it's rebuilt or caught up from the log on open. Later records for a key override earlier ones.
+ * Safe for use by multiple threads (within a single process). */
+public class EvalStore implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(EvalStore.class);
+
+    static final String LOG_FILENAME = "evals.log";
+    static final String INDEX_FILENAME = "evals.idx";
+
+    static final int LOG_MAGIC = 0x48455631;        //"HEV1"
+    static final int INDEX_MAGIC = 0x48455849;      //"HEXI"
+    static final int VERSION = 3;                   //1 had 64-bit fingerprints, 2 terrain fingerprints without their
+                                                    //heights/x deltas split (such stores must be re-imported)
+
+    static final int LOG_HEADER_SIZE = 8;           //magic, version
+    static final int RECORD_SIZE = 17;              //fingerprint (2 longs), status (byte)
+
+    //Index header: magic, version, capacity, count (ints), log bytes covered by index (long)
+    static final int INDEX_HEADER_SIZE = 24;
+    static final int SLOT_SIZE = 24;                //fingerprint (2 longs; all 0 == empty), status ordinal (long, for alignment)
+    static final int MIN_CAPACITY = 1 << 10;
+    static final int MAX_CAPACITY = 1 << 26;        //keeps the mapped index under 2GB
+    static final float MAX_LOAD = 0.75f;
+
+    private static final Evaluator.Status[] STATUSES = Evaluator.Status.values();
+
+    final File dir;
+    final RandomAccessFile logFile;
+    final FileChannel logChannel;
+    final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+
+    RandomAccessFile indexFile;
+    MappedByteBuffer index;
+    int capacity;
+    int count;
+
+    private EvalStore(File dir) throws IOException {
+        this.dir = dir;
+        logFile = new RandomAccessFile(new File(dir, LOG_FILENAME), "rw");
+        logChannel = logFile.getChannel();
+    }
+
+    /** Opens (creating if need be) the store in given directory */
+    public static EvalStore open(String dirPath) throws IOException {
+        File dir = new File(dirPath);
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Couldn't create eval store directory: " + dirPath);
+
+        EvalStore store = new EvalStore(dir);
+        try {
+            store.openLog();
+            store.openIndex();
+        }
+        catch (IOException error) {
+            store.close();
+            throw error;
+        }
+        return store;
+    }
+
+    /** Returns number of distinct keys in the store */
+    public synchronized int size() {return count;}
+
+    /** Returns stored evaluation of control on problem, or null if none */
+    public Evaluator.Status get(ProblemDefinition problemDef, ControlProviderDefinition<?> controlDef) {
+        return get(EvalFingerprint.of(problemDef, controlDef));
+    }
+
+    public synchronized Evaluator.Status get(Fingerprint fingerprint) {
+        int slot = findSlot(index, capacity, fingerprint.hi, fingerprint.lo);
+        int pos = slotPos(slot);
+        if (isEmpty(index, pos))
+            return null;
+        return STATUSES[(int)index.getLong(pos + 16)];
+    }
+
+    /** Appends evaluation of control on problem to the store (replacing any earlier evaluation).
+     * Does nothing if the store already holds the same evaluation. */
+    public void put(ProblemDefinition problemDef, ControlProviderDefinition<?> controlDef, Evaluator.Status status)
+            throws IOException {
+        put(EvalFingerprint.of(problemDef, controlDef), status);
+    }
+
+    public synchronized void put(Fingerprint fingerprint, Evaluator.Status status) throws IOException {
+        if (get(fingerprint) == status)
+            return;
+
+        recordBuffer.clear();
+        recordBuffer.putLong(fingerprint.hi);
+        recordBuffer.putLong(fingerprint.lo);
+        recordBuffer.put((byte)status.ordinal());
+        recordBuffer.flip();
+        long logLength = logChannel.size();
+        while (recordBuffer.hasRemaining())
+            logChannel.write(recordBuffer, logLength + recordBuffer.position());
+
+        indexRecord(fingerprint.hi, fingerprint.lo, status.ordinal());
+        index.putLong(16, logLength + RECORD_SIZE);
+    }
+
+    /** Forces appended records (and index updates) to disk */
+    public synchronized void flush() throws IOException {
+        logChannel.force(false);
+        if (index != null)
+            index.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (index != null)
+                flush();
+        }
+        finally {
+            logFile.close();
+            if (indexFile != null)
+                indexFile.close();
+            index = null;
+        }
+    }
+
+    private void openLog() throws IOException {
+        if (logChannel.size() < LOG_HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+            header.putInt(LOG_MAGIC).putInt(VERSION).flip();
+            logChannel.truncate(0);
+            logChannel.write(header, 0);
+        }
+        else {
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+            logChannel.read(header, 0);
+            header.flip();
+            if (header.getInt() != LOG_MAGIC)
+                throw new IOException("Not an eval store log: " + new File(dir, LOG_FILENAME));
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported eval store version " + version + " (re-import its evals into a new " +
+                                      "store): " + new File(dir, LOG_FILENAME));
+        }
+
+        //Drop any partial record left by a crash mid-append
+        long numRecords = (logChannel.size() - LOG_HEADER_SIZE) / RECORD_SIZE;
+        long validLength = LOG_HEADER_SIZE + numRecords * RECORD_SIZE;
+        if (logChannel.size() > validLength) {
+            log.warn("Truncating partial record at end of eval store log in " + dir);
+            logChannel.truncate(validLength);
+        }
+    }
+
+    private void openIndex() throws IOException {
+        File file = new File(dir, INDEX_FILENAME);
+        long logLength = logChannel.size();
+        if (file.exists() && mapIndex(file)) {
+            long indexedLength = index.getLong(16);
+            if (indexedLength <= logLength) {
+                if (indexedLength < logLength)
+                    replayLog(indexedLength);
+                return;
+            }
+        }
+
+        //No usable index: rebuild from the log
+        log.info("Rebuilding eval store index in " + dir);
+        int numRecords = (int)((logLength - LOG_HEADER_SIZE) / RECORD_SIZE);
+        createIndex(file, capacityFor(numRecords));
+        replayLog(LOG_HEADER_SIZE);
+    }
+
+    /** Maps existing index file; returns false if it isn't a valid index */
+    private boolean mapIndex(File file) throws IOException {
+        closeIndex();
+        indexFile = new RandomAccessFile(file, "rw");
+        if (indexFile.length() < INDEX_HEADER_SIZE)
+            return false;
+        index = indexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, indexFile.length());
+        capacity = index.getInt(8);
+        count = index.getInt(12);
+        return index.getInt(0) == INDEX_MAGIC && index.getInt(4) == VERSION && Integer.bitCount(capacity) == 1 &&
+                indexFile.length() == INDEX_HEADER_SIZE + (long)capacity * SLOT_SIZE;
+    }
+
+    private void createIndex(File file, int newCapacity) throws IOException {
+        closeIndex();
+        if (file.exists() && !file.delete())
+            throw new IOException("Couldn't replace eval store index: " + file);
+        indexFile = new RandomAccessFile(file, "rw");
+        long length = INDEX_HEADER_SIZE + (long)newCapacity * SLOT_SIZE;
+        indexFile.setLength(length);
+        index = indexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        capacity = newCapacity;
+        count = 0;
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, VERSION);
+        index.putInt(8, capacity);
+        index.putInt(12, count);
+        index.putLong(16, LOG_HEADER_SIZE);
+    }
+
+    private void closeIndex() throws IOException {
+        index = null;
+        if (indexFile != null) {
+            indexFile.close();
+            indexFile = null;
+        }
+    }
+
+    /** Adds log records from given offset onward to the index */
+    private void replayLog(long fromOffset) throws IOException {
+        long logLength = logChannel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 4096);
+        long pos = fromOffset;
+        while (pos < logLength) {
+            buffer.clear();
+            int numRead = logChannel.read(buffer, pos);
+            if (numRead <= 0)
+                break;
+            buffer.flip();
+            while (buffer.remaining() >= RECORD_SIZE) {
+                long hi = buffer.getLong();
+                long lo = buffer.getLong();
+                int status = buffer.get();
+                indexRecord(hi, lo, status);
+                pos += RECORD_SIZE;
+            }
+        }
+        index.putLong(16, pos);
+    }
+
+    private void indexRecord(long hi, long lo, int status) throws IOException {
+        int slot = findSlot(index, capacity, hi, lo);
+        int pos = slotPos(slot);
+        if (isEmpty(index, pos)) {
+            if (count + 1 > capacity * MAX_LOAD) {
+                grow();
+                slot = findSlot(index, capacity, hi, lo);
+                pos = slotPos(slot);
+            }
+            index.putLong(pos, hi);
+            index.putLong(pos + 8, lo);
+            count++;
+            index.putInt(12, count);
+        }
+        index.putLong(pos + 16, status);
+    }
+
+    /** Rehashes index into a new file of twice the capacity */
+    private void grow() throws IOException {
+        if (capacity >= MAX_CAPACITY)
+            throw new IOException("Eval store index is full: " + dir);
+        int newCapacity = capacity * 2;
+        File file = new File(dir, INDEX_FILENAME);
+        File tmpFile = new File(dir, INDEX_FILENAME + ".tmp");
+        long indexedLength = index.getLong(16);
+
+        RandomAccessFile newFile = new RandomAccessFile(tmpFile, "rw");
+        long length = INDEX_HEADER_SIZE + (long)newCapacity * SLOT_SIZE;
+        newFile.setLength(length);
+        MappedByteBuffer newIndex = newFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        for (int slot = 0; slot < capacity; slot++) {
+            int pos = slotPos(slot);
+            if (!isEmpty(index, pos)) {
+                long hi = index.getLong(pos);
+                long lo = index.getLong(pos + 8);
+                int newPos = slotPos(findSlot(newIndex, newCapacity, hi, lo));
+                newIndex.putLong(newPos, hi);
+                newIndex.putLong(newPos + 8, lo);
+                newIndex.putLong(newPos + 16, index.getLong(pos + 16));
+            }
+        }
+        newIndex.putInt(0, INDEX_MAGIC);
+        newIndex.putInt(4, VERSION);
+        newIndex.putInt(8, newCapacity);
+        newIndex.putInt(12, count);
+        newIndex.putLong(16, indexedLength);
+        newIndex.force();
+        newFile.close();
+
+        closeIndex();
+        if (!tmpFile.renameTo(file)) {
+            if (!file.delete() || !tmpFile.renameTo(file))
+                throw new IOException("Couldn't replace eval store index: " + file);
+        }
+        if (!mapIndex(file))
+            throw new IOException("Eval store index unreadable after resize: " + file);
+    }
+
+    /** Returns slot holding fingerprint, or the empty slot where it would go (linear probing) */
+    private static int findSlot(ByteBuffer index, int capacity, long hi, long lo) {
+        int mask = capacity - 1;
+        int slot = (int)(lo ^ (lo >>> 32)) & mask;
+        while (true) {
+            int pos = slotPos(slot);
+            long slotHi = index.getLong(pos);
+            long slotLo = index.getLong(pos + 8);
+            if ((slotHi == hi && slotLo == lo) || (slotHi == 0 && slotLo == 0))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static boolean isEmpty(ByteBuffer index, int pos) {
+        return index.getLong(pos) == 0 && index.getLong(pos + 8) == 0;
+    }
+
+    private static int slotPos(int slot) {
+        return INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static int capacityFor(int numKeys) {
+        int capacity = MIN_CAPACITY;
+        while (numKeys > capacity * MAX_LOAD / 2)
+            capacity *= 2;
+        return capacity;
+    }
+}
@@ -0,0 +1,98 @@
+package edu.cmu.cs.graphics.hopper.eval;
+
+import edu.cmu.cs.graphics.hopper.io.IOUtils;
+import org.apache.commons.cli.*;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+
+/** One-shot program that imports directories of XML eval cache entries (.ech files, as saved by Explorer) into an
+ * EvalStore, so that later explorations can open the evals in a single file rather than parsing every entry.
+ * Usage: EvalStoreImporter -store <store dir> -echDir <dir> [-echDir <dir> ...] */
+public class EvalStoreImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(EvalStoreImporter.class);
+
+    public static void main(String[] args) {
+        DOMConfigurator.configure("config/log4j.xml");
+
+        Options options = new Options();
+        options.addOption("store", true, "Eval store directory (created if it doesn't exist)");
+        options.addOption("echDir", true, "Directory of .ech eval cache entries to import (may be repeated)");
+
+        CommandLineParser parser = new GnuParser();
+        CommandLine cmd = null;
+        try {
+            cmd = parser.parse(options, args);
+        }
+        catch (ParseException parseError) {
+            log.error("Error occurred while parsing command line inputs");
+            parseError.printStackTrace();
+            return;
+        }
+
+        String storePath = cmd.getOptionValue("store");
+        String[] echDirs = cmd.getOptionValues("echDir");
+        if (storePath == null || echDirs == null) {
+            log.error("Both -store and -echDir must be given! Exiting... ");
+            return;
+        }
+
+        long t0 = System.currentTimeMillis();
+        EvalStore store = null;
+        try {
+            store = EvalStore.open(storePath);
+            int sizeBefore = store.size();
+            int numImported = 0;
+            for (String echDir : echDirs)
+                numImported += importDir(store, echDir);
+            store.flush();
+            log.info("Imported " + numImported + " evals (" + (store.size() - sizeBefore) + " new) into " + storePath +
+                     " in " + (System.currentTimeMillis() - t0) + " ms");
+        }
+        catch (IOException error) {
+            log.error("Error importing evals into eval store at " + storePath);
+            error.printStackTrace();
+        }
+        finally {
+            try {
+                if (store != null)
+                    store.close();
+            }
+            catch (IOException error) {
+                log.error("Error closing eval store at " + storePath);
+            }
+        }
+    }
+
+    /** Appends every .ech entry in given dir to store (one file at a time, so huge dirs needn't fit in memory).
+     * Returns number of entries imported. */
+    public static int importDir(EvalStore store, String echDir) throws IOException {
+        String dirPath = echDir.endsWith(File.separator) || echDir.endsWith("/") ? echDir : echDir + File.separator;
+        String[] filenames = new File(dirPath).list(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.toLowerCase().endsWith(".ech");
+            }
+        });
+        if (filenames == null) {
+            log.warn("Eval cache dir not found: " + echDir);
+            return 0;
+        }
+
+        int numImported = 0;
+        for (String filename : filenames) {
+            EvalCacheEntry entry = IOUtils.instance().loadEvalCacheEntry(dirPath, filename);
+            if (entry == null || entry.value.status == Evaluator.Status.RUNNING)
+                continue;
+            store.put(entry.key.problemDef, entry.key.controlDef, entry.value.status);
+            numImported++;
+            if (numImported % 10000 == 0)
+                log.info("Imported " + numImported + "/" + filenames.length + " evals from " + echDir);
+        }
+        return numImported;
+    }
+}
@@ -2,6 +2,7 @@ package edu.cmu.cs.graphics.hopper.eval;
 
 import edu.cmu.cs.graphics.hopper.control.Avatar;
 import edu.cmu.cs.graphics.hopper.control.ControlPrim;
+import edu.cmu.cs.graphics.hopper.problems.ContactIndex;
 import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
 import edu.cmu.cs.graphics.hopper.problems.ProblemInstance;
 import org.jbox2d.common.Color3f;
@@ -29,6 +30,10 @@ import java.util.List;
      * status to get a clear "pass/fail" signal for the evaluation.*/
     public abstract float getFitness();
 
+    /** Registers listeners for contacts between specific bodies of given problem (called once its avatar & world have
+     * been initialized, before the first updateEvaluation()) */
+    public void registerContactListeners(ProblemInstance problem, ContactIndex contacts) {}
+
     /** Incrementally modifies evaluation of controller fitness for curent timestep of problem instance */
     public abstract void updateEvaluation(ProblemInstance problem);
 
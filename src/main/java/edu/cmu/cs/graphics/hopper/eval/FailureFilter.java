@@ -0,0 +1,172 @@
+package edu.cmu.cs.graphics.hopper.eval;
+
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.math.Fingerprint;
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/** Compact set of (problem, control sequence) pairs known to fail: a Bloom filter over their EvalFingerprints.
+ * Membership tests may give false positives (at about the rate the filter was sized for, once it holds its expected
+ * number of failures), but never false negatives; a pair takes only a couple of bytes, versus hundreds for a full
+ * EvalCacheEntry on heap. Filters can be saved, loaded & merged (if created with the same size & hash count).
+ * Layout of saved filters (big-endian): int MAGIC, int VERSION, long numBits, int numHashes, long numInserted,
+ * long[numBits / 64] bits.
+ * Not safe for use by multiple threads. */
+public class FailureFilter {
+    public static final int MAGIC = 0x48464246;     //"HFBF"
+    public static final int VERSION = 1;
+    public static final String FILENAME = "failures.bloom";
+
+    final long numBits;
+    final int numHashes;
+    final long[] bits;
+    long numInserted;
+
+    /** Creates a filter sized to hold given number of failures with (at most about) the given false positive rate */
+    public FailureFilter(long expectedFailures, double falsePositiveRate) {
+        this(optimalNumHashes(expectedFailures, optimalNumBits(expectedFailures, falsePositiveRate)),
+             optimalNumBits(expectedFailures, falsePositiveRate));
+    }
+
+    private FailureFilter(int numHashes, long numBits) {
+        long numWords = (numBits + 63) / 64;
+        if (numWords > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Failure filter too large: " + numBits + " bits");
+        this.numBits = numWords * 64;
+        this.numHashes = numHashes;
+        this.bits = new long[(int)numWords];
+    }
+
+    public long getNumBits() {return numBits;}
+    public int getNumHashes() {return numHashes;}
+    public long getNumInserted() {return numInserted;}
+
+    /** Returns expected false positive rate at the filter's current fill */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1.0 - Math.exp(-(double)numHashes * numInserted / numBits), numHashes);
+    }
+
+    public void put(ProblemDefinition problemDef, ControlProviderDefinition<?> controlDef) {
+        put(EvalFingerprint.of(problemDef, controlDef));
+    }
+
+    public void put(Fingerprint fingerprint) {
+        //Double hashing: the fingerprint's two halves are independent, so they can generate all the bit positions
+        long h = fingerprint.hi;
+        boolean changed = false;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = (h & Long.MAX_VALUE) % numBits;
+            long mask = 1L << bit;
+            int word = (int)(bit >>> 6);
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                changed = true;
+            }
+            h += fingerprint.lo;
+        }
+        if (changed)
+            numInserted++;
+    }
+
+    /** Returns true if pair may be a known failure, false if it definitely isn't */
+    public boolean mightContain(ProblemDefinition problemDef, ControlProviderDefinition<?> controlDef) {
+        return mightContain(EvalFingerprint.of(problemDef, controlDef));
+    }
+
+    public boolean mightContain(Fingerprint fingerprint) {
+        long h = fingerprint.hi;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = (h & Long.MAX_VALUE) % numBits;
+            if ((bits[(int)(bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+            h += fingerprint.lo;
+        }
+        return true;
+    }
+
+    /** Returns true if other filter has the same size & hash count as this one (and so can be merged into it) */
+    public boolean isCompatible(FailureFilter other) {
+        return numBits == other.numBits && numHashes == other.numHashes;
+    }
+
+    /** Adds all of other (compatible) filter's failures to this one */
+    public void merge(FailureFilter other) {
+        if (!isCompatible(other))
+            throw new IllegalArgumentException("Can't merge failure filters of different sizes");
+        for (int i = 0; i < bits.length; i++)
+            bits[i] |= other.bits[i];
+        //Overlap between the two is unknown, so this overcounts (& so overstates the expected false positive rate)
+        numInserted += other.numInserted;
+    }
+
+    public void save(String filePath) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath), 1 << 16));
+        try {
+            write(out);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /** Writes filter in saved filter layout (eg: as part of an exploration checkpoint) */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(numBits);
+        out.writeInt(numHashes);
+        out.writeLong(numInserted);
+        for (long word : bits)
+            out.writeLong(word);
+    }
+
+    public static FailureFilter load(String filePath) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath), 1 << 16));
+        try {
+            return read(in, filePath);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /** Reads filter written by write(); source names where it's from, for errors */
+    public static FailureFilter read(DataInput in, String source) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a failure filter file: " + source);
+        int version = in.readInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported failure filter version " + version + " in " + source);
+        long numBits = in.readLong();
+        FailureFilter filter = new FailureFilter(in.readInt(), numBits);
+        filter.numInserted = in.readLong();
+        for (int i = 0; i < filter.bits.length; i++)
+            filter.bits[i] = in.readLong();
+        return filter;
+    }
+
+    @Override
+    public String toString() {
+        return "failures=" + numInserted + ", bits=" + numBits + ", hashes=" + numHashes +
+               String.format(", expectedFalsePositiveRate=%.2g", getExpectedFalsePositiveRate());
+    }
+
+    private static long optimalNumBits(long expectedFailures, double falsePositiveRate) {
+        double n = Math.max(1, expectedFailures);
+        return Math.max(64, (long)Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+    }
+
+    private static int optimalNumHashes(long expectedFailures, long numBits) {
+        double n = Math.max(1, expectedFailures);
+        return Math.max(1, (int)Math.round(numBits / n * Math.log(2)));
+    }
+}
@@ -0,0 +1,57 @@
+package edu.cmu.cs.graphics.hopper.eval;
+
+import edu.cmu.cs.graphics.hopper.problems.ProblemInstance;
+import edu.cmu.cs.graphics.hopper.problems.TerrainProblemDefinition;
+
+/** Terminates runs on terrain problems when the avatar's main body peaks too low (relative to the next terrain vertex
+ * ahead of it) to clear that vertex on its next hop. Has no effect on other problem types. */
+public final class LowApexTerminationRuleDefinition extends TerminationRuleDefinition {
+    public final float minApexClearance;    //min height (in meters) of main body above next terrain vertex at peak of each hop
+
+    public LowApexTerminationRuleDefinition(float minApexClearance) {
+        this.minApexClearance = minApexClearance;
+    }
+
+    @Override
+    public TerminationRule create() {
+        return new LowApexTerminationRule(this);
+    }
+
+    @Override
+    public String getName() {return "Apex too low for next terrain vertex";}
+
+    static final class LowApexTerminationRule extends TerminationRule {
+        final LowApexTerminationRuleDefinition def;
+        float lastVelY;
+
+        LowApexTerminationRule(LowApexTerminationRuleDefinition def) {
+            this.def = def;
+        }
+
+        @Override
+        public void init() {
+            lastVelY = 0.0f;
+        }
+
+        @Override
+        public TerminationRuleDefinition getDefinition() {return def;}
+
+        @Override
+        public boolean shouldTerminate(ProblemInstance problem) {
+            if (!(problem.getProblemDefinition() instanceof TerrainProblemDefinition))
+                return false;
+
+            //Only judge at the peak of each hop (ie: once the main body starts falling)
+            float velY = problem.getAvatar().getMainBody().getLinearVelocity().y;
+            boolean atApex = (lastVelY > 0 && velY <= 0);
+            lastVelY = velY;
+            if (!atApex)
+                return false;
+
+            TerrainProblemDefinition terrain = (TerrainProblemDefinition)problem.getProblemDefinition();
+            float x = problem.getAvatar().getMainBody().getPosition().x;
+            float y = problem.getAvatar().getMainBody().getPosition().y;
+            return (y - terrain.getNextVertexHeight(x)) < def.minApexClearance;
+        }
+    }
+}
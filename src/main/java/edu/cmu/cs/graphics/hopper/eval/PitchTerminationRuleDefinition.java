@@ -0,0 +1,50 @@
+package edu.cmu.cs.graphics.hopper.eval;
+
+import edu.cmu.cs.graphics.hopper.problems.ProblemInstance;
+
+/** Terminates runs once the avatar's main body has been pitched beyond recovery for a while */
+public final class PitchTerminationRuleDefinition extends TerminationRuleDefinition {
+    public final float maxPitch;            //max angular deviation (in radians) from vertical before avatar can't recover
+    public final float minTimePastMax;      //time (in seconds) which must pass beyond max pitch before terminating
+
+    public PitchTerminationRuleDefinition(float maxPitch, float minTimePastMax) {
+        this.maxPitch = maxPitch;
+        this.minTimePastMax = minTimePastMax;
+    }
+
+    @Override
+    public TerminationRule create() {
+        return new PitchTerminationRule(this);
+    }
+
+    @Override
+    public String getName() {return "Pitch beyond recovery";}
+
+    static final class PitchTerminationRule extends TerminationRule {
+        final PitchTerminationRuleDefinition def;
+        float timeThatMaxPitchPassed;
+
+        PitchTerminationRule(PitchTerminationRuleDefinition def) {
+            this.def = def;
+        }
+
+        @Override
+        public void init() {
+            timeThatMaxPitchPassed = -1.0f;
+        }
+
+        @Override
+        public TerminationRuleDefinition getDefinition() {return def;}
+
+        @Override
+        public boolean shouldTerminate(ProblemInstance problem) {
+            if (Math.abs(problem.getAvatar().getMainBody().getAngle()) <= def.maxPitch) {
+                timeThatMaxPitchPassed = -1.0f;
+                return false;
+            }
+            if (timeThatMaxPitchPassed < 0)
+                timeThatMaxPitchPassed = problem.getSimTime();
+            return (problem.getSimTime() - timeThatMaxPitchPassed) >= def.minTimePastMax;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package edu.cmu.cs.graphics.hopper.eval;
+
+import edu.cmu.cs.graphics.hopper.problems.ProblemInstance;
+
+/** Terminates runs in which the avatar has stopped making forward (+x) progress for a while */
+public final class StalledProgressTerminationRuleDefinition extends TerminationRuleDefinition {
+    public final float maxStallTime;        //time (in seconds) without progress before terminating
+    public final float minProgress;         //distance (in meters) beyond the furthest x reached so far that counts as progress
+
+    public StalledProgressTerminationRuleDefinition(float maxStallTime, float minProgress) {
+        this.maxStallTime = maxStallTime;
+        this.minProgress = minProgress;
+    }
+
+    @Override
+    public TerminationRule create() {
+        return new StalledProgressTerminationRule(this);
+    }
+
+    @Override
+    public String getName() {return "Stalled forward progress";}
+
+    static final class StalledProgressTerminationRule extends TerminationRule {
+        final StalledProgressTerminationRuleDefinition def;
+        boolean started;
+        float lastProgressX;
+        float timeOfLastProgress;
+
+        StalledProgressTerminationRule(StalledProgressTerminationRuleDefinition def) {
+            this.def = def;
+        }
+
+        @Override
+        public void init() {
+            started = false;
+        }
+
+        @Override
+        public TerminationRuleDefinition getDefinition() {return def;}
+
+        @Override
+        public boolean shouldTerminate(ProblemInstance problem) {
+            float x = problem.getAvatar().getMainBody().getPosition().x;
+            if (!started || x >= lastProgressX + def.minProgress) {
+                started = true;
+                lastProgressX = x;
+                timeOfLastProgress = problem.getSimTime();
+                return false;
+            }
+            return (problem.getSimTime() - timeOfLastProgress) >= def.maxStallTime;
+        }
+    }
+}
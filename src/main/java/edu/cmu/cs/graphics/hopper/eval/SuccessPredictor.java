@@ -0,0 +1,270 @@
+package edu.cmu.cs.graphics.hopper.eval;
+
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/** Learned estimate of the probability that a control sequence solves a problem, from the problem's params
+ * (ProblemDefinition.getParamsArray()) & the sequence's control values (ControlProviderDefinition.toNumericArray()).
+ * A logistic regression over those inputs (standardized by running means & variances) plus random Fourier features of
+ * them, which approximate a Gaussian kernel, so that the model can learn which controls suit which problems rather
+ * than only which controls (and problems) do well in general. Trained by online gradient descent (AdaGrad steps with a
+ * little L2 regularization), so it can be trained offline from saved evals (see SuccessPredictorTrainer) and then
+ * keep learning from each new eval during exploration.
+ * Input sizes are taken from the first sample seen; shorter control sequences are zero-padded & longer ones truncated.
+ * Layout of saved models (big-endian): int MAGIC, int VERSION, int numProblemParams, int numControlVals,
+ * int numRandomFeatures, double bandwidth, long seed, double learningRate, double l2, long numSamples,
+ * long numSuccesses, double[numInputs] means, double[numInputs] m2s, double[numWeights] weights,
+ * double[numWeights] gradSqSums (the random features are regenerated from the seed).
+ * Not safe for use by multiple threads. */
+public class SuccessPredictor {
+    public static final int MAGIC = 0x48535052;     //"HSPR"
+    public static final int VERSION = 1;
+    public static final String FILENAME = "success.model";
+
+    static final double ADAGRAD_EPSILON = 1.0e-8;
+    static final double MIN_STD_DEV = 1.0e-6;
+
+    final int numRandomFeatures;
+    final long seed;
+    double bandwidth;
+    double learningRate = 0.1;
+    double l2 = 1.0e-6;
+
+    //Set on first sample
+    int numProblemParams = -1;
+    int numControlVals = -1;
+
+    long numSamples;
+    long numSuccesses;
+    //Running means & sums of squared deviations (Welford) of each input
+    double[] means;
+    double[] m2s;
+    //Weights of bias, standardized inputs & random features, and their squared gradient sums (for AdaGrad steps)
+    double[] weights;
+    double[] gradSqSums;
+    //Random Fourier features: cos(projections * input + phases)
+    double[][] projections;
+    double[] phases;
+
+    //Scratch buffers
+    double[] inputs;
+    double[] features;
+
+    /** Creates an untrained predictor with given number of random features, whose kernel has given bandwidth (in
+     * standard deviations of the inputs; if <= 0, the square root of the number of inputs is used) */
+    public SuccessPredictor(int numRandomFeatures, double bandwidth, long seed) {
+        this.numRandomFeatures = numRandomFeatures;
+        this.bandwidth = bandwidth;
+        this.seed = seed;
+    }
+
+    public void setLearningRate(double val) {learningRate = val;}
+    public void setL2(double val) {l2 = val;}
+
+    public long getNumSamples() {return numSamples;}
+    public long getNumSuccesses() {return numSuccesses;}
+
+    /** Returns estimated probability that control sequence solves problem (0.5 until the predictor's been trained) */
+    public double predict(ProblemDefinition problemDef, ControlProviderDefinition<?> controlDef) {
+        return predict(problemDef.getParamsArray(), controlDef.toNumericArray());
+    }
+
+    public double predict(double[] problemParams, float[] controlVals) {
+        ensureInitialized(problemParams.length, controlVals.length);
+        setInputs(problemParams, controlVals);
+        computeFeatures();
+        return sigmoid(dot(weights, features));
+    }
+
+    /** Trains predictor on the outcome of a single eval */
+    public void update(ProblemDefinition problemDef, ControlProviderDefinition<?> controlDef, boolean success) {
+        update(problemDef.getParamsArray(), controlDef.toNumericArray(), success);
+    }
+
+    public void update(double[] problemParams, float[] controlVals, boolean success) {
+        ensureInitialized(problemParams.length, controlVals.length);
+        setInputs(problemParams, controlVals);
+
+        //Update input stats first, so early samples aren't standardized by empty stats
+        numSamples++;
+        if (success)
+            numSuccesses++;
+        for (int i = 0; i < inputs.length; i++) {
+            double delta = inputs[i] - means[i];
+            means[i] += delta/numSamples;
+            m2s[i] += delta*(inputs[i] - means[i]);
+        }
+
+        computeFeatures();
+        double error = sigmoid(dot(weights, features)) - (success ? 1.0 : 0.0);
+        for (int i = 0; i < weights.length; i++) {
+            double grad = error*features[i] + ((i > 0) ? l2*weights[i] : 0.0);
+            gradSqSums[i] += grad*grad;
+            weights[i] -= learningRate*grad/Math.sqrt(gradSqSums[i] + ADAGRAD_EPSILON);
+        }
+    }
+
+    private void ensureInitialized(int numProblemParams, int numControlVals) {
+        if (this.numProblemParams >= 0)
+            return;
+        this.numProblemParams = numProblemParams;
+        this.numControlVals = numControlVals;
+        int numInputs = numProblemParams + numControlVals;
+        if (bandwidth <= 0)
+            bandwidth = Math.sqrt(Math.max(1, numInputs));
+        means = new double[numInputs];
+        m2s = new double[numInputs];
+        weights = new double[1 + numInputs + numRandomFeatures];
+        gradSqSums = new double[weights.length];
+        createRandomFeatures();
+    }
+
+    private void createRandomFeatures() {
+        int numInputs = means.length;
+        Random r = new Random(seed);
+        projections = new double[numRandomFeatures][numInputs];
+        phases = new double[numRandomFeatures];
+        for (int j = 0; j < numRandomFeatures; j++) {
+            for (int i = 0; i < numInputs; i++)
+                projections[j][i] = r.nextGaussian()/bandwidth;
+            phases[j] = 2.0*Math.PI*r.nextDouble();
+        }
+        inputs = new double[numInputs];
+        features = new double[weights.length];
+    }
+
+    private void setInputs(double[] problemParams, float[] controlVals) {
+        int n = Math.min(problemParams.length, numProblemParams);
+        System.arraycopy(problemParams, 0, inputs, 0, n);
+        for (int i = n; i < numProblemParams; i++)
+            inputs[i] = 0.0;
+        for (int i = 0; i < numControlVals; i++)
+            inputs[numProblemParams + i] = (i < controlVals.length) ? controlVals[i] : 0.0;
+    }
+
+    private void computeFeatures() {
+        int numInputs = inputs.length;
+        features[0] = 1.0;
+        for (int i = 0; i < numInputs; i++) {
+            double stdDev = (numSamples > 1) ? Math.sqrt(m2s[i]/(numSamples - 1)) : 0.0;
+            features[1 + i] = (inputs[i] - means[i])/Math.max(stdDev, MIN_STD_DEV);
+        }
+        double scale = Math.sqrt(2.0/Math.max(1, numRandomFeatures));
+        for (int j = 0; j < numRandomFeatures; j++) {
+            double[] projection = projections[j];
+            double sum = phases[j];
+            for (int i = 0; i < numInputs; i++)
+                sum += projection[i]*features[1 + i];
+            features[1 + numInputs + j] = scale*Math.cos(sum);
+        }
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++)
+            sum += a[i]*b[i];
+        return sum;
+    }
+
+    private static double sigmoid(double x) {
+        if (x >= 0)
+            return 1.0/(1.0 + Math.exp(-x));
+        double e = Math.exp(x);
+        return e/(1.0 + e);
+    }
+
+    public void save(String filePath) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath), 1 << 16));
+        try {
+            write(out);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /** Writes predictor in saved model layout (eg: as part of an exploration checkpoint) */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(numProblemParams);
+        out.writeInt(numControlVals);
+        out.writeInt(numRandomFeatures);
+        out.writeDouble(bandwidth);
+        out.writeLong(seed);
+        out.writeDouble(learningRate);
+        out.writeDouble(l2);
+        out.writeLong(numSamples);
+        out.writeLong(numSuccesses);
+        if (numProblemParams >= 0) {
+            writeDoubles(out, means);
+            writeDoubles(out, m2s);
+            writeDoubles(out, weights);
+            writeDoubles(out, gradSqSums);
+        }
+    }
+
+    public static SuccessPredictor load(String filePath) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath), 1 << 16));
+        try {
+            return read(in, filePath);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /** Reads predictor written by write(); source names where it's from, for errors */
+    public static SuccessPredictor read(DataInput in, String source) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a success predictor file: " + source);
+        int version = in.readInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported success predictor version " + version + " in " + source);
+        int numProblemParams = in.readInt();
+        int numControlVals = in.readInt();
+        int numRandomFeatures = in.readInt();
+        double bandwidth = in.readDouble();
+        SuccessPredictor predictor = new SuccessPredictor(numRandomFeatures, bandwidth, in.readLong());
+        predictor.learningRate = in.readDouble();
+        predictor.l2 = in.readDouble();
+        predictor.numSamples = in.readLong();
+        predictor.numSuccesses = in.readLong();
+        if (numProblemParams >= 0) {
+            predictor.ensureInitialized(numProblemParams, numControlVals);
+            readDoubles(in, predictor.means);
+            readDoubles(in, predictor.m2s);
+            readDoubles(in, predictor.weights);
+            readDoubles(in, predictor.gradSqSums);
+        }
+        return predictor;
+    }
+
+    private static void writeDoubles(DataOutput out, double[] vals) throws IOException {
+        for (double val : vals)
+            out.writeDouble(val);
+    }
+
+    private static void readDoubles(DataInput in, double[] vals) throws IOException {
+        for (int i = 0; i < vals.length; i++)
+            vals[i] = in.readDouble();
+    }
+
+    @Override
+    public String toString() {
+        return "samples=" + numSamples + ", successes=" + numSuccesses + ", inputs=" +
+               ((numProblemParams >= 0) ? numProblemParams + "+" + numControlVals : "?") +
+               ", randomFeatures=" + numRandomFeatures + String.format(", bandwidth=%.3g", bandwidth);
+    }
+}
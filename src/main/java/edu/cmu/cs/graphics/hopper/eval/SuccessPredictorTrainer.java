@@ -0,0 +1,273 @@
+package edu.cmu.cs.graphics.hopper.eval;
+
+import edu.cmu.cs.graphics.hopper.io.IOUtils;
+import edu.cmu.cs.graphics.hopper.math.Fingerprint;
+import org.apache.commons.cli.*;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.*;
+
+/** Program that trains a SuccessPredictor offline from directories of .ech eval cache entries (as saved by Explorer),
+ * & reports how it would do on problems held out from training: mean tests needed to find a solution with candidates
+ * in random order (the expectation over all orders; .ech entries don't record the order they were evaluated in) vs.
+ * ranked by the predictor, and for each skip threshold, the share of tests saved & of solutions (successful evals, and
+ * problems with any) lost by skipping candidates rated below it.
+ * Holdout problems are picked by fingerprint, so a problem's evals are either all held out or all trained on.
+ * After reporting, the predictor is trained on the held out evals too, then saved.
+ * Usage: SuccessPredictorTrainer -echDir <dir> [-echDir <dir> ...] -model <output file> [-initModel <file>]
+ *        [-epochs n] [-holdout fraction] [-randomFeatures n] [-bandwidth val] [-learningRate val]
+ *        [-thresholds val,val,...] [-seed n] */
+public class SuccessPredictorTrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(SuccessPredictorTrainer.class);
+
+    /** Features & outcome of a single eval (much smaller than the EvalCacheEntry it came from) */
+    static class Sample {
+        final Fingerprint problem;
+        final double[] problemParams;
+        final float[] controlVals;
+        final boolean success;
+
+        Sample(Fingerprint problem, double[] problemParams, float[] controlVals, boolean success) {
+            this.problem = problem;
+            this.problemParams = problemParams;
+            this.controlVals = controlVals;
+            this.success = success;
+        }
+    }
+
+    public static void main(String[] args) {
+        DOMConfigurator.configure("config/log4j.xml");
+
+        Options options = new Options();
+        options.addOption("echDir", true, "Directory of .ech eval cache entries to train on (may be repeated)");
+        options.addOption("model", true, "File to save trained predictor to");
+        options.addOption("initModel", true, "Predictor to continue training (otherwise a new one is trained)");
+        options.addOption("epochs", true, "Number of passes over the training evals (default 5)");
+        options.addOption("holdout", true, "Fraction of problems held out to report on (default 0.2)");
+        options.addOption("randomFeatures", true, "Number of random features of a new predictor (default 256)");
+        options.addOption("bandwidth", true, "Kernel bandwidth of a new predictor; 0 picks one automatically (default 0)");
+        options.addOption("learningRate", true, "Learning rate (default 0.1)");
+        options.addOption("thresholds", true, "Comma-separated skip thresholds to report on (default 0.01,0.02,0.05,0.1,0.2)");
+        options.addOption("seed", true, "Random seed (default 12345)");
+
+        CommandLineParser parser = new GnuParser();
+        CommandLine cmd = null;
+        try {
+            cmd = parser.parse(options, args);
+        }
+        catch (ParseException parseError) {
+            log.error("Error occurred while parsing command line inputs");
+            parseError.printStackTrace();
+            return;
+        }
+
+        String[] echDirs = cmd.getOptionValues("echDir");
+        String modelPath = cmd.getOptionValue("model");
+        if (echDirs == null || modelPath == null) {
+            log.error("Both -echDir and -model must be given! Exiting... ");
+            return;
+        }
+        int numEpochs = Integer.parseInt(cmd.getOptionValue("epochs", "5"));
+        double holdoutFraction = Double.parseDouble(cmd.getOptionValue("holdout", "0.2"));
+        int numRandomFeatures = Integer.parseInt(cmd.getOptionValue("randomFeatures", "256"));
+        double bandwidth = Double.parseDouble(cmd.getOptionValue("bandwidth", "0"));
+        double learningRate = Double.parseDouble(cmd.getOptionValue("learningRate", "0.1"));
+        String[] thresholdVals = cmd.getOptionValue("thresholds", "0.01,0.02,0.05,0.1,0.2").split(",");
+        double[] thresholds = new double[thresholdVals.length];
+        for (int i = 0; i < thresholds.length; i++)
+            thresholds[i] = Double.parseDouble(thresholdVals[i].trim());
+        long seed = Long.parseLong(cmd.getOptionValue("seed", "12345"));
+
+        SuccessPredictor predictor;
+        try {
+            if (cmd.hasOption("initModel"))
+                predictor = SuccessPredictor.load(cmd.getOptionValue("initModel"));
+            else
+                predictor = new SuccessPredictor(numRandomFeatures, bandwidth, seed);
+        }
+        catch (IOException error) {
+            log.error("Error loading success predictor from " + cmd.getOptionValue("initModel") + ": " + error);
+            return;
+        }
+        predictor.setLearningRate(learningRate);
+
+        //Load evals
+        long t0 = System.currentTimeMillis();
+        List<Sample> trainSamples = new ArrayList<Sample>();
+        List<Sample> holdoutSamples = new ArrayList<Sample>();
+        for (String echDir : echDirs) {
+            for (Sample sample : loadDir(echDir)) {
+                if (isHeldOut(sample.problem, holdoutFraction))
+                    holdoutSamples.add(sample);
+                else
+                    trainSamples.add(sample);
+            }
+        }
+        log.info("Loaded " + (trainSamples.size() + holdoutSamples.size()) + " evals (" + holdoutSamples.size() +
+                 " held out) in " + (System.currentTimeMillis() - t0) + " ms");
+        if (trainSamples.isEmpty() && holdoutSamples.isEmpty()) {
+            log.error("No evals found! Exiting... ");
+            return;
+        }
+
+        Random r = new Random(seed);
+        t0 = System.currentTimeMillis();
+        train(predictor, trainSamples, numEpochs, r);
+        log.info("Trained on " + trainSamples.size() + " evals x " + numEpochs + " epochs in " +
+                 (System.currentTimeMillis() - t0) + " ms: " + predictor);
+
+        if (!holdoutSamples.isEmpty())
+            report(predictor, holdoutSamples, thresholds);
+
+        //Held out evals are worth learning from too, once they've been reported on
+        train(predictor, holdoutSamples, numEpochs, r);
+        try {
+            predictor.save(modelPath);
+            log.info("Saved success predictor (" + predictor + ") to " + modelPath);
+        }
+        catch (IOException error) {
+            log.error("Error saving success predictor to " + modelPath + ": " + error);
+        }
+    }
+
+    /** Loads every finished eval in given dir of .ech entries (one file at a time, so huge dirs needn't fit in memory) */
+    static List<Sample> loadDir(String echDir) {
+        List<Sample> samples = new ArrayList<Sample>();
+        String dirPath = echDir.endsWith(File.separator) || echDir.endsWith("/") ? echDir : echDir + File.separator;
+        String[] filenames = new File(dirPath).list(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.toLowerCase().endsWith(".ech");
+            }
+        });
+        if (filenames == null) {
+            log.warn("Eval cache dir not found: " + echDir);
+            return samples;
+        }
+
+        for (String filename : filenames) {
+            EvalCacheEntry entry = IOUtils.instance().loadEvalCacheEntry(dirPath, filename);
+            if (entry == null || entry.value.status == Evaluator.Status.RUNNING)
+                continue;
+            samples.add(new Sample(entry.key.problemDef.getFingerprint(), entry.key.problemDef.getParamsArray(),
+                                   entry.key.controlDef.toNumericArray(), entry.value.status == Evaluator.Status.SUCCESS));
+            if (samples.size() % 10000 == 0)
+                log.info("Loaded " + samples.size() + "/" + filenames.length + " evals from " + echDir);
+        }
+        return samples;
+    }
+
+    static boolean isHeldOut(Fingerprint problem, double holdoutFraction) {
+        return (problem.lo & Long.MAX_VALUE) % 10000 < holdoutFraction*10000;
+    }
+
+    static void train(SuccessPredictor predictor, List<Sample> samples, int numEpochs, Random r) {
+        List<Sample> shuffled = new ArrayList<Sample>(samples);
+        for (int epoch = 0; epoch < numEpochs; epoch++) {
+            Collections.shuffle(shuffled, r);
+            for (Sample sample : shuffled)
+                predictor.update(sample.problemParams, sample.controlVals, sample.success);
+        }
+    }
+
+    static void report(SuccessPredictor predictor, List<Sample> samples, double[] thresholds) {
+        //Group evals by problem, keeping the order they were loaded in
+        Map<Fingerprint, List<Sample>> samplesByProblem = new LinkedHashMap<Fingerprint, List<Sample>>();
+        Map<Sample, Double> probs = new HashMap<Sample, Double>();
+        double logLoss = 0.0;
+        int numSuccesses = 0;
+        for (Sample sample : samples) {
+            List<Sample> problemSamples = samplesByProblem.get(sample.problem);
+            if (problemSamples == null) {
+                problemSamples = new ArrayList<Sample>();
+                samplesByProblem.put(sample.problem, problemSamples);
+            }
+            problemSamples.add(sample);
+            double prob = predictor.predict(sample.problemParams, sample.controlVals);
+            probs.put(sample, prob);
+            logLoss -= Math.log(Math.max(1.0e-12, sample.success ? prob : 1.0 - prob));
+            if (sample.success)
+                numSuccesses++;
+        }
+        log.info(String.format("Holdout: %d evals (%d successes) on %d problems, log loss %.4f", samples.size(),
+                 numSuccesses, samplesByProblem.size(), logLoss/samples.size()));
+
+        //Tests to first solution, for problems with one: expected over random orders, & with evals ranked by predictor
+        double randomTests = 0.0;
+        double rankedTests = 0.0;
+        int numSolvable = 0;
+        List<List<Sample>> rankedByProblem = new ArrayList<List<Sample>>();
+        for (List<Sample> problemSamples : samplesByProblem.values()) {
+            List<Sample> ranked = rank(problemSamples, probs);
+            rankedByProblem.add(ranked);
+            int numProblemSuccesses = 0;
+            int firstSuccessRank = -1;
+            for (int i = 0; i < ranked.size(); i++) {
+                if (ranked.get(i).success) {
+                    numProblemSuccesses++;
+                    if (firstSuccessRank < 0)
+                        firstSuccessRank = i + 1;
+                }
+            }
+            if (numProblemSuccesses > 0) {
+                numSolvable++;
+                randomTests += (ranked.size() + 1.0)/(numProblemSuccesses + 1.0);
+                rankedTests += firstSuccessRank;
+            }
+        }
+        if (numSolvable > 0)
+            log.info(String.format("Mean tests to a solution over %d solvable problems: %.2f in random order, %.2f ranked",
+                     numSolvable, randomTests/numSolvable, rankedTests/numSolvable));
+
+        //Skipping candidates below each threshold (ranked, so tests stop at the first solution)
+        for (double threshold : thresholds) {
+            int numSkipped = 0;
+            int numSuccessesSkipped = 0;
+            int numSolvableLost = 0;
+            double tests = 0.0;
+            for (List<Sample> ranked : rankedByProblem) {
+                boolean solvable = false;
+                int numKept = 0;
+                int firstKeptSuccessRank = -1;
+                for (Sample sample : ranked) {
+                    solvable |= sample.success;
+                    if (probs.get(sample) < threshold) {
+                        numSkipped++;
+                        if (sample.success)
+                            numSuccessesSkipped++;
+                    }
+                    else {
+                        numKept++;
+                        if (sample.success && firstKeptSuccessRank < 0)
+                            firstKeptSuccessRank = numKept;
+                    }
+                }
+                if (solvable && firstKeptSuccessRank < 0)
+                    numSolvableLost++;
+                tests += (firstKeptSuccessRank > 0) ? firstKeptSuccessRank : numKept;
+            }
+            log.info(String.format("Threshold %.3f: %.1f%% of evals skipped, %.1f%% of successful evals lost, " +
+                     "%d/%d solvable problems lost (%.1f%% recall), %.2f mean tests per problem", threshold,
+                     100.0*numSkipped/samples.size(), 100.0*numSuccessesSkipped/Math.max(1, numSuccesses),
+                     numSolvableLost, numSolvable, 100.0*(numSolvable - numSolvableLost)/Math.max(1, numSolvable),
+                     tests/samplesByProblem.size()));
+        }
+    }
+
+    //Returns samples sorted most likely to succeed first (ties in given order)
+    static List<Sample> rank(List<Sample> samples, final Map<Sample, Double> probs) {
+        List<Sample> ranked = new ArrayList<Sample>(samples);
+        Collections.sort(ranked, new Comparator<Sample>() {
+            @Override
+            public int compare(Sample a, Sample b) {
+                return Double.compare(probs.get(b), probs.get(a));
+            }
+        });
+        return ranked;
+    }
+}
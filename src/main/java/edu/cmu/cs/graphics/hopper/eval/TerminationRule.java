@@ -0,0 +1,16 @@
+package edu.cmu.cs.graphics.hopper.eval;
+
+import edu.cmu.cs.graphics.hopper.problems.ProblemInstance;
+
+/** A predicate, checked by an evaluator at each sim timestep, which declares a run hopeless before it would otherwise
+ * end, so that no more time is spent simulating it (ie: fail fast). One instance is used per run, so it may keep state. */
+public abstract class TerminationRule {
+    /** Do any required initial setup for a new run */
+    public void init() {}
+
+    /** Returns the definition which created this rule (and which tallies its terminations) */
+    public abstract TerminationRuleDefinition getDefinition();
+
+    /** Updates rule for the current timestep of problem instance; returns true if the run should be failed now */
+    public abstract boolean shouldTerminate(ProblemInstance problem);
+}
@@ -0,0 +1,28 @@
+package edu.cmu.cs.graphics.hopper.eval;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** An instantiable early termination rule, along with running totals of what the rule has saved across all runs
+ * using it (safe to update from multiple sim threads). */
+public abstract class TerminationRuleDefinition {
+    final AtomicLong numTerminations = new AtomicLong();
+    final AtomicLong numStepsSaved = new AtomicLong();
+
+    /** Generates rule for a single run */
+    public abstract TerminationRule create();
+
+    /** Returns short descriptive name of this rule (for logs) */
+    public abstract String getName();
+
+    /** Returns number of runs terminated early by this rule */
+    public long getNumTerminations() {return numTerminations.get();}
+
+    /** Returns total sim steps not run thanks to this rule (ie: steps remaining until the evaluator's time limit at the
+     * moment each run was terminated; runs may have ended sooner anyway, so this is an upper bound) */
+    public long getNumStepsSaved() {return numStepsSaved.get();}
+
+    void recordTermination(long stepsSaved) {
+        numTerminations.incrementAndGet();
+        numStepsSaved.addAndGet(stepsSaved);
+    }
+}
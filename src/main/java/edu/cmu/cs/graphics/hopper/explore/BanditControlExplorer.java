@@ -0,0 +1,301 @@
+package edu.cmu.cs.graphics.hopper.explore;
+
+import edu.cmu.cs.graphics.hopper.control.Control;
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.eval.Evaluator;
+import edu.cmu.cs.graphics.hopper.io.IOUtils;
+import edu.cmu.cs.graphics.hopper.math.KDIndex;
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+import edu.cmu.cs.graphics.hopper.problems.ProblemInstance;
+import edu.cmu.cs.graphics.hopper.problems.SimProfile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** An explorer which treats its control ensemble as a multi-armed bandit: each control's chance of solving a problem is
+ * estimated from how often it has succeeded so far (in tries with exact results; not guesses from approximate eval
+ * cache or failure filter hits), starting from a prior based on how near the problem is to those the
+ * control is known to solve, and controls are tried in order of an optimistic (UCB) or sampled (Thompson) score.
+ * Controls whose failed sims tend to last longer (ie: near misses) get a bonus. Broadly useful controls thus drift to
+ * the front, rather than only those which solved the most similar problem (as in SmartControlExplorer).
+ * Each problem's order is fixed when it's started. Control stats (& the sampling random state) are saved with
+ * checkpoints, so resumed explorations carry on ordering controls as they would have. */
+public class BanditControlExplorer<C extends Control> extends Explorer<C> {
+    private static final Logger log = LoggerFactory.getLogger(BanditControlExplorer.class);
+
+    public static final String UCB = "ucb";
+    public static final String THOMPSON = "thompson";
+    static final String CONTROL_STATS_STATE = "banditControlStats";
+
+    /** Success stats of a single control */
+    static class ControlStats {
+        final int order;
+        int numTries;
+        int numSuccesses;
+        int numTimedFailures;
+        double totalFailureSimTime;
+
+        ControlStats(int order) {
+            this.order = order;
+        }
+
+        double getMeanFailureSimTime() {
+            return (numTimedFailures > 0) ? totalFailureSimTime/numTimedFailures : 0.0;
+        }
+    }
+
+    //Every problem known to be solved by an ensemble control, keyed by problem params (vals are the solving controls)
+    KDIndex<ControlProviderDefinition<C>> solvedProblemIndex;
+    //Stats of each control in the ensemble, in order added
+    LinkedHashMap<ControlProviderDefinition<C>, ControlStats> controlStats;
+    //Every (problem, control) added to the above, in order (for checkpoints)
+    List<ProblemSolutionEntry> ensembleEntries;
+    int totalTries;
+    double maxMeanFailureSimTime;
+
+    //Current problem's controls, best scoring first
+    List<ControlProviderDefinition<C>> rankedControls;
+    int nextControlIdx;
+    //Sim time at which each control's latest full fidelity sim of the current problem ended (set from eval threads)
+    Map<ControlProviderDefinition<?>, Float> problemSimTimes;
+
+    String strategy = UCB;
+    //Weight of UCB's exploration bonus
+    double explorationWeight = 1.0;
+    //Number of pseudo-tries the distance-based prior is worth, & the problem param distance at which it falls to ~0.6
+    double priorWeight = 2.0;
+    double distanceScale = 1.0;
+    //Weight of bonus for controls' mean failed sim time (relative to the longest of any control, so at most this much)
+    double failureTimeWeight = 0.1;
+    Random random;
+
+    public BanditControlExplorer() {
+        super();
+        solvedProblemIndex = null;
+        controlStats = new LinkedHashMap<ControlProviderDefinition<C>, ControlStats>();
+        ensembleEntries = new ArrayList<ProblemSolutionEntry>();
+        rankedControls = new ArrayList<ControlProviderDefinition<C>>();
+        problemSimTimes = new ConcurrentHashMap<ControlProviderDefinition<?>, Float>();
+        random = new Random(12345);
+    }
+
+    public void setStrategy(String val) {
+        if (!UCB.equals(val) && !THOMPSON.equals(val))
+            throw new IllegalArgumentException("Unknown bandit strategy: " + val + " (expected " + UCB + " or " + THOMPSON + ")");
+        strategy = val;
+    }
+    public void setExplorationWeight(double val) {explorationWeight = val;}
+    public void setPriorWeight(double val) {priorWeight = val;}
+    public void setDistanceScale(double val) {distanceScale = val;}
+    public void setFailureTimeWeight(double val) {failureTimeWeight = val;}
+    public void setSeed(long val) {random = new Random(val);}
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void loadEnsemble(String inputEnsemblePath) {
+        //For now: load sol files, add corresponding controls to ensemble
+        List<ProblemSolutionEntry> entries = IOUtils.instance().loadAllProblemSolutionEntriesInDir(inputEnsemblePath);
+        for (ProblemSolutionEntry entry : entries)
+            addToControlEnsemble(entry.problem, entry.solution);
+    }
+
+    @Override
+    public void initExploration() {
+    }
+
+    @Override
+    protected void prepareForProblem(ProblemDefinition problemDef) {
+        problemSimTimes.clear();
+        rankedControls.clear();
+        nextControlIdx = 0;
+        if (solvedProblemIndex == null)
+            return;
+
+        //Squared distance from problem to the nearest one each control solves: the first time each control turns up in
+        //a nearest-first walk over all solved problems
+        double[] params = problemDef.getParamsArray();
+        final Map<ControlProviderDefinition<C>, Double> nearestDistSqrds = new HashMap<ControlProviderDefinition<C>, Double>();
+        Iterator<KDIndex.Entry<ControlProviderDefinition<C>>> nearest = solvedProblemIndex.nearest(params);
+        while (nearest.hasNext() && nearestDistSqrds.size() < controlStats.size()) {
+            KDIndex.Entry<ControlProviderDefinition<C>> entry = nearest.next();
+            if (!nearestDistSqrds.containsKey(entry.value))
+                nearestDistSqrds.put(entry.value, entry.distSqrd);
+        }
+
+        final Map<ControlProviderDefinition<C>, Double> scores = new HashMap<ControlProviderDefinition<C>, Double>();
+        for (Map.Entry<ControlProviderDefinition<C>, ControlStats> entry : controlStats.entrySet())
+            scores.put(entry.getKey(), score(entry.getValue(), nearestDistSqrds.get(entry.getKey())));
+
+        //Best score first (ties in order added)
+        rankedControls.addAll(controlStats.keySet());
+        Collections.sort(rankedControls, new Comparator<ControlProviderDefinition<C>>() {
+            @Override
+            public int compare(ControlProviderDefinition<C> a, ControlProviderDefinition<C> b) {
+                return Double.compare(scores.get(b), scores.get(a));
+            }
+        });
+    }
+
+    //Returns score of a control on a problem the given (squared) distance from the nearest problem it solves
+    double score(ControlStats stats, Double nearestDistSqrd) {
+        //Beta posterior over the control's success rate, with a prior near 1 for controls which solve nearby problems
+        double similarity = (nearestDistSqrd != null) ? Math.exp(-nearestDistSqrd/(2.0*distanceScale*distanceScale)) : 0.0;
+        double alpha = 1.0 + stats.numSuccesses + priorWeight*similarity;
+        double beta = 1.0 + (stats.numTries - stats.numSuccesses) + priorWeight*(1.0 - similarity);
+
+        double score;
+        if (THOMPSON.equals(strategy))
+            score = sampleBeta(alpha, beta);
+        else
+            score = alpha/(alpha + beta) + explorationWeight*Math.sqrt(Math.log(totalTries + 1.0)/(stats.numTries + 1.0));
+
+        if (maxMeanFailureSimTime > 0)
+            score += failureTimeWeight*stats.getMeanFailureSimTime()/maxMeanFailureSimTime;
+        return score;
+    }
+
+    @Override
+    protected ControlProviderDefinition<C> getNextControlSequence(ProblemDefinition p) {
+        //Return next ranked control, if any
+        if (nextControlIdx < rankedControls.size())
+            return rankedControls.get(nextControlIdx++);
+        return null;
+    }
+
+    @Override
+    protected Evaluator.Status simulate(ProblemInstance problem) {
+        try {
+            return super.simulate(problem);
+        }
+        finally {
+            //Screening sims end at different times than full ones would, so aren't comparable
+            if (SimProfile.VERIFY.equals(problem.getSimProfile()))
+                problemSimTimes.put(problem.getCtrlDefinition(), problem.getSimTime());
+        }
+    }
+
+    @Override
+    protected void candidateEvaluated(ProblemDefinition problemDef, ControlProviderDefinition<C> candidate, Evaluator.Status status) {
+        ControlStats stats = controlStats.get(candidate);
+        if (stats == null || status == Evaluator.Status.RUNNING)
+            return;
+        stats.numTries++;
+        totalTries++;
+        if (status == Evaluator.Status.SUCCESS)
+            stats.numSuccesses++;
+        else {
+            //Only failures from full fidelity sims have a sim time (not cached or screened out ones)
+            Float simTime = problemSimTimes.get(candidate);
+            if (simTime != null) {
+                stats.numTimedFailures++;
+                stats.totalFailureSimTime += simTime;
+                maxMeanFailureSimTime = Math.max(maxMeanFailureSimTime, stats.getMeanFailureSimTime());
+            }
+        }
+    }
+
+    @Override
+    protected void addToControlEnsemble(ProblemDefinition problem, ControlProviderDefinition<C> control) {
+        double[] problemParams = problem.getParamsArray();
+        if (solvedProblemIndex == null)
+            solvedProblemIndex = new KDIndex<ControlProviderDefinition<C>>(problemParams.length);
+
+        //Start stats for this control if it's new to the ensemble
+        ControlStats stats = controlStats.get(control);
+        if (stats == null) {
+            stats = new ControlStats(controlStats.size());
+            controlStats.put(control, stats);
+        }
+
+        solvedProblemIndex.insert(problemParams, control, stats.order);
+        ensembleEntries.add(new ProblemSolutionEntry(problem, control));
+    }
+
+    @Override
+    protected List<ProblemSolutionEntry> getControlEnsembleEntries() {
+        return ensembleEntries;
+    }
+
+    //State layout (Java serialization stream): int numControls, then per control (in order added) int numTries,
+    //int numSuccesses, int numTimedFailures, double totalFailureSimTime; then int totalTries,
+    //double maxMeanFailureSimTime, Random random
+    @Override
+    protected void saveStates(ExplorerCheckpoint checkpoint) throws IOException {
+        super.saveStates(checkpoint);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeInt(controlStats.size());
+        for (ControlStats stats : controlStats.values()) {
+            out.writeInt(stats.numTries);
+            out.writeInt(stats.numSuccesses);
+            out.writeInt(stats.numTimedFailures);
+            out.writeDouble(stats.totalFailureSimTime);
+        }
+        out.writeInt(totalTries);
+        out.writeDouble(maxMeanFailureSimTime);
+        out.writeObject(random);
+        out.close();
+        checkpoint.putState(CONTROL_STATS_STATE, bytes.toByteArray());
+    }
+
+    @Override
+    protected void restoreStates(ExplorerCheckpoint checkpoint) throws IOException {
+        super.restoreStates(checkpoint);
+        byte[] state = checkpoint.getState(CONTROL_STATS_STATE);
+        if (state == null) {
+            log.warn("Checkpoint has no bandit control stats; resuming with them afresh");
+            return;
+        }
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(state));
+        //Stats are in the order controls were added, as the ensemble is rebuilt in
+        if (in.readInt() != controlStats.size())
+            throw new IOException("Checkpoint's bandit control stats don't match its control ensemble");
+        for (ControlStats stats : controlStats.values()) {
+            stats.numTries = in.readInt();
+            stats.numSuccesses = in.readInt();
+            stats.numTimedFailures = in.readInt();
+            stats.totalFailureSimTime = in.readDouble();
+        }
+        totalTries = in.readInt();
+        maxMeanFailureSimTime = in.readDouble();
+        try {
+            random = (Random)in.readObject();
+        }
+        catch (ClassNotFoundException error) {
+            throw new IOException("Corrupt bandit control stats in checkpoint", error);
+        }
+    }
+
+    //Samples Beta(alpha, beta) from a pair of gamma samples
+    double sampleBeta(double alpha, double beta) {
+        double x = sampleGamma(alpha);
+        double y = sampleGamma(beta);
+        return x/(x + y);
+    }
+
+    //Samples Gamma(shape, 1) by Marsaglia & Tsang's method (boosting shapes below 1)
+    double sampleGamma(double shape) {
+        if (shape < 1.0)
+            return sampleGamma(shape + 1.0)*Math.pow(random.nextDouble(), 1.0/shape);
+        double d = shape - 1.0/3.0;
+        double c = 1.0/Math.sqrt(9.0*d);
+        while (true) {
+            double x = random.nextGaussian();
+            double v = 1.0 + c*x;
+            if (v <= 0)
+                continue;
+            v = v*v*v;
+            double u = random.nextDouble();
+            if (Math.log(u) < 0.5*x*x + d - d*v + d*Math.log(v))
+                return d*v;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package edu.cmu.cs.graphics.hopper.explore;
+
+import edu.cmu.cs.graphics.hopper.control.AvatarDefinition;
+import edu.cmu.cs.graphics.hopper.control.BipedHopperDefinition;
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.eval.EvalStore;
+import edu.cmu.cs.graphics.hopper.eval.EvaluatorDefinition;
+import edu.cmu.cs.graphics.hopper.io.BatchResultsWriter;
+import edu.cmu.cs.graphics.hopper.io.IOUtils;
+import edu.cmu.cs.graphics.hopper.math.Fingerprint;
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+import org.apache.commons.cli.*;
+import org.apache.commons.configuration.Configuration;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Headless program that evaluates every control of an ensemble (dirs of .sol files) on every problem of a generated
+ * terrain problem set, using all cores, and writes the results matrix to a columnar file (see BatchResultsWriter).
+ * Uses the same problem set properties as ExplorerMain, so a batch can be run over an exploration's problems. */
+public class BatchEvalMain {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchEvalMain.class);
+
+    public static void main(String[] args) {
+        DOMConfigurator.configure("config/log4j.xml");
+
+        CommandLine cmd = ConfigUtils.parseCommandLine(new Options(), args, "Batch evaluation");
+        if (cmd == null)
+            return;
+        Configuration config = ConfigUtils.loadConfig(cmd, "Batch evaluation");
+        if (config == null)
+            return;
+
+        String[] ensemblePaths = config.getStringArray("batchEnsemblePath");
+        String outputPath = config.getString("batchOutputPath", "data/batch/");
+        String outputFilename = config.getString("batchOutputFilename", "results.hbe");
+        int numEvalThreads = config.getInt("numEvalThreads", Runtime.getRuntime().availableProcessors());
+        boolean useWorldTemplates = config.getBoolean("useWorldTemplates", true);
+        boolean useSimCheckpoints = config.getBoolean("useSimCheckpoints", false);
+        int maxSimCheckpoints = config.getInt("maxSimCheckpoints", 32);
+        int maxSimCheckpointHop = config.getInt("maxSimCheckpointHop", 3);
+        boolean saveEvals = config.getBoolean("saveEvals", false);
+        String saveEvalsDir = outputPath + "evals/";
+        String evalStorePath = config.getString("evalStorePath", "");
+
+        long t0 = System.currentTimeMillis();
+
+        //Terrain test & its evaluation (same generation as ExplorerMain)
+        List<ProblemDefinition> problems = ConfigUtils.createProblems(config);
+        EvaluatorDefinition evalDef = ConfigUtils.createEvaluatorDefinition(config, ConfigUtils.createTerminationRules(config));
+
+        //Ensemble controls (in load order; control indices in the output refer to this order)
+        List<ControlProviderDefinition<?>> controls = new ArrayList<ControlProviderDefinition<?>>();
+        for (String ensemblePath : ensemblePaths) {
+            for (ProblemSolutionEntry entry : IOUtils.instance().loadAllProblemSolutionEntriesInDir(ensemblePath)) {
+                if (entry != null)
+                    controls.add(entry.solution);
+            }
+        }
+
+        AvatarDefinition avatarDef = new BipedHopperDefinition();
+
+        BatchEvaluator evaluator = new BatchEvaluator();
+        evaluator.setNumThreads(numEvalThreads);
+        evaluator.setUseWorldTemplates(useWorldTemplates);
+        evaluator.setUseSimCheckpoints(useSimCheckpoints);
+        evaluator.setMaxSimCheckpoints(maxSimCheckpoints);
+        evaluator.setMaxSimCheckpointHop(maxSimCheckpointHop);
+        evaluator.setEvalsSaved(saveEvals);
+        evaluator.setEvalsSavePath(saveEvalsDir);
+
+        //Saved evals go to a persistent eval store instead of .ech files, if configured
+        EvalStore evalStore = null;
+        if (saveEvals && !evalStorePath.isEmpty()) {
+            try {
+                evalStore = EvalStore.open(evalStorePath);
+                evaluator.setEvalStore(evalStore);
+            }
+            catch (IOException error) {
+                log.error("Error opening eval store at " + evalStorePath + "; saving .ech files instead");
+                error.printStackTrace();
+            }
+        }
+
+        Fingerprint[] problemKeys = new Fingerprint[problems.size()];
+        for (int i = 0; i < problemKeys.length; i++)
+            problemKeys[i] = problems.get(i).getFingerprint();
+        Fingerprint[] controlKeys = new Fingerprint[controls.size()];
+        for (int i = 0; i < controlKeys.length; i++)
+            controlKeys[i] = controls.get(i).getFingerprint();
+
+        log.info("Starting batch evaluation of " + problems.size() + " problems x " + controls.size() + " controls on " +
+                 numEvalThreads + " threads");
+        IOUtils.instance().ensurePathExists(outputPath);
+        BatchResultsWriter out = null;
+        try {
+            out = new BatchResultsWriter(outputPath + outputFilename, problemKeys, controlKeys);
+            evaluator.evaluate(problems, controls, avatarDef, evalDef, out);
+        }
+        catch (IOException error) {
+            log.error("Error writing batch evaluation results to " + outputPath + outputFilename);
+            error.printStackTrace();
+        }
+        finally {
+            try {
+                if (out != null)
+                    out.close();
+            }
+            catch (IOException error) {
+                log.error("Error closing batch evaluation results file");
+            }
+            try {
+                if (evalStore != null)
+                    evalStore.close();
+            }
+            catch (IOException error) {
+                log.error("Error closing eval store at " + evalStorePath);
+            }
+        }
+
+        long runtime = System.currentTimeMillis() - t0;
+        String runtimeStr = String.format("%02d:%02d:%02d", TimeUnit.MILLISECONDS.toHours(runtime),
+                TimeUnit.MILLISECONDS.toMinutes(runtime) - TimeUnit.HOURS.toMinutes(TimeUnit.MILLISECONDS.toHours(runtime)),
+                TimeUnit.MILLISECONDS.toSeconds(runtime) - TimeUnit.MINUTES.toSeconds(TimeUnit.MILLISECONDS.toMinutes(runtime)));
+
+        log.info("Batch evaluation COMPLETE");
+        log.info("Runtime:     " + runtimeStr);
+        log.info("Cells:       " + (out != null ? out.getNumRows() : 0) + "/" + (problems.size() * controls.size()));
+        log.info("Successes:   " + evaluator.getNumSuccesses());
+        log.info("Failures:    " + evaluator.getNumFailures());
+        if (evaluator.getNumFailedCells() > 0)
+            log.error("Errors:      " + evaluator.getNumFailedCells() + " cells couldn't be evaluated (see log above)");
+        log.info("Sim Steps:   " + evaluator.getNumSteps());
+    }
+}
@@ -0,0 +1,209 @@
+package edu.cmu.cs.graphics.hopper.explore;
+
+import edu.cmu.cs.graphics.hopper.control.AvatarDefinition;
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.eval.EvalCacheEntry;
+import edu.cmu.cs.graphics.hopper.eval.EvalCacheKey;
+import edu.cmu.cs.graphics.hopper.eval.EvalCacheValue;
+import edu.cmu.cs.graphics.hopper.eval.EvalStore;
+import edu.cmu.cs.graphics.hopper.eval.Evaluator;
+import edu.cmu.cs.graphics.hopper.eval.EvaluatorDefinition;
+import edu.cmu.cs.graphics.hopper.io.BatchResultsWriter;
+import edu.cmu.cs.graphics.hopper.io.IOUtils;
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+import edu.cmu.cs.graphics.hopper.problems.ProblemInstance;
+import edu.cmu.cs.graphics.hopper.problems.SimCheckpointCache;
+import edu.cmu.cs.graphics.hopper.problems.SimProfile;
+import edu.cmu.cs.graphics.hopper.problems.WorldTemplateCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Evaluates every control of a set on every problem of a set (no oracles, no early stopping on success),
+ * spreading the sims over multiple threads & streaming each result to a BatchResultsWriter as it completes.
+ * Cells are handed out problem by problem, so concurrent sims mostly share a problem's world templates & checkpoints. */
+public class BatchEvaluator {
+    private static final Logger log = LoggerFactory.getLogger(BatchEvaluator.class);
+
+    int numThreads = Runtime.getRuntime().availableProcessors();
+    boolean useWorldTemplates = true;
+    boolean useSimCheckpoints = false;     //opt-in, see SimCheckpointCache.isSupported()
+    int maxSimCheckpoints = 32;
+    int maxSimCheckpointHop = 3;
+    SimProfile simProfile = SimProfile.VERIFY;
+
+    //If true, each result is also saved as an eval cache entry (as Explorer does), for warming later explorations' caches
+    boolean evalsSaved = false;
+    String evalsSavePath = "";
+    //If non-null, saved evals are appended to this store rather than written as individual .ech files
+    EvalStore evalStore = null;
+
+    //Results between progress log lines (none if <= 0)
+    int progressInterval = 1000;
+
+    int numSuccesses;
+    int numFailures;
+    long numSteps;
+    //Cells whose sims threw (so have no result written), as {problemIdx, controlIdx}
+    final List<int[]> failedCells = new ArrayList<int[]>();
+
+    public void setNumThreads(int val) {numThreads = val;}
+    public void setUseWorldTemplates(boolean val) {useWorldTemplates = val;}
+    public void setUseSimCheckpoints(boolean val) {useSimCheckpoints = val;}
+    public void setMaxSimCheckpoints(int val) {maxSimCheckpoints = val;}
+    public void setMaxSimCheckpointHop(int val) {maxSimCheckpointHop = val;}
+    public void setSimProfile(SimProfile val) {simProfile = val;}
+    public void setEvalsSaved(boolean val) {evalsSaved = val;}
+    public void setEvalsSavePath(String path) {evalsSavePath = path;}
+    public void setEvalStore(EvalStore val) {evalStore = val;}
+    public void setProgressInterval(int val) {progressInterval = val;}
+
+    public int getNumSuccesses() {return numSuccesses;}
+    public int getNumFailures() {return numFailures;}
+    /** Returns number of cells which couldn't be evaluated because their sim threw (see getFailedCells()) */
+    public synchronized int getNumFailedCells() {return failedCells.size();}
+    /** Returns {problemIdx, controlIdx} of each cell which couldn't be evaluated, in no particular order */
+    public synchronized List<int[]> getFailedCells() {return new ArrayList<int[]>(failedCells);}
+    /** Returns total sim steps of all evaluated cells (including any skipped by resuming from checkpoints) */
+    public long getNumSteps() {return numSteps;}
+
+    /** Simulates every (problem, control) pair & writes each result to out (which is not closed here).
+     * Problem & control indices written are those of the given lists. */
+    public void evaluate(final List<ProblemDefinition> problems, final List<? extends ControlProviderDefinition<?>> controls,
+                         final AvatarDefinition avatarDef, final EvaluatorDefinition evalDef,
+                         final BatchResultsWriter out) throws IOException {
+        numSuccesses = 0;
+        numFailures = 0;
+        numSteps = 0;
+        synchronized (this) {
+            failedCells.clear();
+        }
+
+        final int numCells = problems.size() * controls.size();
+        final int threadCount = Math.max(1, Math.min(numThreads, numCells));
+        if (evalsSaved && evalStore == null)
+            IOUtils.instance().ensurePathExists(evalsSavePath);
+
+        //Threads work their way through at most a couple of problems at a time
+        final WorldTemplateCache worldTemplates = useWorldTemplates ? new WorldTemplateCache(threadCount + 1) : null;
+        if (useSimCheckpoints && !SimCheckpointCache.isSupported())
+            log.warn("Sim checkpoints aren't supported by this JVM, so won't be used");
+        final SimCheckpointCache checkpoints = (useSimCheckpoints && SimCheckpointCache.isSupported()) ?
+                new SimCheckpointCache(threadCount + 1, maxSimCheckpoints, maxSimCheckpointHop, simProfile) : null;
+
+        final AtomicInteger nextCell = new AtomicInteger();
+        final IOException[] writeError = new IOException[1];
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int cell;
+                    while ((cell = nextCell.getAndIncrement()) < numCells) {
+                        int problemIdx = cell / controls.size();
+                        int controlIdx = cell % controls.size();
+                        ProblemDefinition problemDef = problems.get(problemIdx);
+                        ControlProviderDefinition<?> controlDef = controls.get(controlIdx);
+
+                        ProblemInstance problem = new ProblemInstance(problemDef, avatarDef, evalDef, controlDef);
+                        problem.setWorldTemplates(worldTemplates);
+                        problem.setCheckpoints(checkpoints);
+                        problem.setSimProfile(simProfile);
+                        try {
+                            problem.init();
+                            problem.run();
+                        }
+                        catch (RuntimeException error) {
+                            //Skip to the next cell rather than losing this thread's share of the batch
+                            recordFailedCell(problemIdx, controlIdx, error);
+                            continue;
+                        }
+                        finally {
+                            problem.release();
+                        }
+
+                        Evaluator.Status status = problem.getStatus();
+                        if (evalsSaved)
+                            saveEval(problemDef, controlDef, status);
+                        if (!record(out, problemIdx, controlIdx, problem, writeError))
+                            return;
+                    }
+                }
+            }, "BatchEval-" + t);
+            threads[t].start();
+        }
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            }
+            catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for batch evaluation to complete");
+            }
+        }
+        if (writeError[0] != null)
+            throw writeError[0];
+        out.flush();
+    }
+
+    private synchronized void recordFailedCell(int problemIdx, int controlIdx, RuntimeException error) {
+        failedCells.add(new int[] {problemIdx, controlIdx});
+        log.error("Error evaluating problem " + problemIdx + " with control " + controlIdx + "; no result written (" +
+                  error + ")");
+        if (failedCells.size() == 1)
+            error.printStackTrace();
+    }
+
+    /** Writes result of given (finished) problem instance; returns false if writing has failed (on any thread) */
+    private boolean record(BatchResultsWriter out, int problemIdx, int controlIdx, ProblemInstance problem,
+                           IOException[] writeError) {
+        Evaluator.Status status = problem.getStatus();
+        synchronized (out) {
+            if (writeError[0] != null)
+                return false;
+            try {
+                out.write(problemIdx, controlIdx, status, problem.getSimTime(), problem.getStepCount(),
+                          problem.getEvaluator().getFitness());
+            }
+            catch (IOException error) {
+                log.error("Error writing batch evaluation results");
+                writeError[0] = error;
+                return false;
+            }
+
+            if (status == Evaluator.Status.SUCCESS)
+                numSuccesses++;
+            else
+                numFailures++;
+            numSteps += problem.getStepCount();
+            if (progressInterval > 0 && out.getNumRows() % progressInterval == 0)
+                log.info("Evaluated " + out.getNumRows() + " cells (" + numSuccesses + " successes)");
+        }
+        return true;
+    }
+
+    private void saveEval(ProblemDefinition problemDef, ControlProviderDefinition<?> controlDef, Evaluator.Status result) {
+        if (evalStore != null) {
+            try {
+                evalStore.put(problemDef, controlDef, result);
+            }
+            catch (IOException error) {
+                log.error("Error appending eval to eval store");
+            }
+            return;
+        }
+        EvalCacheKey key = new EvalCacheKey(problemDef, controlDef);
+        String filename = key.getFingerprint() + ".ech";
+        try {
+            IOUtils.instance().saveEvalCacheEntry(new EvalCacheEntry(key, new EvalCacheValue(result)), evalsSavePath, filename);
+        }
+        catch (IOException error) {
+            log.error("Error saving eval to " + evalsSavePath + filename + ": " + error);
+        }
+    }
+}
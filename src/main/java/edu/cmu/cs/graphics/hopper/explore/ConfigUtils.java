@@ -0,0 +1,100 @@
+package edu.cmu.cs.graphics.hopper.explore;
+
+import edu.cmu.cs.graphics.hopper.eval.*;
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+import edu.cmu.cs.graphics.hopper.problems.TerrainProblemGenerator;
+import org.apache.commons.cli.*;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Command line & config file handling shared by the exploration programs (ExplorerMain, BatchEvalMain), so that they
+ * read the same problem set & evaluation properties the same way. Problems that stop a program from starting are logged
+ * here, with null returned. */
+public class ConfigUtils {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfigUtils.class);
+
+    /** Parses given command line, which must name a config file via -configFile (added to options here), & returns it */
+    public static CommandLine parseCommandLine(Options options, String[] args, String configDescription) {
+        options.addOption("configFile", true, configDescription + " configuration file name/path");
+
+        CommandLineParser parser = new GnuParser();
+        try {
+            return parser.parse(options, args);
+        }
+        catch (ParseException parseError) {
+            log.error("Error occurred while parsing command line inputs");
+            parseError.printStackTrace();
+            return null;
+        }
+    }
+
+    /** Loads config file named by given command line's -configFile */
+    public static Configuration loadConfig(CommandLine cmd, String configDescription) {
+        String configFilePath = cmd.getOptionValue("configFile");
+        log.info("Loading config file: " + configFilePath);
+        if (configFilePath == null || configFilePath.isEmpty()) {
+            log.error("No config file specified! Exiting... ");
+            return null;
+        }
+        try {
+            File configFile = new File(configFilePath);
+            String fullFilePath = configFile.getAbsolutePath();
+            return new PropertiesConfiguration(fullFilePath);
+        } catch (ConfigurationException e) {
+            log.error("Error while trying to load " + configDescription.toLowerCase() + " config file: " + configFilePath);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /** Returns generator of terrain problems as given by the config's problem set properties
+     * (terrainLength, terrainDeltaX, terrainMaxAmp) */
+    public static TerrainProblemGenerator createTerrainGenerator(Configuration config) {
+        int terrainLength = config.getInt("terrainLength");
+        float terrainDeltaX = config.getFloat("terrainDeltaX");
+        String[] terrainMaxAmpStrs = config.getStringArray("terrainMaxAmp");
+        float[] terrainMaxAmps = new float[terrainMaxAmpStrs.length];
+        for (int i = 0; i < terrainMaxAmps.length; i++)
+            terrainMaxAmps[i] = Float.parseFloat(terrainMaxAmpStrs[i]);
+        return new TerrainProblemGenerator(terrainLength, terrainDeltaX, terrainMaxAmps);
+    }
+
+    /** Returns the problem set given by the config's problem set properties (numProblems per amplitude, terrainSeed) */
+    public static List<ProblemDefinition> createProblems(Configuration config) {
+        return createTerrainGenerator(config).generate(config.getInt("numProblems"), config.getInt("terrainSeed"));
+    }
+
+    /** Returns early termination rules enabled by the config (each off unless enabled) */
+    public static List<TerminationRuleDefinition> createTerminationRules(Configuration config) {
+        List<TerminationRuleDefinition> terminationRules = new ArrayList<TerminationRuleDefinition>();
+        if (config.getBoolean("earlyExitPitch", false))
+            terminationRules.add(new PitchTerminationRuleDefinition(config.getFloat("earlyExitMaxPitch", 2.0f),
+                                                                    config.getFloat("earlyExitPitchTime", 0.5f)));
+        if (config.getBoolean("earlyExitStalled", false))
+            terminationRules.add(new StalledProgressTerminationRuleDefinition(config.getFloat("earlyExitStallTime", 3.0f),
+                                                                              config.getFloat("earlyExitMinProgress", 0.5f)));
+        if (config.getBoolean("earlyExitLowApex", false))
+            terminationRules.add(new LowApexTerminationRuleDefinition(config.getFloat("earlyExitMinApexClearance", 3.0f)));
+        return terminationRules;
+    }
+
+    /** Returns evaluation of sims on the config's problems: success means clearing the end of the terrain & staying
+     * upright for a while, within the time limit */
+    public static EvaluatorDefinition createEvaluatorDefinition(Configuration config,
+                                                                List<TerminationRuleDefinition> terminationRules) {
+        float maxTime = 15.0f;
+        float minXForSuccess = createTerrainGenerator(config).getTerrainEndX();
+        float maxUprightDeviation = 1.0f;
+        float minConsecutiveUprightTimeAfterMinXReached = 3.0f;
+        return new BipedObstacleEvaluatorDefinition(maxTime, minXForSuccess, maxUprightDeviation, minConsecutiveUprightTimeAfterMinXReached,
+                                                    terminationRules);
+    }
+}
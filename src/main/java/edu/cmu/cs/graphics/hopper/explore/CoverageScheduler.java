@@ -0,0 +1,72 @@
+package edu.cmu.cs.graphics.hopper.explore;
+
+import edu.cmu.cs.graphics.hopper.math.MathUtils;
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+
+import java.util.*;
+
+/** Schedules problems by their distance (in problem param space) from those already explored: farthest first spreads
+ * exploration over the whole space early on (so oracle solutions cover it evenly), while nearest first grows the
+ * explored region outward from what's known. Ties go to the problem given first.
+ * Each unsolved problem's distance to its nearest explored problem is kept up to date as problems are explored
+ * (a pass over the unsolved problems for each one explored). */
+public class CoverageScheduler extends ProblemScheduler {
+    final boolean farthestFirst;
+
+    List<double[]> exploredParams = new ArrayList<double[]>();
+    Set<ProblemDefinition> explored = new HashSet<ProblemDefinition>();
+    //Params & squared distance to nearest explored problem, for problems we've been asked to schedule
+    Map<ProblemDefinition, Coverage> coverages = new HashMap<ProblemDefinition, Coverage>();
+
+    static final class Coverage {
+        final double[] params;
+        double distSqrd = Double.POSITIVE_INFINITY;
+
+        Coverage(double[] params) {
+            this.params = params;
+        }
+    }
+
+    public CoverageScheduler(boolean farthestFirst) {
+        this.farthestFirst = farthestFirst;
+    }
+
+    @Override
+    public String getName() {return farthestFirst ? FARTHEST_FIRST : NEAREST_FIRST;}
+
+    @Override
+    public void addOutcome(ProblemDefinition problem, boolean solvedByExplorer) {
+        if (!explored.add(problem))
+            return;
+        coverages.remove(problem);
+        double[] params = problem.getParamsArray();
+        exploredParams.add(params);
+        for (Coverage coverage : coverages.values())
+            coverage.distSqrd = Math.min(coverage.distSqrd, MathUtils.deltaSqrd(coverage.params, params));
+    }
+
+    @Override
+    public ProblemDefinition nextProblem(Collection<ProblemDefinition> unsolvedProblems) {
+        ProblemDefinition best = null;
+        double bestDistSqrd = 0.0;
+        for (ProblemDefinition problem : unsolvedProblems) {
+            double distSqrd = getCoverage(problem).distSqrd;
+            if (best == null || (farthestFirst ? distSqrd > bestDistSqrd : distSqrd < bestDistSqrd)) {
+                best = problem;
+                bestDistSqrd = distSqrd;
+            }
+        }
+        return best;
+    }
+
+    private Coverage getCoverage(ProblemDefinition problem) {
+        Coverage coverage = coverages.get(problem);
+        if (coverage == null) {
+            coverage = new Coverage(problem.getParamsArray());
+            for (double[] params : exploredParams)
+                coverage.distSqrd = Math.min(coverage.distSqrd, MathUtils.deltaSqrd(coverage.params, params));
+            coverages.put(problem, coverage);
+        }
+        return coverage;
+    }
+}
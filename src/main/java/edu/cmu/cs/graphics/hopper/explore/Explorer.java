@@ -5,18 +5,28 @@ import edu.cmu.cs.graphics.hopper.control.Control;
 import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
 import edu.cmu.cs.graphics.hopper.eval.*;
 import edu.cmu.cs.graphics.hopper.io.IOUtils;
+import edu.cmu.cs.graphics.hopper.io.WriteBehindQueue;
 import edu.cmu.cs.graphics.hopper.net.HopperPlaySnap;
 import edu.cmu.cs.graphics.hopper.net.ServerInterface;
 import edu.cmu.cs.graphics.hopper.net.SnapServerInterface;
 import edu.cmu.cs.graphics.hopper.oracle.ChallengeOracle;
 import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
 import edu.cmu.cs.graphics.hopper.problems.ProblemInstance;
+import edu.cmu.cs.graphics.hopper.problems.SimCheckpointCache;
+import edu.cmu.cs.graphics.hopper.problems.SimProfile;
+import edu.cmu.cs.graphics.hopper.problems.SimProfileAgreement;
+import edu.cmu.cs.graphics.hopper.problems.WorldTemplateCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /** Runs automated explorations, given a problem set*/
 public abstract class Explorer<C extends Control> {
@@ -31,6 +41,10 @@ public abstract class Explorer<C extends Control> {
     protected int numTests;
     protected int numOracleChallenges;
 
+    //Sims run speculatively alongside counted tests, whose results turned out to be unneeded (not included in numTests)
+    protected int numSpeculativeTests;
+    protected int numCancelledSpeculativeTests;
+
     String explorationName;
 
     //Oracles consulted for challenge problems. Challenges are presented to oracles in successive
@@ -50,25 +64,130 @@ public abstract class Explorer<C extends Control> {
 
     boolean logSaved = false;
     String logSavePath = "";
+    ExplorerLogWriter.Format logFormat = ExplorerLogWriter.Format.CSV;
+    boolean logCompressed = false;
+    int logFlushRows = 1000;
+    long logFlushMillis = 5000;
+    long logMaxRowsPerFile = 0;
 
     boolean evalsSaved = false;
     String evalsSavePath = "";
+    //If non-null, saved evals are appended to this store rather than written as individual .ech files
+    EvalStore evalStore = null;
 
     boolean ctrlEnsembleSaved = false;
     String ctrlEnsembleSavePath = "";
 
+    //If > 0, saves (of solutions, evals & ensemble entries) are queued & written on a background thread rather than on
+    //the exploration thread; once this many writes are queued, exploration waits for the writer to catch up
+    int saveQueueCapacity = 0;
+    WriteBehindQueue saveQueue;
+    static final int SAVE_BATCH_SIZE = 64;
+
     //If true, solutions from oracle are verified for correctness; if incorrect, sampled simulation is forwarded to the oracle for review
     boolean verifyOracleSols = false;
 
     //Max control tests run on a problem before we give up and hand it to the oracles (arbitrarily high if == -1)
     int maxTestsPerProblem = -1;
 
-    FileWriter logWriter;
+    //Number of threads used to simulate candidate controls (if <= 1, candidates are simulated one at a time on the exploration thread)
+    int numEvalThreads = 1;
+    ExecutorService evalExecutor;
+
+    //If true, candidate sims reuse prebuilt worlds holding each problem's static geometry rather than building new ones
+    boolean useWorldTemplates = true;
+    WorldTemplateCache worldTemplates;
+
+    //If true, candidate sims resume from hop-boundary checkpoints of earlier sims sharing their first few controls
+    //(and reuse the outcome of earlier sims which ended within a shared control prefix)
+    //Off by default: checkpoints deep-copy Box2D's internals reflectively (see SimCheckpointCache.isSupported())
+    boolean useSimCheckpoints = false;
+    int maxSimCheckpoints = 32;
+    int maxSimCheckpointHop = 3;
+    SimCheckpointCache simCheckpoints;
+
+    //If non-null, candidates are first simulated with this cheaper profile; apparent successes (and every Nth apparent
+    //failure, as an audit) are then re-run at full fidelity, with agreement between the two tallied
+    SimProfile screeningProfile = null;
+    int screeningAuditInterval = 20;
+    int numScreenedFailures;
+    int numVerifySims;
+    SimProfileAgreement screeningAgreement;
+
+    //If non-null, candidates this filter says are known to fail are taken as failures without being simulated
+    //(a small fraction, per the filter's false positive rate, may be wrongly skipped); fresh failures are added to it
+    //The filter is saved with checkpoints, & a resumed exploration picks it up.
+    FailureFilter failureFilter = null;
+    static final String FAILURE_FILTER_STATE = "failureFilter";
+    int numKnownFailuresSkipped;
+
+    //If non-null, a learned model of which candidates succeed, which learns from each full fidelity sim of a problem
+    //once the problem's done (so which candidates are tested doesn't depend on the eval batch size). If ranking, each problem's candidates are pulled in windows of successPredictorRankWindow (all at once if <= 0), each
+    //tried most likely to succeed first (ties in the explorer's order). If the skip threshold is positive, candidates
+    //rated below it are skipped untested, once the predictor has learned from enough evals; every Nth of those is tested
+    //anyway, as an audit, so that the share of solutions lost by skipping can be estimated.
+    //The predictor (& its counts) are saved with checkpoints, & a resumed exploration picks them up.
+    static final String SUCCESS_PREDICTOR_STATE = "successPredictor";
+    SuccessPredictor successPredictor = null;
+    boolean successPredictorRanking = false;
+    int successPredictorRankWindow = 64;
+    double successPredictorSkipThreshold = 0.0;
+    long successPredictorMinSamples = 1000;
+    int successPredictorAuditInterval = 20;
+    int numPredictorSkips;
+    int numPredictorAudits;
+    int numPredictorAuditSuccesses;
+    int numPredictorSuccessesFound;
+    //Current window of problem's candidates (& their success probabilities) in rank order, if ranking by predictor
+    List<ControlProviderDefinition<C>> rankedCandidates;
+    double[] rankedCandidateProbs;
+    int nextRankedCandidateIdx;
+    boolean candidatesDrained;
+    Set<ControlProviderDefinition<C>> auditedCandidates = new HashSet<ControlProviderDefinition<C>>();
+    //Skips made while pulling the current batch, only counted once the candidates pulled after them are accounted for
+    //(see countPredictorSkips()): all of them, & for each pulled candidate, how many were made up to it
+    int numPendingPredictorSkips;
+    List<Integer> pulledCandidateSkips = new ArrayList<Integer>();
+    //Problem's evals the predictor learns from once the problem is done, so that it rates all of a problem's candidates
+    //with the same model however many were pulled ahead of their predecessors' results
+    List<ControlProviderDefinition<C>> pendingPredictorControls = new ArrayList<ControlProviderDefinition<C>>();
+    List<Boolean> pendingPredictorSuccesses = new ArrayList<Boolean>();
+
+    ExplorerLogWriter logWriter;
+
+    //Decides order in which unsolved problems are tackled (& challenges handed to the oracles)
+    ProblemScheduler problemScheduler = new InOrderScheduler();
+
+    //If non-empty, a checkpoint of the exploration is saved here every checkpointInterval problems (& at the end),
+    //from which an interrupted exploration can be resumed (see resumeFrom())
+    String checkpointPath = "";
+    int checkpointInterval = 25;
+    ExplorerCheckpoint resumeCheckpoint;
+    int numProblemsExplored;
+
+    //Stats of the problem (or oracle challenge) being worked on, for its log entry
+    int problemTests;
+    int problemCacheHits;
+    final AtomicLong problemSimSteps = new AtomicLong();     //added to by eval threads
+    long problemStartTime;
 
     public ExplorerLog getLog() {return expLog;}
 
     public int getNumTests() {return numTests;}
     public int getNumOracleChallenges() {return numOracleChallenges;}
+    public int getNumSpeculativeTests() {return numSpeculativeTests;}
+    public int getNumCancelledSpeculativeTests() {return numCancelledSpeculativeTests;}
+    public SimCheckpointCache getSimCheckpoints() {return simCheckpoints;}
+    public int getNumVerifySims() {return numVerifySims;}
+    public SimProfileAgreement getScreeningAgreement() {return screeningAgreement;}
+    public int getNumKnownFailuresSkipped() {return numKnownFailuresSkipped;}
+    public int getNumPredictorSkips() {return numPredictorSkips;}
+    public int getNumPredictorAudits() {return numPredictorAudits;}
+    public int getNumPredictorAuditSuccesses() {return numPredictorAuditSuccesses;}
+    /** Returns number of successful tests while a success predictor was in use (each solved problem's solution) */
+    public int getNumPredictorSuccessesFound() {return numPredictorSuccessesFound;}
+    /** Returns queue of background saves used by the last exploration (null if saves were synchronous) */
+    public WriteBehindQueue getSaveQueue() {return saveQueue;}
 
     public int getNumProblems() {return getNumSolvedProblems() + getNumUnsolvedProblems() + getNumFailedProblems();}
     public int getNumUnsolvedProblems() {return unsolvedProblems.size();}
@@ -83,16 +202,47 @@ public abstract class Explorer<C extends Control> {
     public void setSolutionsSavePath(String path) { solsSavePath = path; }
     public void setLogSaved(boolean val) { logSaved = val; }
     public void setLogSavePath(String path) { logSavePath = path; }
+    public void setLogFormat(ExplorerLogWriter.Format val) {logFormat = val;}
+    public void setLogCompressed(boolean val) {logCompressed = val;}
+    /** Sets how many log rows (or ms, whichever comes first) are buffered before being flushed to the log file */
+    public void setLogFlushInterval(int rows, long millis) {logFlushRows = rows; logFlushMillis = millis;}
+    /** Sets max rows per log file before rotating to a new one (no rotation if <= 0) */
+    public void setLogMaxRowsPerFile(long val) {logMaxRowsPerFile = val;}
     public void setEvalsSaved(boolean val) {evalsSaved = val;}
     public void setEvalsSavePath(String path) { evalsSavePath = path; }
+    public void setEvalStore(EvalStore val) {evalStore = val;}
     public void setControlEnsembleSaved(boolean val) {ctrlEnsembleSaved = val;}
     public void setControlEnsembleSavePath(String path) { ctrlEnsembleSavePath = path; }
+    public void setSaveQueueCapacity(int val) {saveQueueCapacity = val;}
+    public void setCheckpointPath(String path) {checkpointPath = path;}
+    /** Sets number of problems explored between checkpoints */
+    public void setCheckpointInterval(int val) {checkpointInterval = val;}
+    public void setProblemScheduler(ProblemScheduler val) {problemScheduler = val;}
+    public ProblemScheduler getProblemScheduler() {return problemScheduler;}
 
     public void setMaxTestsPerProblem(int val) {maxTestsPerProblem = val;}
+    public void setNumEvalThreads(int val) {numEvalThreads = val;}
+    public void setUseWorldTemplates(boolean val) {useWorldTemplates = val;}
+    public void setUseSimCheckpoints(boolean val) {useSimCheckpoints = val;}
+    public void setMaxSimCheckpoints(int val) {maxSimCheckpoints = val;}
+    public void setMaxSimCheckpointHop(int val) {maxSimCheckpointHop = val;}
+    public void setScreeningProfile(SimProfile val) {screeningProfile = val;}
+    public void setScreeningAuditInterval(int val) {screeningAuditInterval = val;}
 
     public void setVerifyOracleSols(boolean val) { verifyOracleSols = val;}
 
     public void setEvalCache(EvalCache val) {evalCache = val;}
+    public EvalCache getEvalCache() {return evalCache;}
+    public void setFailureFilter(FailureFilter val) {failureFilter = val;}
+    public FailureFilter getFailureFilter() {return failureFilter;}
+    public void setSuccessPredictor(SuccessPredictor val) {successPredictor = val;}
+    public SuccessPredictor getSuccessPredictor() {return successPredictor;}
+    public void setSuccessPredictorRanking(boolean val) {successPredictorRanking = val;}
+    /** Sets number of candidates pulled & ranked at a time (<= 0 ranks all of a problem's candidates at once) */
+    public void setSuccessPredictorRankWindow(int val) {successPredictorRankWindow = val;}
+    public void setSuccessPredictorSkipThreshold(double val) {successPredictorSkipThreshold = val;}
+    public void setSuccessPredictorMinSamples(long val) {successPredictorMinSamples = val;}
+    public void setSuccessPredictorAuditInterval(int val) {successPredictorAuditInterval = val;}
 
     public void setServerInterface(SnapServerInterface val) {this.server = val;}
 
@@ -102,32 +252,100 @@ public abstract class Explorer<C extends Control> {
      * TODO: Make ensembles object oriented. */
     public abstract void loadEnsemble(String inputEnsemblePath);
 
+    /** Sets up this (newly created) explorer to continue the exploration saved in given checkpoint: its control ensemble
+     * is rebuilt now, & the next explore() picks up the checkpoint's problems, counters & log (ignoring the problems
+     * passed to it). Any ensemble loaded beforehand is kept too, so normally none should be. */
+    @SuppressWarnings("unchecked")
+    public void resumeFrom(ExplorerCheckpoint checkpoint) {
+        for (ProblemSolutionEntry entry : checkpoint.ensembleEntries)
+            addToControlEnsemble(entry.problem, (ControlProviderDefinition<C>)entry.solution);
+        resumeCheckpoint = checkpoint;
+    }
+
     /** Runs exploration in a continuous loop until all problems are solved */
     public void explore(List<ProblemDefinition> problems, AvatarDefinition avatarDef, EvaluatorDefinition evalDef, List<ChallengeOracle<C>> oracles) {
         explore(problems, avatarDef, evalDef, oracles, -1);
     }
 
     /** Runs exploration in a continuous loop until max control tests is reached or all problems are solved
-     * Runs until completion if maxTests == -1 (or anything < 0). */
+     * Runs until completion if maxTests == -1 (or anything < 0). If resuming (see resumeFrom()), problems are ignored. */
     public void explore(List<ProblemDefinition> problems, AvatarDefinition avatarDef, EvaluatorDefinition evalDef, List<ChallengeOracle<C>> oracles, int maxTests) {
+        ExplorerCheckpoint resumingFrom = resumeCheckpoint;
+        resumeCheckpoint = null;
+
         expLog = new ExplorerLog();
+        logWriter = null;
         if (logSaved) {
             IOUtils.instance().ensurePathExists(logSavePath);
-            try {
-                logWriter = new FileWriter(logSavePath + explorationName + "_ExpLog.csv");
-                logWriter.write(expLog.getCSVHeader());
-                logWriter.flush();
-            }
-            catch (IOException error) {
-                log.error("Error creating file path: " + logSavePath);
+            logWriter = new ExplorerLogWriter(logSavePath + explorationName + "_ExpLog", logFormat, logCompressed);
+            logWriter.setFlushInterval(logFlushRows, logFlushMillis);
+            logWriter.setMaxRowsPerFile(logMaxRowsPerFile);
+        }
+        //A resumed log is rewritten in full, dropping any rows logged after the checkpoint (they'll be logged again)
+        if (resumingFrom != null) {
+            expLog.entries.addAll(resumingFrom.logEntries);
+            if (logWriter != null) {
+                try {
+                    for (ExplorerLogEntry entry : resumingFrom.logEntries)
+                        logWriter.write(entry);
+                }
+                catch (IOException error) {
+                    log.error("Error writing to log file: " + logSavePath);
+                }
             }
         }
 
-        if (evalsSaved)
+        if (evalsSaved && evalStore == null)
             IOUtils.instance().ensurePathExists(evalsSavePath);
 
+        saveQueue = null;
+        if (saveQueueCapacity > 0 && (solsSaved || evalsSaved || ctrlEnsembleSaved)) {
+            saveQueue = new WriteBehindQueue(saveQueueCapacity, SAVE_BATCH_SIZE);
+            saveQueue.start();
+        }
+
+        int evalBatchSize = getEvalBatchSize();
+        if (evalBatchSize > 1)
+            evalExecutor = Executors.newFixedThreadPool(evalBatchSize, new EvalThreadFactory());
+
+        //Problems are explored one at a time, so templates only need to be kept around for the last couple
+        if (useWorldTemplates)
+            worldTemplates = new WorldTemplateCache(2);
+        SimProfile candidateProfile = (screeningProfile != null) ? screeningProfile : SimProfile.VERIFY;
+        if (useSimCheckpoints && !SimCheckpointCache.isSupported())
+            log.warn("Sim checkpoints aren't supported by this JVM, so won't be used");
+        simCheckpoints = (useSimCheckpoints && SimCheckpointCache.isSupported()) ?
+                new SimCheckpointCache(2, maxSimCheckpoints, maxSimCheckpointHop, candidateProfile) : null;
+        screeningAgreement = (screeningProfile != null) ? new SimProfileAgreement(screeningProfile, SimProfile.VERIFY) : null;
+
+        numProblemsExplored = 0;
         numTests = 0;
         numOracleChallenges = 0;
+        numSpeculativeTests = 0;
+        numCancelledSpeculativeTests = 0;
+        numScreenedFailures = 0;
+        numVerifySims = 0;
+        numKnownFailuresSkipped = 0;
+        numPredictorSkips = 0;
+        numPredictorAudits = 0;
+        numPredictorAuditSuccesses = 0;
+        numPredictorSuccessesFound = 0;
+        if (resumingFrom != null) {
+            numProblemsExplored = resumingFrom.numProblemsExplored;
+            numTests = resumingFrom.numTests;
+            numOracleChallenges = resumingFrom.numOracleChallenges;
+            numSpeculativeTests = resumingFrom.numSpeculativeTests;
+            numCancelledSpeculativeTests = resumingFrom.numCancelledSpeculativeTests;
+            numScreenedFailures = resumingFrom.numScreenedFailures;
+            numVerifySims = resumingFrom.numVerifySims;
+            numKnownFailuresSkipped = resumingFrom.numKnownFailuresSkipped;
+            try {
+                restoreStates(resumingFrom);
+            }
+            catch (IOException error) {
+                log.error("Error restoring learned state from checkpoint (resuming with it as configured): " + error);
+            }
+        }
 
         this.oracles = new ArrayList<ChallengeOracle<C>>();
         this.oracles.addAll(oracles);
@@ -141,82 +359,173 @@ public abstract class Explorer<C extends Control> {
         failedProblems = new LinkedHashSet<ProblemDefinition>();
         oracleChallengeProblems = new LinkedHashSet<ProblemDefinition>();
 
-        unsolvedProblems.addAll(problems);
+        if (resumingFrom != null) {
+            unsolvedProblems.addAll(resumingFrom.unsolvedProblems);
+            solvedProblems.addAll(resumingFrom.solvedProblems);
+            failedProblems.addAll(resumingFrom.failedProblems);
+            oracleChallengeProblems.addAll(resumingFrom.oracleChallengeProblems);
+            log.info("Resuming exploration from checkpoint: " + resumingFrom);
+        }
+        else
+            unsolvedProblems.addAll(problems);
 
         initExploration();
 
+        //Let scheduler know what's already solved (approximately, if resuming: checkpoints don't record which solved
+        //problems needed the oracles)
+        for (ProblemSolutionEntry entry : getControlEnsembleEntries())
+            problemScheduler.addOutcome(entry.problem, true);
+        for (ProblemSolutionEntry entry : solvedProblems)
+            problemScheduler.addOutcome(entry.problem, true);
+        for (ProblemDefinition problem : failedProblems)
+            problemScheduler.addOutcome(problem, false);
+        for (ProblemDefinition problem : oracleChallengeProblems)
+            problemScheduler.addOutcome(problem, false);
+
         //While there remain problems to solve, get a new one and try to solve it
-        int problemIdx = 0;
         while (!unsolvedProblems.isEmpty() && (maxTests < 0  || numTests < maxTests)) {
+            int problemIdx = numProblemsExplored;
             ProblemDefinition problemDef = getNextProblemToTest();
             prepareForProblem(problemDef);
+            rankedCandidates = null;
+            candidatesDrained = false;
+            auditedCandidates.clear();
 
             log.info("Attempting to solve problem #" + problemIdx);
+            beginProblemStats();
 
             int numTestsRunForProblem = 0;
 
             //Test control sequences until problem is solved or we give up
+            //Candidates are pulled & simulated in batches (see getEvalBatchSize()), but results are accounted for in
+            //the order the explorer ranked them, so test counts & solutions match those of a one-at-a-time run
             boolean problemSolved = false;
-            ControlProviderDefinition<C> potentialSolution = getNextControlSequence(problemDef);
-            while (potentialSolution != null && (maxTestsPerProblem < 0 || numTestsRunForProblem < maxTestsPerProblem)) {
-                //If configured to do so, try to use a cached eval first
-                Evaluator.Status evalResult = Evaluator.Status.RUNNING;
-                boolean foundCachedEval = false;
-                if (evalCache != null) {
-                    EvalCacheValue evalValue = evalCache.getCachedEvaluation(problemDef, potentialSolution);
-                    if (evalValue != null) {
-                        evalResult = evalValue.status;
-                        foundCachedEval = true;
-                    }
+            ControlProviderDefinition<C> potentialSolution = null;
+            List<ControlProviderDefinition<C>> candidates = new ArrayList<ControlProviderDefinition<C>>();
+            while (!problemSolved) {
+                int batchSize = evalBatchSize;
+                if (maxTestsPerProblem >= 0)
+                    batchSize = Math.min(batchSize, maxTestsPerProblem - numTestsRunForProblem);
+
+                candidates.clear();
+                while (candidates.size() < batchSize) {
+                    ControlProviderDefinition<C> candidate = pullNextCandidate(problemDef);
+                    if (candidate == null)
+                        break;
+                    candidates.add(candidate);
                 }
-
-                //Otherwise, or if no cached sol found, do a true sim eval on the problem
-                if (!foundCachedEval) {
-//                    long t0 = System.currentTimeMillis();
-                    ProblemInstance problem = new ProblemInstance(problemDef, avatarDef, evalDef, potentialSolution);
-                    problem.init();
-                    problem.run();
-                    evalResult = problem.getStatus();
-//                    long t1 = System.currentTimeMillis();
-//                    log.info("EVAL RUN TEST: " + (t1 - t0));
+                if (candidates.isEmpty()) {
+                    countPredictorSkips(0);
+                    break;
                 }
 
-                //If configured to do so, save the evaluation result
-                if (evalsSaved)
-                    saveEval(problemDef, potentialSolution, evalResult);
+                CandidateEvals evals = evaluateCandidates(problemDef, candidates);
+                Evaluator.Status[] evalResults = evals.statuses;
+
+                for (int i = 0; i < candidates.size(); i++) {
+                    potentialSolution = candidates.get(i);
+
+                    //Only exact results are recorded or learned from as this problem's: not approximate eval cache hits
+                    //(guesses from nearby problems), failure filter hits (only "maybe"s; a few are really successes),
+                    //nor unverified screening results (see SimProfile.VERIFY)
+                    boolean recordable = evals.isExact(i);
+                    if (recordable) {
+                        //Keep fresh results in the eval cache (re-putting a cached result just refreshes it)
+                        if (evalCache != null)
+                            evalCache.put(problemDef, potentialSolution, evalResults[i]);
+                        if (failureFilter != null && evalResults[i] == Evaluator.Status.FAILURE)
+                            failureFilter.put(problemDef, potentialSolution);
+
+                        //If configured to do so, save the evaluation result
+                        if (evalsSaved)
+                            saveEval(problemDef, potentialSolution, evalResults[i]);
+                    }
 
-                numTests++; numTestsRunForProblem++;
+                    //The predictor learns only from full fidelity sims (exact cache hits were learned from when made)
+                    if (successPredictor != null && evals.verified[i]) {
+                        pendingPredictorControls.add(potentialSolution);
+                        pendingPredictorSuccesses.add(evalResults[i] == Evaluator.Status.SUCCESS);
+                    }
+                    boolean audited = auditedCandidates.contains(potentialSolution);
+                    if (audited)
+                        numPredictorAudits++;
+                    if (successPredictor != null && recordable && evalResults[i] == Evaluator.Status.SUCCESS) {
+                        numPredictorSuccessesFound++;
+                        if (audited)
+                            numPredictorAuditSuccesses++;
+                    }
+                    if (recordable)
+                        candidateEvaluated(problemDef, potentialSolution, evalResults[i]);
 
-                problemSolved = (evalResult == Evaluator.Status.SUCCESS);
-                if (problemSolved)
-                    break;
-                else
-                    potentialSolution = getNextControlSequence(problemDef);
+                    numTests++; numTestsRunForProblem++; problemTests++;
+
+                    problemSolved = (evalResults[i] == Evaluator.Status.SUCCESS);
+                    if (problemSolved) {
+                        countPredictorSkips(i + 1);
+                        break;
+                    }
+                }
+                if (!problemSolved)
+                    countPredictorSkips(candidates.size());
             }
+            for (int i = 0; i < pendingPredictorControls.size(); i++)
+                successPredictor.update(problemDef, pendingPredictorControls.get(i), pendingPredictorSuccesses.get(i));
+            pendingPredictorControls.clear();
+            pendingPredictorSuccesses.clear();
 
             //If solved, mark it as such
             //Otherwise, add to list of problems for oracle to solve
             if (problemSolved)    {
                 log.info("Found solution to problem #" + problemIdx + " after " + numTestsRunForProblem + " test(s) run");
-                markProblemSolved(problemDef, potentialSolution);
+                markProblemSolved(problemDef, potentialSolution, ExplorerLogEntry.OUTCOME_SOLVED);
             }
             else {
                 log.info("No solution to problem; adding problem #" + problemIdx + " to oracle challenge list after " + numTestsRunForProblem + " test(s) run");
                 unsolvedProblems.remove(problemDef);  //remove from unsolved set... oracle will solve for us (or fail trying)
                 oracleChallengeProblems.add(problemDef);
-                addLogEntry();
+                addLogEntry(ExplorerLogEntry.OUTCOME_CHALLENGED, null);
             }
-            problemIdx++;
+            problemScheduler.addOutcome(problemDef, problemSolved);
+            numProblemsExplored++;
 
             //If this explorer wishes to do so at this moment, poll the oracles
             ProblemDefinition challenge = getNextChallengeProblem();
             if (challenge != null)
                 sendChallengeToOracles(challenge);
+
+            if (!checkpointPath.isEmpty() && checkpointInterval > 0 && numProblemsExplored % checkpointInterval == 0)
+                saveCheckpoint();
+        }
+        if (!checkpointPath.isEmpty())
+            saveCheckpoint();
+
+        if (evalExecutor != null) {
+            evalExecutor.shutdown();
+            evalExecutor = null;
+        }
+        worldTemplates = null;
+
+        //Finish any queued saves, & make appended evals durable, before returning
+        if (saveQueue != null) {
+            saveQueue.close();
+            log.info("Background saves: " + saveQueue);
+            if (saveQueue.getNumFailed() > 0)
+                log.error(saveQueue.getNumFailed() + " background save(s) failed; see errors above");
+        }
+        if (evalsSaved && evalStore != null) {
+            try {
+                evalStore.flush();
+            }
+            catch (IOException error) {
+                log.error("Error flushing eval store");
+            }
         }
 
         if (logWriter != null)   {
             try {
                 logWriter.close();
+                if (logWriter.getNumParts() > 1)
+                    log.info("Exploration log written in " + logWriter.getNumParts() + " parts");
             }
             catch (IOException error) {
                 log.error("Error closing log file: " + logSavePath);
@@ -224,9 +533,463 @@ public abstract class Explorer<C extends Control> {
         }
     }
 
+    /** Returns snapshot of the exploration's current state */
+    public ExplorerCheckpoint createCheckpoint() throws IOException {
+        ExplorerCheckpoint checkpoint = new ExplorerCheckpoint();
+        checkpoint.explorationName = (explorationName != null) ? explorationName : "";
+        checkpoint.numProblemsExplored = numProblemsExplored;
+        checkpoint.numTests = numTests;
+        checkpoint.numOracleChallenges = numOracleChallenges;
+        checkpoint.numSpeculativeTests = numSpeculativeTests;
+        checkpoint.numCancelledSpeculativeTests = numCancelledSpeculativeTests;
+        checkpoint.numScreenedFailures = numScreenedFailures;
+        checkpoint.numVerifySims = numVerifySims;
+        checkpoint.numKnownFailuresSkipped = numKnownFailuresSkipped;
+
+        checkpoint.unsolvedProblems.addAll(unsolvedProblems);
+        checkpoint.solvedProblems.addAll(solvedProblems);
+        checkpoint.failedProblems.addAll(failedProblems);
+        checkpoint.oracleChallengeProblems.addAll(oracleChallengeProblems);
+        checkpoint.ensembleEntries.addAll(getControlEnsembleEntries());
+        checkpoint.logEntries.addAll(expLog.entries);
+
+        saveStates(checkpoint);
+        return checkpoint;
+    }
+
+    /** Adds the states of this explorer's learned components (which affect which candidates are tested) to given
+     * checkpoint; subclasses with their own add those too. The eval cache isn't saved (it may be huge): a resumed
+     * exploration only tests the same candidates if the cache is backed by a write-through eval store. */
+    protected void saveStates(ExplorerCheckpoint checkpoint) throws IOException {
+        //Predictor state: int numPredictorSkips, int numPredictorAudits, int numPredictorAuditSuccesses,
+        //int numPredictorSuccessesFound, then the model (see SuccessPredictor)
+        if (successPredictor != null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(numPredictorSkips);
+            out.writeInt(numPredictorAudits);
+            out.writeInt(numPredictorAuditSuccesses);
+            out.writeInt(numPredictorSuccessesFound);
+            successPredictor.write(out);
+            out.close();
+            checkpoint.putState(SUCCESS_PREDICTOR_STATE, bytes.toByteArray());
+        }
+        if (failureFilter != null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            failureFilter.write(out);
+            out.close();
+            checkpoint.putState(FAILURE_FILTER_STATE, bytes.toByteArray());
+        }
+    }
+
+    /** Restores the states saved by saveStates() from checkpoint being resumed (called once the ensemble's rebuilt).
+     * Components in use but missing from the checkpoint are left as configured. */
+    protected void restoreStates(ExplorerCheckpoint checkpoint) throws IOException {
+        byte[] state = checkpoint.getState(SUCCESS_PREDICTOR_STATE);
+        if (successPredictor != null && state != null) {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(state));
+            int skips = in.readInt();
+            int audits = in.readInt();
+            int auditSuccesses = in.readInt();
+            int successesFound = in.readInt();
+            successPredictor = SuccessPredictor.read(in, "exploration checkpoint");
+            numPredictorSkips = skips;
+            numPredictorAudits = audits;
+            numPredictorAuditSuccesses = auditSuccesses;
+            numPredictorSuccessesFound = successesFound;
+        }
+        else if (successPredictor != null)
+            log.warn("Checkpoint has no success predictor state; resuming with the configured predictor");
+
+        state = checkpoint.getState(FAILURE_FILTER_STATE);
+        if (failureFilter != null && state != null)
+            failureFilter = FailureFilter.read(new DataInputStream(new ByteArrayInputStream(state)), "exploration checkpoint");
+        else if (failureFilter != null)
+            log.warn("Checkpoint has no failure filter state; resuming with the configured filter");
+    }
+
+    /** Saves a checkpoint, once everything saved so far (solutions, evals & log rows) is on disk, so that resuming from
+     * it never skips over saves that didn't happen */
+    protected void saveCheckpoint() {
+        long t0 = System.currentTimeMillis();
+        if (saveQueue != null)
+            saveQueue.flush();
+        try {
+            if (evalsSaved && evalStore != null)
+                evalStore.flush();
+            if (logWriter != null)
+                logWriter.flush();
+            createCheckpoint().save(checkpointPath);
+            log.info("Saved exploration checkpoint after " + numProblemsExplored + " problems (" +
+                     (System.currentTimeMillis() - t0) + " ms)");
+        }
+        catch (IOException error) {
+            log.error("Error saving exploration checkpoint to " + checkpointPath + ": " + error);
+        }
+    }
+
+    /** Statuses of a batch of candidates (in rank order), with where each came from */
+    protected static class CandidateEvals {
+        public final Evaluator.Status[] statuses;
+        //From the eval cache (exactly or approximately) or the failure filter, rather than a sim
+        public final boolean[] cached;
+        //Approximate eval cache hits, ie: results for a nearby problem (see EvalCache.setApproxCellSize())
+        public final boolean[] approximate;
+        //Failure filter hits, ie: probable failures (a few, per the filter's false positive rate, are really successes)
+        public final boolean[] filtered;
+        //From a full fidelity (VERIFY profile) sim, or a prior one's outcome shared through the sim checkpoint cache
+        public final boolean[] verified;
+        //Simulated in this batch (with the candidate sim profile)
+        final boolean[] simulated;
+        //Sims run past a success, counted in numSpeculativeTests rather than as tests
+        final boolean[] speculative;
+
+        CandidateEvals(int numCandidates) {
+            statuses = new Evaluator.Status[numCandidates];
+            cached = new boolean[numCandidates];
+            approximate = new boolean[numCandidates];
+            filtered = new boolean[numCandidates];
+            verified = new boolean[numCandidates];
+            simulated = new boolean[numCandidates];
+            speculative = new boolean[numCandidates];
+        }
+
+        /** Returns true if candidate's status is exactly known (& so may be recorded as its result): it came from a
+         * full fidelity sim, or is an exact eval cache hit */
+        public boolean isExact(int i) {
+            return verified[i] || (cached[i] && !approximate[i] && !filtered[i]);
+        }
+
+        void copyFrom(CandidateEvals src, int srcIdx, int dstIdx) {
+            statuses[dstIdx] = src.statuses[srcIdx];
+            cached[dstIdx] = src.cached[srcIdx];
+            approximate[dstIdx] = src.approximate[srcIdx];
+            filtered[dstIdx] = src.filtered[srcIdx];
+            verified[dstIdx] = src.verified[srcIdx];
+            simulated[dstIdx] = src.simulated[srcIdx];
+            speculative[dstIdx] = src.speculative[srcIdx];
+        }
+    }
+
+    /** Returns evaluation status of each given candidate control on the problem, in the same order as given.
+     * Cached evals are used where available; remaining candidates are simulated, in parallel if eval threads are in use.
+     * Once some candidate succeeds, all lower-ranked candidates are irrelevant (they would never have been tested
+     * in a one-at-a-time run), so their sims are cancelled or skipped and their status is left as RUNNING (or null).
+     * If screening is enabled, candidates are simulated with the screening profile first, and apparent successes are
+     * only accepted once they're verified at full fidelity (screened failures, unless audited, are never verified). */
+    protected CandidateEvals evaluateCandidates(ProblemDefinition problemDef, List<ControlProviderDefinition<C>> candidates) {
+        int numCandidates = candidates.size();
+        CandidateEvals evals = simulateCandidates(problemDef, candidates);
+        if (screeningProfile == null)
+            return evals;
+
+        //Go through screened results in rank order until some candidate passes at full fidelity
+        for (int i = 0; i < numCandidates; i++) {
+            if (!evals.cached[i]) {
+                Evaluator.Status screenedStatus = evals.statuses[i];
+                boolean audited = (screenedStatus == Evaluator.Status.FAILURE && screeningAuditInterval > 0 &&
+                        (++numScreenedFailures % screeningAuditInterval) == 0);
+                if (screenedStatus == Evaluator.Status.SUCCESS || audited) {
+                    ProblemInstance problem = createProblemInstance(problemDef, candidates.get(i));
+                    problem.setSimProfile(SimProfile.VERIFY);
+                    problem.setCheckpoints(null);
+                    evals.statuses[i] = simulate(problem);
+                    evals.verified[i] = true;
+                    numVerifySims++;
+                    screeningAgreement.record(screenedStatus, evals.statuses[i]);
+
+                    //A false success means lower-ranked candidates may have been skipped or cancelled
+                    if (screenedStatus == Evaluator.Status.SUCCESS && evals.statuses[i] != Evaluator.Status.SUCCESS)
+                        simulateRemainingCandidates(problemDef, candidates, evals, i + 1);
+                }
+            }
+            if (evals.statuses[i] == Evaluator.Status.SUCCESS) {
+                //Any sims ranked below the verified success (eg: ones no longer speculative after a false success, or
+                //all of them if it was an audited failure) turned out to be unneeded after all
+                for (int j = i + 1; j < numCandidates; j++) {
+                    if (evals.simulated[j] && !evals.speculative[j]) {
+                        evals.speculative[j] = true;
+                        numSpeculativeTests++;
+                    }
+                }
+                break;
+            }
+        }
+        return evals;
+    }
+
+    //Simulates candidates from given rank on which have no result yet (as they were ranked below a screened success
+    //that turned out false). Those already screened to completion keep their results, which are now needed after all,
+    //so they no longer count as speculative; each is still only screened (& audited) once, by the caller's loop.
+    private void simulateRemainingCandidates(ProblemDefinition problemDef, List<ControlProviderDefinition<C>> candidates,
+                                             CandidateEvals evals, int fromIdx) {
+        List<Integer> remainingIdxs = new ArrayList<Integer>();
+        List<ControlProviderDefinition<C>> remainingCandidates = new ArrayList<ControlProviderDefinition<C>>();
+        for (int j = fromIdx; j < candidates.size(); j++) {
+            boolean simCompleted = (evals.statuses[j] != null && evals.statuses[j] != Evaluator.Status.RUNNING);
+            if (evals.speculative[j]) {
+                evals.speculative[j] = false;
+                if (simCompleted)
+                    numSpeculativeTests--;
+            }
+            if (!simCompleted) {
+                remainingIdxs.add(j);
+                remainingCandidates.add(candidates.get(j));
+            }
+        }
+        if (remainingCandidates.isEmpty())
+            return;
+
+        CandidateEvals remainingEvals = simulateCandidates(problemDef, remainingCandidates);
+        for (int k = 0; k < remainingIdxs.size(); k++)
+            evals.copyFrom(remainingEvals, k, remainingIdxs.get(k));
+    }
+
+    /** Returns status of each given candidate (from cache, or simulated with the candidate sim profile) as described for
+     * evaluateCandidates(). Failure filter hits also count as cached, so that screening doesn't re-run them. */
+    protected CandidateEvals simulateCandidates(ProblemDefinition problemDef, List<ControlProviderDefinition<C>> candidates) {
+        int numCandidates = candidates.size();
+        CandidateEvals evals = new CandidateEvals(numCandidates);
+        Evaluator.Status[] evalResults = evals.statuses;
+        ProblemInstance[] sims = new ProblemInstance[numCandidates];
+
+        //Rank of best (lowest-ranked index) candidate known to succeed so far
+        int bestSuccessIdx = numCandidates;
+
+        //If configured to do so, try to use a cached eval first
+        if (evalCache != null) {
+            for (int i = 0; i < numCandidates; i++) {
+                EvalCacheValue evalValue = evalCache.getCachedEvaluation(problemDef, candidates.get(i));
+                if (evalValue != null) {
+                    evalResults[i] = evalValue.status;
+                    evals.cached[i] = true;
+                    evals.approximate[i] = evalValue.approximate;
+                    problemCacheHits++;
+                    if (evalResults[i] == Evaluator.Status.SUCCESS && i < bestSuccessIdx)
+                        bestSuccessIdx = i;
+                }
+            }
+        }
+
+        //Skip candidates known to fail
+        if (failureFilter != null) {
+            for (int i = 0; i < bestSuccessIdx; i++) {
+                if (evalResults[i] == null && failureFilter.mightContain(problemDef, candidates.get(i))) {
+                    evalResults[i] = Evaluator.Status.FAILURE;
+                    evals.cached[i] = true;
+                    evals.filtered[i] = true;
+                    numKnownFailuresSkipped++;
+                }
+            }
+        }
+
+        //Failing that, reuse the outcome of a prior sim which ended within a control prefix shared with the candidate
+        if (simCheckpoints != null) {
+            for (int i = 0; i < bestSuccessIdx; i++) {
+                if (evalResults[i] == null) {
+                    evalResults[i] = simCheckpoints.getCachedEvaluation(problemDef, candidates.get(i));
+                    if (evalResults[i] == Evaluator.Status.SUCCESS)
+                        bestSuccessIdx = i;
+                }
+            }
+        }
+
+        //Otherwise, or if no cached sol found, do a true sim eval on the problem
+        if (evalExecutor == null) {
+            for (int i = 0; i < bestSuccessIdx; i++) {
+                if (evalResults[i] == null) {
+                    sims[i] = createProblemInstance(problemDef, candidates.get(i));
+                    evals.simulated[i] = true;
+                    evalResults[i] = simulate(sims[i]);
+                    if (evalResults[i] == Evaluator.Status.SUCCESS)
+                        bestSuccessIdx = i;
+                }
+            }
+        }
+        else {
+            CompletionService<Integer> completedSims = new ExecutorCompletionService<Integer>(evalExecutor);
+            List<Future<Integer>> pendingSims = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < bestSuccessIdx; i++) {
+                if (evalResults[i] == null) {
+                    final int simIdx = i;
+                    final ProblemInstance sim = createProblemInstance(problemDef, candidates.get(i));
+                    sims[i] = sim;
+                    evals.simulated[i] = true;
+                    pendingSims.add(completedSims.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() {
+                            simulate(sim);
+                            return simIdx;
+                        }
+                    }));
+                }
+            }
+
+            //Gather sims as they complete; a success cancels everything ranked below it
+            try {
+                for (int numGathered = 0; numGathered < pendingSims.size(); numGathered++) {
+                    int simIdx = completedSims.take().get();
+                    evalResults[simIdx] = sims[simIdx].getStatus();
+                    if (evalResults[simIdx] == Evaluator.Status.SUCCESS && simIdx < bestSuccessIdx) {
+                        bestSuccessIdx = simIdx;
+                        for (int j = simIdx + 1; j < numCandidates; j++) {
+                            if (sims[j] != null)
+                                sims[j].cancel();
+                        }
+                    }
+                }
+            }
+            catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting on candidate control simulation", error);
+            }
+            catch (ExecutionException error) {
+                throw new RuntimeException("Candidate control simulation failed", error.getCause());
+            }
+        }
+
+        //Any sims ranked below the winner would not have been run one-at-a-time, so they don't count as tests
+        for (int i = bestSuccessIdx + 1; i < numCandidates; i++) {
+            if (sims[i] != null) {
+                evals.speculative[i] = true;
+                numSpeculativeTests++;
+                if (sims[i].isCancelled() && evalResults[i] == Evaluator.Status.RUNNING)
+                    numCancelledSpeculativeTests++;
+            }
+        }
+
+        //Results of full fidelity sims (including outcomes shared through the checkpoint cache, which were simulated
+        //with the same profile) are exact
+        if (screeningProfile == null) {
+            for (int i = 0; i < numCandidates; i++)
+                evals.verified[i] = (!evals.cached[i] && evalResults[i] != null && evalResults[i] != Evaluator.Status.RUNNING);
+        }
+
+        return evals;
+    }
+
+    /** Returns next candidate control to test on problem, or null if there are none left: the explorer's own next
+     * candidate (see getNextControlSequence()), unless a success predictor is in use to rank or skip candidates */
+    protected ControlProviderDefinition<C> pullNextCandidate(ProblemDefinition problemDef) {
+        if (successPredictor == null)
+            return getNextControlSequence(problemDef);
+        boolean skipping = (successPredictorSkipThreshold > 0 && successPredictor.getNumSamples() >= successPredictorMinSamples);
+
+        while (true) {
+            ControlProviderDefinition<C> candidate;
+            double prob = -1.0;
+            if (successPredictorRanking) {
+                if (rankedCandidates == null || nextRankedCandidateIdx >= rankedCandidates.size())
+                    rankNextCandidates(problemDef);
+                if (nextRankedCandidateIdx >= rankedCandidates.size())
+                    return null;
+                prob = rankedCandidateProbs[nextRankedCandidateIdx];
+                candidate = rankedCandidates.get(nextRankedCandidateIdx++);
+            }
+            else {
+                candidate = getNextControlSequence(problemDef);
+                if (candidate == null)
+                    return null;
+            }
+            if (!skipping)
+                return pulledCandidate(candidate);
+            if (prob < 0)
+                prob = successPredictor.predict(problemDef, candidate);
+            if (prob >= successPredictorSkipThreshold)
+                return pulledCandidate(candidate);
+
+            //Audit every Nth skip, counting those made earlier in this batch (which are all counted if this is tested)
+            numPendingPredictorSkips++;
+            if (successPredictorAuditInterval > 0 &&
+                (numPredictorSkips + numPendingPredictorSkips) % successPredictorAuditInterval == 0) {
+                auditedCandidates.add(candidate);
+                return pulledCandidate(candidate);
+            }
+        }
+    }
+
+    //Notes the skips made so far in this batch were made before pulling given candidate
+    private ControlProviderDefinition<C> pulledCandidate(ControlProviderDefinition<C> candidate) {
+        pulledCandidateSkips.add(numPendingPredictorSkips);
+        return candidate;
+    }
+
+    //Counts the skips made pulling the current batch's first numConsumed candidates (& any made after its last, once
+    //it's all consumed); skips made pulling candidates that are then discarded, ranked below the batch's winner, aren't
+    //counted, as a one-at-a-time run would never have made them. So the audit phase, & which candidates are audited,
+    //doesn't depend on the batch size.
+    private void countPredictorSkips(int numConsumed) {
+        if (numConsumed >= pulledCandidateSkips.size())
+            numPredictorSkips += numPendingPredictorSkips;
+        else if (numConsumed > 0)
+            numPredictorSkips += pulledCandidateSkips.get(numConsumed - 1);
+        numPendingPredictorSkips = 0;
+        pulledCandidateSkips.clear();
+    }
+
+    //Pulls the next window of the explorer's candidates for problem (so a lazy nearest-first walk only goes as far as
+    //needed), & sorts them most likely to succeed first (ties in given order)
+    private void rankNextCandidates(ProblemDefinition problemDef) {
+        final List<ControlProviderDefinition<C>> candidates = new ArrayList<ControlProviderDefinition<C>>();
+        while (!candidatesDrained && (successPredictorRankWindow <= 0 || candidates.size() < successPredictorRankWindow)) {
+            ControlProviderDefinition<C> candidate = getNextControlSequence(problemDef);
+            if (candidate == null)
+                candidatesDrained = true;
+            else
+                candidates.add(candidate);
+        }
+        final double[] probs = new double[candidates.size()];
+        List<Integer> order = new ArrayList<Integer>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            probs[i] = successPredictor.predict(problemDef, candidates.get(i));
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(probs[b], probs[a]);
+            }
+        });
+
+        rankedCandidates = new ArrayList<ControlProviderDefinition<C>>(candidates.size());
+        rankedCandidateProbs = new double[candidates.size()];
+        for (int i = 0; i < order.size(); i++) {
+            rankedCandidates.add(candidates.get(order.get(i)));
+            rankedCandidateProbs[i] = probs[order.get(i)];
+        }
+        nextRankedCandidateIdx = 0;
+    }
+
+    /** Creates (but does not init) a problem instance for simulating given control on given problem */
+    protected ProblemInstance createProblemInstance(ProblemDefinition problemDef, ControlProviderDefinition<C> control) {
+        ProblemInstance problem = new ProblemInstance(problemDef, avatarDef, evalDef, control);
+        problem.setWorldTemplates(worldTemplates);
+        problem.setCheckpoints(simCheckpoints);
+        if (screeningProfile != null)
+            problem.setSimProfile(screeningProfile);
+        return problem;
+    }
+
+    /** Runs a complete simulation of the given problem instance and returns the final evaluation status.
+     * May be called from eval threads, so each instance must own its own world.
+     * The instance's world is released afterward, so only its evaluation results should be inspected. */
+    protected Evaluator.Status simulate(ProblemInstance problem) {
+        try {
+            problem.init();
+            problem.run();
+            return problem.getStatus();
+        }
+        finally {
+            problemSimSteps.addAndGet(problem.getNumStepsRun());
+            problem.release();
+        }
+    }
+
     protected void sendChallengeToOracles(ProblemDefinition challenge) {
         int oracleChallengeIdx = numOracleChallenges;
         log.info("Sending challenge #" + oracleChallengeIdx + " to oracles");
+        beginProblemStats();
 
         boolean challengeSolFound = false;
         for (int oracleIdx = 0; oracleIdx < oracles.size(); oracleIdx++) {
@@ -245,6 +1008,7 @@ public abstract class Explorer<C extends Control> {
                 problem.setUseSampling(true); //for debugging
                 problem.init();
                 problem.run();
+                problemSimSteps.addAndGet(problem.getNumStepsRun());
                 if (problem.getStatus() != Evaluator.Status.SUCCESS) {
                     log.info("Oracle #" + oracleIdx + " returned an incorrect solution to challenge #" + oracleChallengeIdx);
                     oracleSolutionOk = false;
@@ -257,7 +1021,7 @@ public abstract class Explorer<C extends Control> {
             if (oracleSolutionOk)         {
                 log.info("Oracle #" + oracleIdx + " successfully solved challenge #" + numOracleChallenges + " ; marking as solved");
                 challengeSolFound = true;
-                markProblemSolved(challenge, challengeSolution);
+                markProblemSolved(challenge, challengeSolution, ExplorerLogEntry.OUTCOME_ORACLE_SOLVED);
                 addToControlEnsemble(challenge, challengeSolution);
                 if (ctrlEnsembleSaved)
                     saveControlEnsembleEntry(challenge, challengeSolution);
@@ -266,6 +1030,8 @@ public abstract class Explorer<C extends Control> {
                 //so that oracle solutions are logged as well as normal evals)
                 if (evalsSaved)
                     saveEval(challenge, challengeSolution, Evaluator.Status.SUCCESS);
+                if (successPredictor != null)
+                    successPredictor.update(challenge, challengeSolution, true);
                 break;
             }
         }
@@ -278,7 +1044,7 @@ public abstract class Explorer<C extends Control> {
         numOracleChallenges++;
     }
 
-    private void markProblemSolved(ProblemDefinition problem, ControlProviderDefinition<C> solution) {
+    private void markProblemSolved(ProblemDefinition problem, ControlProviderDefinition<C> solution, int outcome) {
         //NOTE: If we're marking it solved, it will currently be either in either unsolved set or oracle challenge set
         //For simplicity, just be sure it's removed from both
         unsolvedProblems.remove(problem);
@@ -287,11 +1053,15 @@ public abstract class Explorer<C extends Control> {
 
         if (solsSaved) {
             int solNum = solvedProblems.size();
-            ProblemSolutionEntry entry = new ProblemSolutionEntry(problem, solution);
-            int solEntryHash = entry.hashCode();
-            String filename = String.format("%h", solEntryHash) + ".sol";
+            final ProblemSolutionEntry entry = new ProblemSolutionEntry(problem, solution);
+            final String filename = entry.getFingerprint() + ".sol";
             log.info("Saving solution to disk: " + filename);
-            IOUtils.instance().saveProblemSolutionEntry(entry, solsSavePath, filename);
+            save(new WriteBehindQueue.Write() {
+                @Override
+                public void perform() throws IOException {
+                    IOUtils.instance().saveProblemSolutionEntry(entry, solsSavePath, filename);
+                }
+            });
         }
 
         //SERVER TESTING -bh, 2.23.2014
@@ -311,7 +1081,7 @@ public abstract class Explorer<C extends Control> {
             server.sendPlaySnap(snap);
         }
 
-        addLogEntry();
+        addLogEntry(outcome, solution);
     }
 
     /** Marks problem as having no solution to be found (even from oracles) */
@@ -319,24 +1089,43 @@ public abstract class Explorer<C extends Control> {
         oracleChallengeProblems.remove(problem);
         failedProblems.add(problem);
 
-        addLogEntry();
+        addLogEntry(ExplorerLogEntry.OUTCOME_FAILED, null);
     }
 
-    protected void addLogEntry() {
+    /** Starts tallying stats of a new problem (or oracle challenge) for its log entry */
+    protected void beginProblemStats() {
+        problemTests = 0;
+        problemCacheHits = 0;
+        problemSimSteps.set(0);
+        problemStartTime = System.currentTimeMillis();
+    }
+
+    /** Logs progress so far, along with stats of the current problem, which had given outcome (& winning control, if solved) */
+    protected void addLogEntry(int problemOutcome, ControlProviderDefinition winningControl) {
         ExplorerLogEntry entry = new ExplorerLogEntry(
                 getNumTests(),
                 getNumOracleChallenges(),
                 getNumUnsolvedProblems(),
                 getNumSolvedProblems(),
-                getNumFailedProblems()
+                getNumFailedProblems(),
+                (evalCache != null) ? evalCache.getNumHits() : 0,
+                (evalCache != null) ? evalCache.getNumStoreHits() : 0,
+                (evalCache != null) ? evalCache.getNumMisses() : 0,
+                (evalCache != null) ? evalCache.getNumEvictions() : 0,
+                (evalCache != null) ? evalCache.getNumBytes() : 0,
+                problemOutcome,
+                problemTests,
+                problemSimSteps.get(),
+                System.currentTimeMillis() - problemStartTime,
+                problemCacheHits,
+                (winningControl != null) ? winningControl.getFingerprint() : null
                 );
         expLog.entries.add(entry);
 
-        //Write the new log CSV line if being saved
+        //Write the new log row if being saved (buffered; see ExplorerLogWriter)
         if (logSaved && logWriter != null) {
             try {
-                logWriter.write(entry.getCSVRow());
-                logWriter.flush();
+                logWriter.write(entry);
             }
             catch (IOException error) {
                 log.error("Error writing to log file: " + logSavePath);
@@ -344,26 +1133,74 @@ public abstract class Explorer<C extends Control> {
         }
     }
 
-    protected void saveEval(ProblemDefinition problemDef, ControlProviderDefinition controlDef, Evaluator.Status result) {
+    protected void saveEval(final ProblemDefinition problemDef, final ControlProviderDefinition<?> controlDef, final Evaluator.Status result) {
+        if (evalStore != null) {
+            save(new WriteBehindQueue.Write() {
+                @Override
+                public void perform() throws IOException {
+                    evalStore.put(problemDef, controlDef, result);
+                }
+            });
+            return;
+        }
+
         int evalNum = numTests;
-        EvalCacheKey key = new EvalCacheKey(problemDef, controlDef);
-        int evalKeyHash = key.hashCode();
-        String filename = String.format("%h", evalKeyHash) + ".ech";
+        final EvalCacheKey key = new EvalCacheKey(problemDef, controlDef);
+        final String filename = key.getFingerprint() + ".ech";
         log.info("Saving eval to disk: " + filename);
-        IOUtils.instance().saveEvalCacheEntry(
-                new EvalCacheEntry(new EvalCacheKey(problemDef, controlDef),new EvalCacheValue(result)),
-                evalsSavePath, filename);
+        save(new WriteBehindQueue.Write() {
+            @Override
+            public void perform() throws IOException {
+                IOUtils.instance().saveEvalCacheEntry(new EvalCacheEntry(key, new EvalCacheValue(result)), evalsSavePath, filename);
+            }
+        });
     }
 
     protected void saveControlEnsembleEntry(ProblemDefinition problem, ControlProviderDefinition<C> control) {
         //HACK FOR 869 PROJECT: .sol files contain all the necessary info for ensembles, for now, so just save as sol file
         //TODO: More modular & smarter ensemble saving that varies by explorer type
 
-        ProblemSolutionEntry ensembleEntry = new ProblemSolutionEntry(problem, control);
-        int ensembleEntryHash = ensembleEntry.hashCode();
-        String filename = String.format("%h", ensembleEntryHash) + ".sol";
+        final ProblemSolutionEntry ensembleEntry = new ProblemSolutionEntry(problem, control);
+        final String filename = ensembleEntry.getFingerprint() + ".sol";
         log.info("Saving ensemble entry to disk: " + filename);
-        IOUtils.instance().saveProblemSolutionEntry(ensembleEntry, ctrlEnsembleSavePath, filename);
+        save(new WriteBehindQueue.Write() {
+            @Override
+            public void perform() throws IOException {
+                IOUtils.instance().saveProblemSolutionEntry(ensembleEntry, ctrlEnsembleSavePath, filename);
+            }
+        });
+    }
+
+    /** Performs write on the background save queue if there is one, else right away on this thread */
+    private void save(WriteBehindQueue.Write write) {
+        if (saveQueue != null) {
+            saveQueue.submit(write);
+            return;
+        }
+        try {
+            write.perform();
+        }
+        catch (Exception error) {
+            log.error("Error saving to disk: " + error);
+        }
+    }
+
+    /** Creates daemon eval threads, so that a stalled exploration never holds the JVM open */
+    private static class EvalThreadFactory implements ThreadFactory {
+        int numThreadsCreated = 0;
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ExplorerEval-" + numThreadsCreated++);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /** Returns number of top-ranked candidate controls which are simulated at once for a problem
+     * (each on its own eval thread if > 1) */
+    protected int getEvalBatchSize() {
+        return Math.max(1, numEvalThreads);
     }
 
     /**Sets up for a new exploration (called at start of explore())  */
@@ -372,17 +1209,37 @@ public abstract class Explorer<C extends Control> {
     /** Change any internal state in preparation for solving a new problem */
     protected abstract void prepareForProblem(ProblemDefinition problemDef);
 
-    /** Returns what this explorer believes is the most useful problem to try and solve */
-    protected abstract ProblemDefinition getNextProblemToTest();
+    /** Returns what this explorer believes is the most useful problem to try and solve (by default, whichever the
+     * problem scheduler picks) */
+    protected ProblemDefinition getNextProblemToTest() {
+        if (!unsolvedProblems.isEmpty())
+            return problemScheduler.nextProblem(unsolvedProblems);
+        return null;
+    }
 
     /** Returns what this explorer believes is the most useful control provider (ie: sequence) to test next on given problem,
      * or null if the explorer wishes to give up on the problem and hand it to the oracle for solution. */
     protected abstract ControlProviderDefinition<C> getNextControlSequence(ProblemDefinition p);
 
+    /** Called with the status of each candidate tested on a problem (in rank order, up to any solution) whose result is
+     * exact (not a guess from an approximate eval cache hit or failure filter hit), so that explorers can learn from
+     * them. Does nothing by default. */
+    protected void candidateEvaluated(ProblemDefinition problemDef, ControlProviderDefinition<C> candidate, Evaluator.Status status) {
+    }
+
     /** Returns the next most useful problem to send to user/oracle challenge for this explorer, or null
-     * if this explorer currently does not wish to send a problem to the oracle */
-    protected abstract ProblemDefinition getNextChallengeProblem();
+     * if this explorer currently does not wish to send a problem to the oracle (by default, whichever pending challenge
+     * the problem scheduler picks) */
+    protected ProblemDefinition getNextChallengeProblem() {
+        if (!oracleChallengeProblems.isEmpty())
+            return problemScheduler.nextChallenge(oracleChallengeProblems);
+        return null;
+    }
 
     /** Adds given control w/ solution to this explorer's control ensemble (specific behavior depends on subtype) */
     protected abstract void addToControlEnsemble(ProblemDefinition problem, ControlProviderDefinition<C> control);
+
+    /** Returns (problem, control) entries which rebuild this explorer's control ensemble exactly when re-added, in order,
+     * to a new explorer's through addToControlEnsemble() (used to checkpoint the ensemble) */
+    protected abstract List<ProblemSolutionEntry> getControlEnsembleEntries();
 }
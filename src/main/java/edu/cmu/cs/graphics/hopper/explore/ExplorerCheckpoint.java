@@ -0,0 +1,252 @@
+package edu.cmu.cs.graphics.hopper.explore;
+
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.io.SolutionBundle;
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Snapshot of an Explorer's full state between problems (problem sets, counters, log & control ensemble), from which
+ * an interrupted exploration can be resumed; see Explorer.setCheckpointPath() & Explorer.resumeFrom().
+ * Each distinct problem & control sequence is stored once, in SolutionBundle layout, & referred to by index.
+ * Layout (big-endian):
+ *   header:     int MAGIC, int VERSION, int n, byte[n] explorationName (UTF-8), int[NUM_COUNTERS] counters
+ *   tables:     int numProblems, problems, int numControls, control sequences
+ *   sets:       unsolved, failed & challenge problems (each: int n, int[n] problem indices), then
+ *               solved problems & ensemble entries (each: int n, n * (int problem index, int control index))
+ *   log:        int numEntries, ExplorerLog binary rows
+ *   states:     int numStates, then each: int n, byte[n] name (UTF-8), int m, byte[m] state (in whatever layout its
+ *               component saves, eg: the success predictor's model; see putState())
+ * States saved are those of the failure filter, success predictor & bandit control stats (see Explorer.saveStates());
+ * the eval cache isn't saved. Version 1 checkpoints (without states) can still be loaded.
+ * Checkpoints are written to a temporary file & renamed into place, so a crash mid-write leaves the last one intact. */
+public class ExplorerCheckpoint {
+    public static final int MAGIC = 0x48584350;     //"HXCP"
+    public static final int VERSION = 2;
+    public static final String EXTENSION = ".hxcp";
+
+    static final int NUM_COUNTERS = 8;
+
+    String explorationName = "";
+    int numProblemsExplored;
+    int numTests;
+    int numOracleChallenges;
+    int numSpeculativeTests;
+    int numCancelledSpeculativeTests;
+    int numScreenedFailures;
+    int numVerifySims;
+    int numKnownFailuresSkipped;
+
+    List<ProblemDefinition> unsolvedProblems = new ArrayList<ProblemDefinition>();
+    List<ProblemDefinition> failedProblems = new ArrayList<ProblemDefinition>();
+    List<ProblemDefinition> oracleChallengeProblems = new ArrayList<ProblemDefinition>();
+    List<ProblemSolutionEntry> solvedProblems = new ArrayList<ProblemSolutionEntry>();
+    List<ProblemSolutionEntry> ensembleEntries = new ArrayList<ProblemSolutionEntry>();
+    List<ExplorerLogEntry> logEntries = new ArrayList<ExplorerLogEntry>();
+    //Saved states of learned components (keyed by name, in order added)
+    Map<String, byte[]> states = new LinkedHashMap<String, byte[]>();
+
+    public String getExplorationName() {return explorationName;}
+    public int getNumProblemsExplored() {return numProblemsExplored;}
+    public int getNumTests() {return numTests;}
+
+    /** Stores given state of a component, to be saved with the checkpoint under given name */
+    public void putState(String name, byte[] state) {states.put(name, state);}
+    /** Returns component state saved under given name, or null if none was */
+    public byte[] getState(String name) {return states.get(name);}
+
+    public void save(String filePath) throws IOException {
+        //Gather distinct problems & controls
+        Map<ProblemDefinition, Integer> problemIndices = new LinkedHashMap<ProblemDefinition, Integer>();
+        Map<ControlProviderDefinition<?>, Integer> controlIndices = new LinkedHashMap<ControlProviderDefinition<?>, Integer>();
+        for (List<ProblemDefinition> problems : problemSets())
+            for (ProblemDefinition problem : problems)
+                indexOf(problemIndices, problem);
+        for (List<ProblemSolutionEntry> entries : entrySets()) {
+            for (ProblemSolutionEntry entry : entries) {
+                indexOf(problemIndices, entry.problem);
+                indexOf(controlIndices, entry.solution);
+            }
+        }
+
+        File tempFile = new File(filePath + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            byte[] nameBytes = explorationName.getBytes("utf-8");
+            out.writeInt(nameBytes.length);
+            out.write(nameBytes);
+            for (int counter : getCounters())
+                out.writeInt(counter);
+
+            out.writeInt(problemIndices.size());
+            for (ProblemDefinition problem : problemIndices.keySet())
+                SolutionBundle.writeProblem(out, problem);
+            out.writeInt(controlIndices.size());
+            for (ControlProviderDefinition<?> control : controlIndices.keySet())
+                SolutionBundle.writeControls(out, control);
+
+            for (List<ProblemDefinition> problems : problemSets()) {
+                out.writeInt(problems.size());
+                for (ProblemDefinition problem : problems)
+                    out.writeInt(problemIndices.get(problem));
+            }
+            for (List<ProblemSolutionEntry> entries : entrySets()) {
+                out.writeInt(entries.size());
+                for (ProblemSolutionEntry entry : entries) {
+                    out.writeInt(problemIndices.get(entry.problem));
+                    out.writeInt(controlIndices.get(entry.solution));
+                }
+            }
+
+            out.writeInt(logEntries.size());
+            for (ExplorerLogEntry entry : logEntries)
+                entry.writeBinaryRow(out);
+
+            out.writeInt(states.size());
+            for (Map.Entry<String, byte[]> state : states.entrySet()) {
+                byte[] stateNameBytes = state.getKey().getBytes("utf-8");
+                out.writeInt(stateNameBytes.length);
+                out.write(stateNameBytes);
+                out.writeInt(state.getValue().length);
+                out.write(state.getValue());
+            }
+        }
+        finally {
+            out.close();
+        }
+
+        try {
+            Files.move(tempFile.toPath(), new File(filePath).toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException unsupported) {
+            Files.move(tempFile.toPath(), new File(filePath).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static ExplorerCheckpoint load(String filePath) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filePath, "r");
+        try {
+            ByteBuffer in = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            if (in.remaining() < 8 || in.getInt() != MAGIC)
+                throw new IOException("Not an exploration checkpoint: " + filePath);
+            int version = in.getInt();
+            if (version != 1 && version != VERSION)
+                throw new IOException("Unsupported exploration checkpoint version " + version + " in " + filePath);
+
+            ExplorerCheckpoint checkpoint = new ExplorerCheckpoint();
+            byte[] nameBytes = new byte[in.getInt()];
+            in.get(nameBytes);
+            checkpoint.explorationName = new String(nameBytes, "utf-8");
+            int[] counters = new int[NUM_COUNTERS];
+            for (int i = 0; i < counters.length; i++)
+                counters[i] = in.getInt();
+            checkpoint.setCounters(counters);
+
+            ProblemDefinition[] problems = new ProblemDefinition[in.getInt()];
+            for (int i = 0; i < problems.length; i++)
+                problems[i] = SolutionBundle.readProblem(in);
+            ControlProviderDefinition<?>[] controls = new ControlProviderDefinition<?>[in.getInt()];
+            for (int i = 0; i < controls.length; i++)
+                controls[i] = SolutionBundle.readControls(in);
+
+            for (List<ProblemDefinition> set : checkpoint.problemSets()) {
+                int n = in.getInt();
+                for (int i = 0; i < n; i++)
+                    set.add(problems[in.getInt()]);
+            }
+            for (List<ProblemSolutionEntry> set : checkpoint.entrySets()) {
+                int n = in.getInt();
+                for (int i = 0; i < n; i++) {
+                    ProblemDefinition problem = problems[in.getInt()];
+                    set.add(new ProblemSolutionEntry(problem, controls[in.getInt()]));
+                }
+            }
+
+            int numLogEntries = in.getInt();
+            for (int i = 0; i < numLogEntries; i++)
+                checkpoint.logEntries.add(ExplorerLogEntry.readBinaryRow(in));
+
+            int numStates = (version >= 2) ? in.getInt() : 0;
+            for (int i = 0; i < numStates; i++) {
+                byte[] stateNameBytes = new byte[in.getInt()];
+                in.get(stateNameBytes);
+                byte[] state = new byte[in.getInt()];
+                in.get(state);
+                checkpoint.states.put(new String(stateNameBytes, "utf-8"), state);
+            }
+            return checkpoint;
+        }
+        catch (RuntimeException error) {
+            //Buffer underflows, bad indices, etc. all just mean a corrupt file
+            throw new IOException("Corrupt exploration checkpoint: " + filePath, error);
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "'" + explorationName + "': problems explored=" + numProblemsExplored + ", tests=" + numTests +
+               ", unsolved=" + unsolvedProblems.size() + ", solved=" + solvedProblems.size() +
+               ", failed=" + failedProblems.size() + ", challenges pending=" + oracleChallengeProblems.size() +
+               ", ensemble entries=" + ensembleEntries.size();
+    }
+
+    private List<List<ProblemDefinition>> problemSets() {
+        List<List<ProblemDefinition>> sets = new ArrayList<List<ProblemDefinition>>();
+        sets.add(unsolvedProblems);
+        sets.add(failedProblems);
+        sets.add(oracleChallengeProblems);
+        return sets;
+    }
+
+    private List<List<ProblemSolutionEntry>> entrySets() {
+        List<List<ProblemSolutionEntry>> sets = new ArrayList<List<ProblemSolutionEntry>>();
+        sets.add(solvedProblems);
+        sets.add(ensembleEntries);
+        return sets;
+    }
+
+    private int[] getCounters() {
+        return new int[]{numProblemsExplored, numTests, numOracleChallenges, numSpeculativeTests,
+                         numCancelledSpeculativeTests, numScreenedFailures, numVerifySims, numKnownFailuresSkipped};
+    }
+
+    private void setCounters(int[] counters) {
+        numProblemsExplored = counters[0];
+        numTests = counters[1];
+        numOracleChallenges = counters[2];
+        numSpeculativeTests = counters[3];
+        numCancelledSpeculativeTests = counters[4];
+        numScreenedFailures = counters[5];
+        numVerifySims = counters[6];
+        numKnownFailuresSkipped = counters[7];
+    }
+
+    private static <T> int indexOf(Map<T, Integer> indices, T item) {
+        Integer idx = indices.get(item);
+        if (idx == null) {
+            idx = indices.size();
+            indices.put(item, idx);
+        }
+        return idx;
+    }
+}
@@ -7,12 +7,34 @@ import java.util.List;
 public class ExplorerLog {
     public List<ExplorerLogEntry> entries;
 
+    //Column names, in order; CSV rows hold the winning control as one hex column, binary rows as two longs
+    static final String[] COLUMNS = {
+            "Num Tests", "Num Challenges", "Num Unsolved", "Num Solved", "Num Failed",
+            "Cache Hits", "Cache Store Hits", "Cache Misses", "Cache Evictions", "Cache Bytes",
+            "Problem Outcome", "Problem Tests", "Problem Sim Steps", "Problem Millis", "Problem Cache Hits"};
+    static final String[] CSV_CONTROL_COLUMNS = {"Winning Control"};
+    static final String[] BINARY_CONTROL_COLUMNS = {"Winning Control Hi", "Winning Control Lo"};
+    static final int NUM_BINARY_COLUMNS = COLUMNS.length + BINARY_CONTROL_COLUMNS.length;
+    static final String NO_CONTROL = "00000000000000000000000000000000";
+
     public ExplorerLog() {
         entries = new ArrayList<ExplorerLogEntry>();
     }
 
     public String getCSVHeader()    {
-        return "Num Tests, Num Challenges, Num Unsolved, Num Solved, Num Failed,\n";
+        StringBuilder sb = new StringBuilder();
+        for (String column : COLUMNS)
+            sb.append(column).append(',');
+        sb.append(CSV_CONTROL_COLUMNS[0]).append('\n');
+        return sb.toString();
+    }
+
+    /** Returns column names of binary log rows (see ExplorerLogWriter) */
+    public static String[] getBinaryColumns() {
+        String[] columns = new String[NUM_BINARY_COLUMNS];
+        System.arraycopy(COLUMNS, 0, columns, 0, COLUMNS.length);
+        System.arraycopy(BINARY_CONTROL_COLUMNS, 0, columns, COLUMNS.length, BINARY_CONTROL_COLUMNS.length);
+        return columns;
     }
 
     //Writes complete log to CSV string
@@ -1,6 +1,21 @@
 package edu.cmu.cs.graphics.hopper.explore;
 
+import edu.cmu.cs.graphics.hopper.math.Fingerprint;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/** One row of an ExplorerLog, recorded each time a problem is solved, handed to the oracles, or failed.
+ * Running totals come first, then stats of the problem (or oracle challenge) the row was recorded for. */
 public final class ExplorerLogEntry {
+    //Outcome of the problem a row was recorded for
+    public static final int OUTCOME_NONE = 0;
+    public static final int OUTCOME_SOLVED = 1;             //solved by explorer
+    public static final int OUTCOME_CHALLENGED = 2;         //explorer gave up; handed to oracles
+    public static final int OUTCOME_ORACLE_SOLVED = 3;
+    public static final int OUTCOME_FAILED = 4;             //no oracle could solve it
+
     public final int numTests;
     public final int numChallenges;
 
@@ -8,8 +23,34 @@ public final class ExplorerLogEntry {
     public final int numSolvedProblems;
     public final int numFailedProblems;
 
+    //Eval cache stats so far (all 0 if no cache in use)
+    public final long numCacheHits;
+    public final long numCacheStoreHits;
+    public final long numCacheMisses;
+    public final long numCacheEvictions;
+    public final long numCacheBytes;
+
+    //Per-problem stats
+    public final int problemOutcome;
+    public final int numProblemTests;
+    public final long numProblemSimSteps;       //steps actually simulated (incl. speculative & verification sims)
+    public final long problemMillis;            //wall-clock time spent on problem
+    public final int numProblemCacheHits;
+    public final Fingerprint winningControl;    //null if problem wasn't solved
+
     public ExplorerLogEntry(int numTests, int numChallenges,
                             int numUnsolvedProblems, int numSolvedProblems, int numFailedProblems)
+    {
+        this(numTests, numChallenges, numUnsolvedProblems, numSolvedProblems, numFailedProblems, 0, 0, 0, 0, 0,
+             OUTCOME_NONE, 0, 0, 0, 0, null);
+    }
+
+    public ExplorerLogEntry(int numTests, int numChallenges,
+                            int numUnsolvedProblems, int numSolvedProblems, int numFailedProblems,
+                            long numCacheHits, long numCacheStoreHits, long numCacheMisses, long numCacheEvictions,
+                            long numCacheBytes,
+                            int problemOutcome, int numProblemTests, long numProblemSimSteps, long problemMillis,
+                            int numProblemCacheHits, Fingerprint winningControl)
     {
         this.numTests = numTests;
         this.numChallenges = numChallenges;
@@ -17,9 +58,59 @@ public final class ExplorerLogEntry {
         this.numUnsolvedProblems = numUnsolvedProblems;
         this.numSolvedProblems = numSolvedProblems;
         this.numFailedProblems = numFailedProblems;
+
+        this.numCacheHits = numCacheHits;
+        this.numCacheStoreHits = numCacheStoreHits;
+        this.numCacheMisses = numCacheMisses;
+        this.numCacheEvictions = numCacheEvictions;
+        this.numCacheBytes = numCacheBytes;
+
+        this.problemOutcome = problemOutcome;
+        this.numProblemTests = numProblemTests;
+        this.numProblemSimSteps = numProblemSimSteps;
+        this.problemMillis = problemMillis;
+        this.numProblemCacheHits = numProblemCacheHits;
+        this.winningControl = winningControl;
     }
 
+    //Winning control is written as its 32 hex digits (all zeros if none), so the row stays exact in tools that read
+    //numbers as doubles
     protected String getCSVRow() {
-        return String.format("%d, %d, %d, %d, %d,\n", numTests, numChallenges, numUnsolvedProblems, numSolvedProblems, numFailedProblems);
+        return String.format("%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%s\n", numTests, numChallenges, numUnsolvedProblems, numSolvedProblems, numFailedProblems,
+                             numCacheHits, numCacheStoreHits, numCacheMisses, numCacheEvictions, numCacheBytes,
+                             problemOutcome, numProblemTests, numProblemSimSteps, problemMillis, numProblemCacheHits,
+                             (winningControl != null) ? winningControl.toString() : ExplorerLog.NO_CONTROL);
+    }
+
+    /** Writes row as ExplorerLog.NUM_BINARY_COLUMNS longs (the winning control taking two: high & low halves) */
+    protected void writeBinaryRow(DataOutput out) throws IOException {
+        out.writeLong(numTests);
+        out.writeLong(numChallenges);
+        out.writeLong(numUnsolvedProblems);
+        out.writeLong(numSolvedProblems);
+        out.writeLong(numFailedProblems);
+        out.writeLong(numCacheHits);
+        out.writeLong(numCacheStoreHits);
+        out.writeLong(numCacheMisses);
+        out.writeLong(numCacheEvictions);
+        out.writeLong(numCacheBytes);
+        out.writeLong(problemOutcome);
+        out.writeLong(numProblemTests);
+        out.writeLong(numProblemSimSteps);
+        out.writeLong(problemMillis);
+        out.writeLong(numProblemCacheHits);
+        out.writeLong((winningControl != null) ? winningControl.hi : 0);
+        out.writeLong((winningControl != null) ? winningControl.lo : 0);
+    }
+
+    /** Reads a row written by writeBinaryRow() */
+    protected static ExplorerLogEntry readBinaryRow(ByteBuffer in) {
+        long[] vals = new long[ExplorerLog.NUM_BINARY_COLUMNS];
+        for (int i = 0; i < vals.length; i++)
+            vals[i] = in.getLong();
+        Fingerprint winningControl = (vals[15] != 0 || vals[16] != 0) ? new Fingerprint(vals[15], vals[16]) : null;
+        return new ExplorerLogEntry((int)vals[0], (int)vals[1], (int)vals[2], (int)vals[3], (int)vals[4],
+                                    vals[5], vals[6], vals[7], vals[8], vals[9],
+                                    (int)vals[10], (int)vals[11], vals[12], vals[13], (int)vals[14], winningControl);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package edu.cmu.cs.graphics.hopper.explore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.zip.GZIPOutputStream;
+
+/** Streams ExplorerLog rows to disk, buffered: rows are only flushed through to the file every flushRows rows, or at
+ * most flushMillis ms after they're written (by a background timer, so rows don't sit in the buffer while exploration
+ * is busy with a long problem), & on close. Rows written since the last flush may be lost in a crash.
+ * Safe for use by the exploration thread alongside the flush timer (all file access is synchronized).
+ * Files can be rotated every maxRowsPerFile rows: parts after the first get "_1", "_2", ... appended to the base name,
+ * & each part starts with its own header, so every part can be read on its own.
+ * Formats:
+ *   CSV:    header line of column names, then one line per row (no spaces or trailing commas; ".csv")
+ *   BINARY: int MAGIC, int VERSION, int numColumns, numColumns column names (as DataOutput.writeUTF()), then rows of
+ *           numColumns big-endian longs (".explog"); see ExplorerLog.getBinaryColumns() & analysis/read_explog.m
+ * Either may be gzip-compressed (".gz" appended). */
+public class ExplorerLogWriter {
+    private static final Logger log = LoggerFactory.getLogger(ExplorerLogWriter.class);
+
+    public static final int MAGIC = 0x484C4F47;     //"HLOG"
+    public static final int VERSION = 1;
+
+    public enum Format {CSV, BINARY}
+
+    final String basePath;
+    final Format format;
+    final boolean compressed;
+    int flushRows = 1000;
+    long flushMillis = 5000;
+    long maxRowsPerFile = 0;
+
+    final ExplorerLog header = new ExplorerLog();
+    OutputStream fileStream;
+    Writer csvOut;
+    DataOutputStream binaryOut;
+    int numParts;
+    long numRowsInPart;
+    int numRowsSinceFlush;
+    Timer flushTimer;
+
+    /** Creates writer of log files named basePath + extension (files are created on first write) */
+    public ExplorerLogWriter(String basePath, Format format, boolean compressed) {
+        this.basePath = basePath;
+        this.format = format;
+        this.compressed = compressed;
+    }
+
+    /** Sets how many rows (or ms, whichever comes first) may be buffered before flushing to disk */
+    public void setFlushInterval(int rows, long millis) {
+        flushRows = rows;
+        flushMillis = millis;
+    }
+    /** Sets max rows per file before rotating to a new part (no rotation if <= 0) */
+    public void setMaxRowsPerFile(long val) {maxRowsPerFile = val;}
+
+    /** Returns path of the given part's file */
+    public String getPartPath(int partIdx) {
+        String extension = (format == Format.CSV) ? ".csv" : ".explog";
+        if (compressed)
+            extension += ".gz";
+        return basePath + ((partIdx > 0) ? "_" + partIdx : "") + extension;
+    }
+
+    public int getNumParts() {return numParts;}
+
+    public synchronized void write(ExplorerLogEntry entry) throws IOException {
+        if (fileStream == null || (maxRowsPerFile > 0 && numRowsInPart >= maxRowsPerFile))
+            openNextPart();
+
+        if (format == Format.CSV)
+            csvOut.write(entry.getCSVRow());
+        else
+            entry.writeBinaryRow(binaryOut);
+        numRowsInPart++;
+        numRowsSinceFlush++;
+
+        if (numRowsSinceFlush >= flushRows)
+            flush();
+    }
+
+    public synchronized void flush() throws IOException {
+        if (fileStream == null)
+            return;
+        if (csvOut != null)
+            csvOut.flush();
+        if (binaryOut != null)
+            binaryOut.flush();
+        numRowsSinceFlush = 0;
+    }
+
+    public synchronized void close() throws IOException {
+        if (flushTimer != null) {
+            flushTimer.cancel();
+            flushTimer = null;
+        }
+        if (fileStream == null)
+            return;
+        try {
+            flush();
+        }
+        finally {
+            closePart();
+        }
+    }
+
+    private void openNextPart() throws IOException {
+        closePart();
+
+        OutputStream out = new FileOutputStream(getPartPath(numParts));
+        if (compressed)
+            out = new GZIPOutputStream(out, 1 << 16, true);     //sync flush, so flushed rows are readable
+        else
+            out = new BufferedOutputStream(out, 1 << 16);
+        fileStream = out;
+        numParts++;
+        numRowsInPart = 0;
+        startFlushTimer();
+
+        if (format == Format.CSV) {
+            csvOut = new BufferedWriter(new OutputStreamWriter(fileStream, "utf-8"), 1 << 16);
+            csvOut.write(header.getCSVHeader());
+        }
+        else {
+            binaryOut = new DataOutputStream(fileStream);
+            String[] columns = ExplorerLog.getBinaryColumns();
+            binaryOut.writeInt(MAGIC);
+            binaryOut.writeInt(VERSION);
+            binaryOut.writeInt(columns.length);
+            for (String column : columns)
+                binaryOut.writeUTF(column);
+        }
+        flush();
+    }
+
+    //Every flushMillis, flushes any rows written since the last flush
+    private void startFlushTimer() {
+        if (flushTimer != null || flushMillis <= 0)
+            return;
+        flushTimer = new Timer("ExplorerLogFlush", true);
+        flushTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                synchronized (ExplorerLogWriter.this) {
+                    if (numRowsSinceFlush == 0)
+                        return;
+                    try {
+                        flush();
+                    }
+                    catch (IOException error) {
+                        log.error("Error flushing log file: " + getPartPath(numParts - 1) + " (" + error + ")");
+                    }
+                }
+            }
+        }, flushMillis, flushMillis);
+    }
+
+    private void closePart() throws IOException {
+        if (fileStream == null)
+            return;
+        try {
+            if (csvOut != null)
+                csvOut.close();
+            else if (binaryOut != null)
+                binaryOut.close();
+            else
+                fileStream.close();
+        }
+        finally {
+            fileStream = null;
+            csvOut = null;
+            binaryOut = null;
+        }
+    }
+}
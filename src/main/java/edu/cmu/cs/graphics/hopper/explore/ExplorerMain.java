@@ -2,11 +2,10 @@ package edu.cmu.cs.graphics.hopper.explore;
 
 import edu.cmu.cs.graphics.hopper.control.AvatarDefinition;
 import edu.cmu.cs.graphics.hopper.control.BipedHopperControl;
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
 import edu.cmu.cs.graphics.hopper.control.BipedHopperDefinition;
-import edu.cmu.cs.graphics.hopper.eval.BipedObstacleEvaluatorDefinition;
-import edu.cmu.cs.graphics.hopper.eval.EvalCache;
-import edu.cmu.cs.graphics.hopper.eval.EvalCacheEntry;
-import edu.cmu.cs.graphics.hopper.eval.EvaluatorDefinition;
+import edu.cmu.cs.graphics.hopper.eval.*;
+import edu.cmu.cs.graphics.hopper.io.DirLoader;
 import edu.cmu.cs.graphics.hopper.io.IOUtils;
 import edu.cmu.cs.graphics.hopper.net.HopperPlaySnap;
 import edu.cmu.cs.graphics.hopper.net.ServerInterface;
@@ -15,16 +14,18 @@ import edu.cmu.cs.graphics.hopper.oracle.AssociativeOracle;
 import edu.cmu.cs.graphics.hopper.oracle.ChallengeOracle;
 import edu.cmu.cs.graphics.hopper.oracle.UserOracle;
 import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
-import edu.cmu.cs.graphics.hopper.problems.TerrainProblemDefinition;
+import edu.cmu.cs.graphics.hopper.problems.SimCheckpointCache;
+import edu.cmu.cs.graphics.hopper.problems.SimProfile;
+import edu.cmu.cs.graphics.hopper.problems.SimProfileAgreement;
 import org.apache.commons.cli.*;
 import org.apache.commons.configuration.Configuration;
-import org.apache.commons.configuration.ConfigurationException;
-import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.log4j.xml.DOMConfigurator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
@@ -36,37 +37,16 @@ public class ExplorerMain {
         DOMConfigurator.configure("config/log4j.xml");
 
         Options options = new Options();
-        options.addOption("configFile", true, "Exploration configuration file name/path");
+        options.addOption("resume", false, "Resume the exploration from its last checkpoint (see checkpointPath) rather than starting over");
+        options.addOption("compareSchedulers", true, "Run the exploration once per given problem scheduler (comma-separated, or 'all'), " +
+                                                    "without saving anything, & report tests-to-completion of each");
 
-        CommandLineParser parser = new GnuParser();
-        CommandLine cmd = null;
-        try {
-            cmd = parser.parse(options, args);
-        }
-        catch (ParseException parseError) {
-            log.error("Error occurred while parsing command line inputs");
-            parseError.printStackTrace();
+        CommandLine cmd = ConfigUtils.parseCommandLine(options, args, "Exploration");
+        if (cmd == null)
             return;
-        }
-
-        String configFilePath = cmd.getOptionValue("configFile");
-        log.info("Loading config file: " + configFilePath);
-        Configuration config = null;
-        if (configFilePath != null && !configFilePath.isEmpty()) {
-            try {
-                File configFile = new File(configFilePath);
-                String fullFilePath = configFile.getAbsolutePath();
-                config = new PropertiesConfiguration(fullFilePath);
-            } catch (ConfigurationException e) {
-                log.error("Error while trying to load exploration config file: " + configFilePath);
-                e.printStackTrace();
-                return;
-            }
-        }
-        else {
-            log.error("No config file specified! Exiting... ");
+        Configuration config = ConfigUtils.loadConfig(cmd, "Exploration");
+        if (config == null)
             return;
-        }
 
         String explorationName = config.getString("explorationName");
         String explorationOutputPath = config.getString("explorationOutputPath");
@@ -75,55 +55,128 @@ public class ExplorerMain {
 
         boolean saveSols = config.getBoolean("saveSolutions");
         boolean saveLog = config.getBoolean("saveExplorationLog");
+        String logFormatName = config.getString("explorationLogFormat", "csv");
+        boolean logCompressed = config.getBoolean("explorationLogCompressed", false);
+        int logFlushRows = config.getInt("explorationLogFlushRows", 1000);
+        long logFlushMillis = config.getLong("explorationLogFlushMillis", 5000);
+        long logMaxRowsPerFile = config.getLong("explorationLogMaxRowsPerFile", 0);
         boolean verifyOracleSols = config.getBoolean("verifyOracleSolutions");
         boolean saveEvals = config.getBoolean("saveEvals");
         boolean saveCtrlEnsemble = config.getBoolean("saveCtrlEnsemble");
         int maxTestsPerProblem = config.getInt("maxTestsPerProblem");
+        int numEvalThreads = config.getInt("numEvalThreads", 1);
+        int numLoadThreads = config.getInt("numLoadThreads", Runtime.getRuntime().availableProcessors());
+        int saveQueueCapacity = config.getInt("saveQueueCapacity", 0);
+        boolean useWorldTemplates = config.getBoolean("useWorldTemplates", true);
+        boolean useSimCheckpoints = config.getBoolean("useSimCheckpoints", false);
+        int maxSimCheckpoints = config.getInt("maxSimCheckpoints", 32);
+        int maxSimCheckpointHop = config.getInt("maxSimCheckpointHop", 3);
+
+        //Screening (cheap sims first, with apparent successes verified at full fidelity)
+        boolean useScreening = config.getBoolean("useScreening", false);
+        SimProfile screeningProfile = new SimProfile("screening",
+                config.getInt("screeningUpdateHz", SimProfile.SCREENING.updateHz),
+                config.getInt("screeningPosIters", SimProfile.SCREENING.posIters),
+                config.getInt("screeningVelIters", SimProfile.SCREENING.velIters));
+        int screeningAuditInterval = config.getInt("screeningAuditInterval", 20);
+        int profileAgreementNumSols = config.getInt("profileAgreementNumSols", 0);
 
         boolean useEvalCache = config.getBoolean("useEvalCache");
         String[] evalCachePaths = config.getStringArray("evalCachePath");
+        String evalStorePath = config.getString("evalStorePath", "");
+        int evalCacheCapacity = config.getInt("evalCacheCapacity", EvalCache.DEFAULT_CAPACITY);
+        float evalCacheApproxCellSize = config.getFloat("evalCacheApproxCellSize", 0.0f);
+        float evalCacheAuditRate = config.getFloat("evalCacheAuditRate", 0.05f);
+        long evalCacheAuditSeed = config.getLong("evalCacheAuditSeed", EvalCache.DEFAULT_AUDIT_SEED);
+
+        //Known-failure filter (compact set of failing problem/control pairs, checked before simulating)
+        boolean useFailureFilter = config.getBoolean("useFailureFilter", false);
+        long failureFilterExpectedFailures = config.getLong("failureFilterExpectedFailures", 10000000L);
+        double failureFilterFalsePositiveRate = config.getDouble("failureFilterFalsePositiveRate", 0.001);
+        String[] failureFilterPaths = config.getStringArray("failureFilterPath");
+
+        //Learned success predictor (ranks candidates by how likely they are to succeed, & optionally skips unlikely ones)
+        boolean useSuccessPredictor = config.getBoolean("useSuccessPredictor", false);
+        String successPredictorPath = config.getString("successPredictorPath", "");
+        int successPredictorRandomFeatures = config.getInt("successPredictorRandomFeatures", 256);
+        boolean successPredictorRanking = config.getBoolean("successPredictorRanking", true);
+        int successPredictorRankWindow = config.getInt("successPredictorRankWindow", 64);
+        double successPredictorSkipThreshold = config.getDouble("successPredictorSkipThreshold", 0.0);
+        long successPredictorMinSamples = config.getLong("successPredictorMinSamples", 1000L);
+        int successPredictorAuditInterval = config.getInt("successPredictorAuditInterval", 20);
 
         boolean useSmartControlOrdering = config.getBoolean("useSmartControlOrdering");
+        int speculativeTopK = config.getInt("speculativeTopK", 1);
+
+        //Bandit control ordering (takes precedence over smart control ordering)
+        boolean useBanditControlOrdering = config.getBoolean("useBanditControlOrdering", false);
+        String banditStrategy = config.getString("banditStrategy", BanditControlExplorer.UCB);
+        double banditExplorationWeight = config.getDouble("banditExplorationWeight", 1.0);
+        double banditPriorWeight = config.getDouble("banditPriorWeight", 2.0);
+        double banditDistanceScale = config.getDouble("banditDistanceScale", 1.0);
+        double banditFailureTimeWeight = config.getDouble("banditFailureTimeWeight", 0.1);
+        long banditSeed = config.getLong("banditSeed", 12345L);
+
+        //Problem scheduling (order in which problems are tackled), or schedulers to compare
+        String problemSchedulerName = config.getString("problemScheduler", ProblemScheduler.IN_ORDER);
+        int schedulerNumNeighbors = config.getInt("problemSchedulerNumNeighbors", 5);
+        List<String> schedulerNames = new ArrayList<String>();
+        boolean comparingSchedulers = cmd.hasOption("compareSchedulers");
+        if (comparingSchedulers) {
+            String compareSchedulersVal = cmd.getOptionValue("compareSchedulers");
+            if (compareSchedulersVal.equalsIgnoreCase("all"))
+                schedulerNames.addAll(ProblemScheduler.NAMES);
+            else {
+                for (String name : compareSchedulersVal.split(","))
+                    schedulerNames.add(name.trim());
+            }
+        }
+        else
+            schedulerNames.add(problemSchedulerName);
+        for (String schedulerName : schedulerNames) {
+            try {
+                ProblemScheduler.create(schedulerName, schedulerNumNeighbors);
+            }
+            catch (IllegalArgumentException error) {
+                log.error(error.getMessage() + "; exiting...");
+                return;
+            }
+        }
 
         boolean enableUserOracle = config.getBoolean("enableUserOracle");
 
+        //Early termination rules (each off unless enabled)
+        List<TerminationRuleDefinition> terminationRules = ConfigUtils.createTerminationRules(config);
+
         String saveSolsDir = explorationOutputPath + explorationName + "/sols/";
         String saveLogDir = explorationOutputPath + explorationName + "/";
         String saveEvalsDir = explorationOutputPath + explorationName + "/evals/";
         String saveCtrlEnsembleDir = explorationOutputPath + explorationName + "/ensemble/";
 
-        int numProblems = config.getInt("numProblems");
-        int terrainSeed = config.getInt("terrainSeed");
-        int terrainLength = config.getInt("terrainLength");
-        float terrainDeltaX = config.getFloat("terrainDeltaX");
-        String[] terrainMaxAmpStrs = config.getStringArray("terrainMaxAmp");
-        float[] terrainMaxAmps = new float[terrainMaxAmpStrs.length];
-        for (int i = 0; i < terrainMaxAmps.length; i++)
-            terrainMaxAmps[i] = Float.parseFloat(terrainMaxAmpStrs[i]);
+        //Checkpoints (exploration state saved every so many problems, from which -resume continues)
+        int checkpointInterval = config.getInt("checkpointInterval", 0);
+        String checkpointPath = config.getString("checkpointPath", "");
+        if (checkpointPath.isEmpty())
+            checkpointPath = saveLogDir + explorationName + ExplorerCheckpoint.EXTENSION;
+        boolean resume = cmd.hasOption("resume");
+        if (resume && comparingSchedulers) {
+            log.error("Can't resume an exploration while comparing problem schedulers; exiting...");
+            return;
+        }
+        //The eval cache isn't checkpointed, so a resumed exploration only sees the same cached results if every one was
+        //written through to an eval store (& none are approximate, as those depend on what was cached when)
+        if (resume && useEvalCache &&
+            (evalStorePath.isEmpty() || !saveEvals || saveQueueCapacity > 0 || evalCacheApproxCellSize > 0)) {
+            log.error("Can't resume an exploration using the eval cache unless it's written through to an eval store " +
+                      "(evalStorePath & saveEvals set, saveQueueCapacity 0) without approximate lookups; exiting...");
+            return;
+        }
 
         log.info("Starting a control exploration named " + explorationName);
         long t0 = System.currentTimeMillis();
 
-        List<ProblemDefinition> problems = new ArrayList<ProblemDefinition>();
-
         //Terrain test
-        for (int ampIdx = 0; ampIdx < terrainMaxAmps.length; ampIdx++) {
-            float terrainMaxAmp = terrainMaxAmps[ampIdx];
-            Random r = new Random();
-            r.setSeed(terrainSeed);
-            for (int i = 0; i < numProblems; i++) {
-                float y = 0.0f;
-                List<Float> verts = new ArrayList<Float>(terrainLength);
-                verts.add(0.0f);      //initial "ground" node
-                for (int j = 0; j < terrainLength; j++) {
-                    y = terrainMaxAmp*(r.nextFloat());
-                    if (y < 0)
-                        y = 0;
-                    verts.add(y);
-                }
-                problems.add(new TerrainProblemDefinition(verts, terrainDeltaX));
-            }
-        }
+        List<ProblemDefinition> problems = ConfigUtils.createProblems(config);
 
         //Test problem set
 //        for (int i = 1; i < 2; i++) {
@@ -135,68 +188,209 @@ public class ExplorerMain {
         //Test avatar
         AvatarDefinition avatarDef = new BipedHopperDefinition();
 
-        //Evaluation cache setup
-        EvalCache evalCache = null;
+        //Input dirs of solutions & evals are parsed on multiple threads, with progress logged as they go
+        IOUtils.instance().setNumLoadThreads(numLoadThreads);
+        DirLoader.ProgressListener loadProgress = new DirLoader.ProgressListener() {
+            @Override
+            public void onProgress(String dirPath, int numFilesDone, int numFiles, int numFilesFailed) {
+                log.info("Loading " + dirPath + ": " + numFilesDone + "/" + numFiles + " files" +
+                         (numFilesFailed > 0 ? " (" + numFilesFailed + " unreadable)" : ""));
+            }
+        };
+
+        //Persistent eval store (single-file alternative to dirs of .ech files), if configured
+        EvalStore evalStore = null;
+        if (!evalStorePath.isEmpty() && (useEvalCache || saveEvals)) {
+            try {
+                evalStore = EvalStore.open(evalStorePath);
+                log.info("Opened eval store at " + evalStorePath + " (" + evalStore.size() + " evals)");
+            }
+            catch (IOException error) {
+                log.error("Error opening eval store at " + evalStorePath + "; continuing without it");
+                error.printStackTrace();
+            }
+        }
+
+        //Eval cache inputs (loaded once; each run's cache is filled from them)
+        List<EvalCacheEntry> evalCacheEntries = new ArrayList<EvalCacheEntry>();
         if (useEvalCache) {
-            evalCache = new EvalCache();
-            for (String evalCachePath : evalCachePaths) {
-                List<EvalCacheEntry> evalCacheEntries = IOUtils.instance().loadAllEvalCacheEntriesInDir(evalCachePath);
-                for (EvalCacheEntry entry : evalCacheEntries) {
-                    evalCache.insert(entry.key, entry.value);
+            for (String evalCachePath : evalCachePaths)
+                evalCacheEntries.addAll(IOUtils.instance().loadAllEvalCacheEntriesInDir(evalCachePath, loadProgress));
+        }
+
+        //Known failures of previous explorations (given their output dirs or filter files), merged into each run's filter
+        FailureFilter prevFailureFilter = null;
+        if (useFailureFilter) {
+            prevFailureFilter = new FailureFilter(failureFilterExpectedFailures, failureFilterFalsePositiveRate);
+            for (String failureFilterPath : failureFilterPaths) {
+                File filterFile = new File(failureFilterPath);
+                if (filterFile.isDirectory())
+                    filterFile = new File(filterFile, FailureFilter.FILENAME);
+                try {
+                    FailureFilter prevFilter = FailureFilter.load(filterFile.getPath());
+                    if (prevFailureFilter.isCompatible(prevFilter))
+                        prevFailureFilter.merge(prevFilter);
+                    else
+                        log.warn("Skipping failure filter of a different size (" + prevFilter + "): " + filterFile);
+                }
+                catch (IOException error) {
+                    log.error("Error loading failure filter: " + filterFile);
                 }
             }
+            log.info("Failure filter: " + prevFailureFilter);
         }
 
-        List<ChallengeOracle<BipedHopperControl>> oracles = new ArrayList<ChallengeOracle<BipedHopperControl>>();
+        //Automated oracle's solutions
+        List<ProblemSolutionEntry> autoOracleSolutionEntries = new ArrayList<ProblemSolutionEntry>();
+        for (String autoOracleSolsPath : autoOracleSolsPaths)
+            autoOracleSolutionEntries.addAll(IOUtils.instance().loadAllProblemSolutionEntriesInDir(autoOracleSolsPath, loadProgress));
+
+        //Test evaluation
+        EvaluatorDefinition evalDef = ConfigUtils.createEvaluatorDefinition(config, terminationRules);
+
+        //Explore (once per scheduler, if comparing them: with nothing saved, & results tabulated at the end)
+        //Each run gets its own eval cache, failure filter, success predictor & oracles, built afresh from the same inputs,
+        //so that no compared run gains from what an earlier one learned (eg: cache hits, which count as tests but
+        //skip sims, or oracle solutions found for an earlier run's challenges)
+        Explorer explorer = null;
+        EvalCache evalCache = null;
+        List<String> comparisonRows = new ArrayList<String>();
+        for (String schedulerName : schedulerNames) {
+            long runT0 = System.currentTimeMillis();
+            if (comparingSchedulers)
+                log.info("Exploring with problem scheduler: " + schedulerName);
+
+            if (useBanditControlOrdering) {
+                BanditControlExplorer banditExplorer = new BanditControlExplorer();
+                banditExplorer.setStrategy(banditStrategy);
+                banditExplorer.setExplorationWeight(banditExplorationWeight);
+                banditExplorer.setPriorWeight(banditPriorWeight);
+                banditExplorer.setDistanceScale(banditDistanceScale);
+                banditExplorer.setFailureTimeWeight(banditFailureTimeWeight);
+                banditExplorer.setSeed(banditSeed);
+                explorer = banditExplorer;
+            }
+            else if (useSmartControlOrdering) {
+                SmartControlExplorer smartExplorer = new SmartControlExplorer();
+                smartExplorer.setSpeculativeTopK(speculativeTopK);
+                explorer = smartExplorer;
+            }
+            else
+                explorer = new SimpleExplorer();
+            explorer.setProblemScheduler(ProblemScheduler.create(schedulerName, schedulerNumNeighbors));
+
+            //Evaluation cache setup
+            evalCache = null;
+            if (useEvalCache) {
+                evalCache = new EvalCache(evalCacheCapacity, evalStore);
+                //Fresh evals go straight through to the store as they enter the cache, if saving them
+                //(unless the explorer's background save queue is writing them to the store instead, or nothing's being saved)
+                evalCache.setWriteThrough(saveEvals && saveQueueCapacity <= 0 && !comparingSchedulers);
+                evalCache.setApproxCellSize(evalCacheApproxCellSize);
+                evalCache.setAuditRate(evalCacheAuditRate);
+                evalCache.setAuditSeed(evalCacheAuditSeed);
+                for (EvalCacheEntry entry : evalCacheEntries)
+                    evalCache.insert(entry.key, entry.value);
+                if (!comparingSchedulers)
+                    evalCacheEntries.clear();   //Not needed for another run
+            }
+
+            //Known-failure filter setup
+            FailureFilter failureFilter = null;
+            if (useFailureFilter) {
+                failureFilter = new FailureFilter(failureFilterExpectedFailures, failureFilterFalsePositiveRate);
+                failureFilter.merge(prevFailureFilter);
+            }
+
+            List<ChallengeOracle<BipedHopperControl>> oracles = new ArrayList<ChallengeOracle<BipedHopperControl>>();
 
-        //Automated oracle
-        AssociativeOracle<BipedHopperControl> autoOracle = new AssociativeOracle<BipedHopperControl>();
-        for (String autoOracleSolsPath : autoOracleSolsPaths) {
-            List<ProblemSolutionEntry> solutionEntries = IOUtils.instance().loadAllProblemSolutionEntriesInDir(autoOracleSolsPath);
-            for (ProblemSolutionEntry solutionEntry : solutionEntries)
+            //Automated oracle
+            AssociativeOracle<BipedHopperControl> autoOracle = new AssociativeOracle<BipedHopperControl>();
+            for (ProblemSolutionEntry solutionEntry : autoOracleSolutionEntries)
                 autoOracle.addSolutionEntry(solutionEntry.problem, solutionEntry.solution);
-        }
-        oracles.add(autoOracle);
+            oracles.add(autoOracle);
 
-        //User oracle
-        if (enableUserOracle) {
-            UserOracle<BipedHopperControl> userOracle = new UserOracle<BipedHopperControl>();
-            oracles.add(userOracle);
-        }
+            //User oracle
+            if (enableUserOracle) {
+                UserOracle<BipedHopperControl> userOracle = new UserOracle<BipedHopperControl>();
+                oracles.add(userOracle);
+            }
 
-        //Test evaluation
-        float maxTime = 15.0f;
-        float minXForSuccess = terrainLength * terrainDeltaX;
-        float maxUprightDeviation = 1.0f;
-        float minConsecutiveUprightTimeAfterMinXReached = 3.0f;
-        EvaluatorDefinition evalDef = new BipedObstacleEvaluatorDefinition(maxTime, minXForSuccess, maxUprightDeviation, minConsecutiveUprightTimeAfterMinXReached);
-
-        Explorer explorer;
-        if (useSmartControlOrdering)
-            explorer = new SmartControlExplorer();
-        else
-            explorer = new SimpleExplorer();
-
-        //Pre-existing ensemble inputs
-        for (String inputCtrlEnsemblePath : inputCtrlEnsemblePaths)
-            explorer.loadEnsemble(inputCtrlEnsemblePath);
-
-        explorer.setName(explorationName);
-        explorer.setSolutionsSaved(saveSols);
-        explorer.setSolutionsSavePath(saveSolsDir);
-        explorer.setLogSaved(saveLog);
-        explorer.setLogSavePath(saveLogDir);
-        explorer.setEvalsSaved(saveEvals);
-        explorer.setEvalsSavePath(saveEvalsDir);
-        explorer.setControlEnsembleSaved(saveCtrlEnsemble);
-        explorer.setControlEnsembleSavePath(saveCtrlEnsembleDir);
-        explorer.setVerifyOracleSols(verifyOracleSols);
-        explorer.setMaxTestsPerProblem(maxTestsPerProblem);
-        if (evalCache != null) explorer.setEvalCache(evalCache);
-
-        //Net logging test
-        SnapServerInterface server = new SnapServerInterface("gs13099.sp.cs.cmu.edu", 8080);
-        explorer.setServerInterface(server);
+            //Pre-existing ensemble inputs (if resuming, the checkpoint's ensemble already includes these)
+            if (resume) {
+                try {
+                    explorer.resumeFrom(ExplorerCheckpoint.load(checkpointPath));
+                }
+                catch (IOException error) {
+                    log.error("Error loading exploration checkpoint for resume: " + checkpointPath + " (" + error + "); exiting...");
+                    return;
+                }
+            }
+            else {
+                for (String inputCtrlEnsemblePath : inputCtrlEnsemblePaths)
+                    explorer.loadEnsemble(inputCtrlEnsemblePath);
+            }
+
+            explorer.setName(explorationName);
+            if (!comparingSchedulers) {
+                explorer.setSolutionsSaved(saveSols);
+                explorer.setSolutionsSavePath(saveSolsDir);
+                explorer.setLogSaved(saveLog);
+                explorer.setLogSavePath(saveLogDir);
+                explorer.setLogFormat(ExplorerLogWriter.Format.valueOf(logFormatName.toUpperCase()));
+                explorer.setLogCompressed(logCompressed);
+                explorer.setLogFlushInterval(logFlushRows, logFlushMillis);
+                explorer.setLogMaxRowsPerFile(logMaxRowsPerFile);
+                explorer.setEvalsSaved(saveEvals);
+                explorer.setEvalsSavePath(saveEvalsDir);
+                explorer.setControlEnsembleSaved(saveCtrlEnsemble);
+                explorer.setControlEnsembleSavePath(saveCtrlEnsembleDir);
+                explorer.setSaveQueueCapacity(saveQueueCapacity);
+                if (checkpointInterval > 0) {
+                    IOUtils.instance().ensurePathExists(saveLogDir);
+                    explorer.setCheckpointPath(checkpointPath);
+                    explorer.setCheckpointInterval(checkpointInterval);
+                }
+            }
+            explorer.setVerifyOracleSols(verifyOracleSols);
+            explorer.setMaxTestsPerProblem(maxTestsPerProblem);
+            explorer.setNumEvalThreads(numEvalThreads);
+            explorer.setUseWorldTemplates(useWorldTemplates);
+            explorer.setUseSimCheckpoints(useSimCheckpoints);
+            explorer.setMaxSimCheckpoints(maxSimCheckpoints);
+            explorer.setMaxSimCheckpointHop(maxSimCheckpointHop);
+            if (useScreening) {
+                explorer.setScreeningProfile(screeningProfile);
+                explorer.setScreeningAuditInterval(screeningAuditInterval);
+            }
+            if (evalCache != null) explorer.setEvalCache(evalCache);
+            if (evalStore != null && saveEvals && !comparingSchedulers) explorer.setEvalStore(evalStore);
+            if (failureFilter != null) explorer.setFailureFilter(failureFilter);
+            //Each compared run starts from the same predictor, since it learns as it goes
+            if (useSuccessPredictor) {
+                SuccessPredictor successPredictor = new SuccessPredictor(successPredictorRandomFeatures, 0.0, 12345L);
+                if (!successPredictorPath.isEmpty()) {
+                    try {
+                        successPredictor = SuccessPredictor.load(successPredictorPath);
+                    }
+                    catch (IOException error) {
+                        log.error("Error loading success predictor (starting an untrained one): " + successPredictorPath);
+                    }
+                }
+                log.info("Success predictor: " + successPredictor);
+                explorer.setSuccessPredictor(successPredictor);
+                explorer.setSuccessPredictorRanking(successPredictorRanking);
+                explorer.setSuccessPredictorRankWindow(successPredictorRankWindow);
+                explorer.setSuccessPredictorSkipThreshold(successPredictorSkipThreshold);
+                explorer.setSuccessPredictorMinSamples(successPredictorMinSamples);
+                explorer.setSuccessPredictorAuditInterval(successPredictorAuditInterval);
+            }
+
+            //Net logging test
+            if (!comparingSchedulers) {
+                SnapServerInterface server = new SnapServerInterface("gs13099.sp.cs.cmu.edu", 8080);
+                explorer.setServerInterface(server);
+            }
 //        //TEST
 //        HopperPlaySnap snap = new HopperPlaySnap();
 //        snap.user = "bhumbers";
@@ -204,7 +398,40 @@ public class ExplorerMain {
 //        snap.controls = new float[][]{{42, 6 ,7}, {25, 5, 5}};
 //        server.sendPlaySnap(snap);
 
-        explorer.explore(problems, avatarDef, evalDef, oracles);
+            explorer.explore(problems, avatarDef, evalDef, oracles);
+            for (ChallengeOracle oracle : oracles)
+                oracle.close();
+
+            if (comparingSchedulers) {
+                long runMillis = System.currentTimeMillis() - runT0;
+                log.info("Scheduler " + schedulerName + ": " + explorer.getNumTests() + " tests, " +
+                         explorer.getNumOracleChallenges() + " oracle challenges, " + runMillis + " ms");
+                comparisonRows.add(String.format("%s,%d,%d,%d,%d,%d\n", schedulerName, explorer.getNumTests(),
+                                                 explorer.getNumOracleChallenges(), explorer.getNumSolvedProblems(),
+                                                 explorer.getNumFailedProblems(), runMillis));
+            }
+        }
+
+        if (comparingSchedulers) {
+            String comparisonHeader = "Scheduler,Num Tests,Num Challenges,Num Solved,Num Failed,Runtime Millis\n";
+            log.info("Problem scheduler comparison (" + problems.size() + " problems):\n" + comparisonHeader +
+                     join(comparisonRows));
+            String comparisonPath = saveLogDir + explorationName + "_SchedulerComparison.csv";
+            try {
+                IOUtils.instance().ensurePathExists(saveLogDir);
+                FileWriter comparisonWriter = new FileWriter(comparisonPath);
+                try {
+                    comparisonWriter.write(comparisonHeader);
+                    comparisonWriter.write(join(comparisonRows));
+                }
+                finally {
+                    comparisonWriter.close();
+                }
+            }
+            catch (IOException error) {
+                log.error("Error writing problem scheduler comparison to " + comparisonPath);
+            }
+        }
 
         long t1 = System.currentTimeMillis();
         long explorationRuntime = (t1 - t0);
@@ -216,9 +443,78 @@ public class ExplorerMain {
         log.info("Runtime: " + runtimeStr);
         log.info("Problems Solved:          " + explorer.getNumSolvedProblems() + "/" + explorer.getNumProblems());
         log.info("Sim Tests Used:           " + explorer.getNumTests());
+        if (explorer.getNumProblems() > 0)
+            log.info(String.format("Mean Tests Per Problem:   %.2f", explorer.getNumTests()/(double)explorer.getNumProblems()));
+        log.info("Speculative Sims Unused:  " + explorer.getNumSpeculativeTests() + " (" + explorer.getNumCancelledSpeculativeTests() + " cancelled early)");
+        if (explorer.getSimCheckpoints() != null) {
+            SimCheckpointCache checkpoints = explorer.getSimCheckpoints();
+            log.info("Sim Checkpoints Taken:    " + checkpoints.getNumCheckpointsTaken());
+            log.info("Sims Resumed:             " + checkpoints.getNumResumes() + " (" + checkpoints.getNumStepsSkipped() + " steps skipped)");
+            log.info("Shared Prefix Outcomes:   " + checkpoints.getNumEndStatusHits());
+        }
+        for (TerminationRuleDefinition rule : terminationRules)
+            log.info("Early Exit (" + rule.getName() + "): " + rule.getNumTerminations() + " sims, " + rule.getNumStepsSaved() + " steps saved");
+        if (explorer.getScreeningAgreement() != null) {
+            log.info("Verification Sims:        " + explorer.getNumVerifySims());
+            log.info("Screening Agreement:      " + explorer.getScreeningAgreement());
+        }
+        if (evalCache != null)
+            log.info("Eval Cache:               " + evalCache);
+        if (explorer.getFailureFilter() != null) {
+            //(A resumed exploration's filter is the one restored from its checkpoint)
+            log.info("Known Failures Skipped:   " + explorer.getNumKnownFailuresSkipped());
+            log.info("Failure Filter:           " + explorer.getFailureFilter());
+            try {
+                IOUtils.instance().ensurePathExists(saveLogDir);
+                explorer.getFailureFilter().save(saveLogDir + FailureFilter.FILENAME);
+            }
+            catch (IOException error) {
+                log.error("Error saving failure filter to " + saveLogDir);
+            }
+        }
+        if (explorer.getSuccessPredictor() != null) {
+            //Share of audited (skipped, but tested anyway) candidates which succeeded estimates that of the untested
+            //skips, & so how many successes went untested, as a share of all successes (those found plus those)
+            int numAudits = explorer.getNumPredictorAudits();
+            int numUntested = explorer.getNumPredictorSkips() - numAudits;
+            String recallLost = "";
+            if (numAudits > 0) {
+                double estSuccessesSkipped = numUntested*explorer.getNumPredictorAuditSuccesses()/(double)numAudits;
+                double estSuccesses = explorer.getNumPredictorSuccessesFound() + estSuccessesSkipped;
+                recallLost = String.format(", ~%.1f successes skipped, ~%.1f%% recall lost", estSuccessesSkipped,
+                                           (estSuccesses > 0) ? 100.0*estSuccessesSkipped/estSuccesses : 0.0);
+            }
+            log.info("Predictor Tests Saved:    " + numUntested + " (" + explorer.getNumPredictorAuditSuccesses() + "/" +
+                     numAudits + " audited skips succeeded" + recallLost + ")");
+            log.info("Success Predictor:        " + explorer.getSuccessPredictor());
+            if (!comparingSchedulers) {
+                try {
+                    IOUtils.instance().ensurePathExists(saveLogDir);
+                    explorer.getSuccessPredictor().save(saveLogDir + SuccessPredictor.FILENAME);
+                }
+                catch (IOException error) {
+                    log.error("Error saving success predictor to " + saveLogDir);
+                }
+            }
+        }
         log.info("Oracle Challenges Issued: " + explorer.getNumOracleChallenges());
         log.info("Oracle Challenges Failed: " + explorer.getNumFailedProblems());
 
+        //If requested, check how often screening outcomes flip vs. full fidelity across the whole problem set,
+        //using the first few solutions found as test controls
+        if (profileAgreementNumSols > 0) {
+            List<ControlProviderDefinition<?>> sols = new ArrayList<ControlProviderDefinition<?>>();
+            for (Object solvedProblem : explorer.getSolvedProblems()) {
+                if (sols.size() >= profileAgreementNumSols)
+                    break;
+                sols.add(((ProblemSolutionEntry)solvedProblem).solution);
+            }
+            log.info("Checking sim profile agreement on " + problems.size() + " problems x " + sols.size() + " solutions...");
+            SimProfileAgreement agreement = SimProfileAgreement.compare(problems, sols, avatarDef, evalDef,
+                                                                        screeningProfile, SimProfile.VERIFY);
+            log.info("Profile Agreement:        " + agreement);
+        }
+
         //TEST: Save solution map to files
 //        Collection<ProblemSolutionEntry> solvedProblems = explorer.getSolvedProblems();
 //        int i = 1;
@@ -228,7 +524,20 @@ public class ExplorerMain {
 //            i++;
 //        }
 
-        for (ChallengeOracle oracle : oracles)
-            oracle.close();
+        if (evalStore != null) {
+            try {
+                evalStore.close();
+            }
+            catch (IOException error) {
+                log.error("Error closing eval store at " + evalStorePath);
+            }
+        }
+    }
+
+    private static String join(List<String> rows) {
+        StringBuilder joined = new StringBuilder();
+        for (String row : rows)
+            joined.append(row);
+        return joined.toString();
     }
 }
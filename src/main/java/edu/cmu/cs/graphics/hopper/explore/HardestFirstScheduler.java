@@ -0,0 +1,102 @@
+package edu.cmu.cs.graphics.hopper.explore;
+
+import edu.cmu.cs.graphics.hopper.math.KDIndex;
+import edu.cmu.cs.graphics.hopper.math.MathUtils;
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+
+import java.util.*;
+
+/** Tackles problems (& challenges the oracles with them) in order of lowest predicted probability that the explorer
+ * solves them itself, so the problems most in need of oracle solutions get them early. Predictions come from the
+ * outcomes of the nearest explored problems: (number solved + 1) / (number of neighbors + 2). Ties go to the problem
+ * given first. A problem's prediction is only recomputed when a newly explored problem lands among its neighbors. */
+public class HardestFirstScheduler extends ProblemScheduler {
+    final int numNeighbors;
+
+    KDIndex<Boolean> outcomes;      //keys are params of explored problems, vals whether explorer solved them
+    Set<ProblemDefinition> explored = new HashSet<ProblemDefinition>();
+    Map<ProblemDefinition, Prediction> predictions = new HashMap<ProblemDefinition, Prediction>();
+
+    static final class Prediction {
+        final double[] params;
+        double solveProb;
+        double neighborhoodDistSqrd;     //to farthest neighbor (infinite if fewer than numNeighbors explored)
+
+        Prediction(double[] params) {
+            this.params = params;
+        }
+    }
+
+    public HardestFirstScheduler(int numNeighbors) {
+        this.numNeighbors = Math.max(numNeighbors, 1);
+    }
+
+    @Override
+    public String getName() {return HARDEST_FIRST;}
+
+    @Override
+    public void addOutcome(ProblemDefinition problem, boolean solvedByExplorer) {
+        if (!explored.add(problem))
+            return;
+        predictions.remove(problem);
+        double[] params = problem.getParamsArray();
+        if (outcomes == null)
+            outcomes = new KDIndex<Boolean>(params.length);
+        outcomes.insert(params, solvedByExplorer);
+
+        //Drop predictions whose neighbors may have changed
+        Iterator<Prediction> predictionIter = predictions.values().iterator();
+        while (predictionIter.hasNext()) {
+            Prediction prediction = predictionIter.next();
+            if (MathUtils.deltaSqrd(prediction.params, params) <= prediction.neighborhoodDistSqrd)
+                predictionIter.remove();
+        }
+    }
+
+    @Override
+    public ProblemDefinition nextProblem(Collection<ProblemDefinition> unsolvedProblems) {
+        return hardest(unsolvedProblems);
+    }
+
+    @Override
+    public ProblemDefinition nextChallenge(Collection<ProblemDefinition> challengeProblems) {
+        return hardest(challengeProblems);
+    }
+
+    /** Returns predicted probability that explorer solves given problem itself */
+    public double predictSolveProb(ProblemDefinition problem) {
+        return getPrediction(problem).solveProb;
+    }
+
+    private ProblemDefinition hardest(Collection<ProblemDefinition> problems) {
+        ProblemDefinition best = null;
+        double bestSolveProb = 0.0;
+        for (ProblemDefinition problem : problems) {
+            double solveProb = getPrediction(problem).solveProb;
+            if (best == null || solveProb < bestSolveProb) {
+                best = problem;
+                bestSolveProb = solveProb;
+            }
+        }
+        return best;
+    }
+
+    private Prediction getPrediction(ProblemDefinition problem) {
+        Prediction prediction = predictions.get(problem);
+        if (prediction == null) {
+            prediction = new Prediction(problem.getParamsArray());
+            int numSolved = 0;
+            List<KDIndex.Entry<Boolean>> neighbors = (outcomes != null) ? outcomes.nearest(prediction.params, numNeighbors)
+                                                                        : Collections.<KDIndex.Entry<Boolean>>emptyList();
+            for (KDIndex.Entry<Boolean> neighbor : neighbors) {
+                if (neighbor.value)
+                    numSolved++;
+            }
+            prediction.solveProb = (numSolved + 1.0)/(neighbors.size() + 2.0);
+            prediction.neighborhoodDistSqrd = (neighbors.size() < numNeighbors) ? Double.POSITIVE_INFINITY
+                                                                                : neighbors.get(neighbors.size() - 1).distSqrd;
+            predictions.put(problem, prediction);
+        }
+        return prediction;
+    }
+}
@@ -0,0 +1,20 @@
+package edu.cmu.cs.graphics.hopper.explore;
+
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+
+import java.util.Collection;
+
+/** Tackles problems in the order they were given */
+public class InOrderScheduler extends ProblemScheduler {
+    @Override
+    public String getName() {return IN_ORDER;}
+
+    @Override
+    public void addOutcome(ProblemDefinition problem, boolean solvedByExplorer) {
+    }
+
+    @Override
+    public ProblemDefinition nextProblem(Collection<ProblemDefinition> unsolvedProblems) {
+        return unsolvedProblems.iterator().next();
+    }
+}
@@ -0,0 +1,49 @@
+package edu.cmu.cs.graphics.hopper.explore;
+
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/** Decides the order in which an Explorer tackles its unsolved problems (& hands challenges to the oracles). This
+ * decides which oracle solutions enter the control ensemble early, & so how many tests are needed overall.
+ * Schedulers are told the outcome of each problem as it's explored, & may use them in ordering the rest. */
+public abstract class ProblemScheduler {
+    public static final String IN_ORDER = "inOrder";
+    public static final String FARTHEST_FIRST = "farthestFirst";
+    public static final String NEAREST_FIRST = "nearestFirst";
+    public static final String HARDEST_FIRST = "hardestFirst";
+
+    public static final List<String> NAMES = Arrays.asList(IN_ORDER, FARTHEST_FIRST, NEAREST_FIRST, HARDEST_FIRST);
+
+    /** Returns new scheduler of given name (one of NAMES); numNeighbors is used by schedulers predicting from
+     * the outcomes of nearby problems */
+    public static ProblemScheduler create(String name, int numNeighbors) {
+        if (name.equals(IN_ORDER))
+            return new InOrderScheduler();
+        if (name.equals(FARTHEST_FIRST))
+            return new CoverageScheduler(true);
+        if (name.equals(NEAREST_FIRST))
+            return new CoverageScheduler(false);
+        if (name.equals(HARDEST_FIRST))
+            return new HardestFirstScheduler(numNeighbors);
+        throw new IllegalArgumentException("Unknown problem scheduler '" + name + "' (expected one of " + NAMES + ")");
+    }
+
+    /** Returns short descriptive name of this scheduler (for logs) */
+    public abstract String getName();
+
+    /** Notes that given problem has been explored; solvedByExplorer is false if it had to go to the oracles.
+     * Also called for problems already known to be solved (or not) before exploration starts. */
+    public abstract void addOutcome(ProblemDefinition problem, boolean solvedByExplorer);
+
+    /** Returns which of the (non-empty) unsolved problems to tackle next */
+    public abstract ProblemDefinition nextProblem(Collection<ProblemDefinition> unsolvedProblems);
+
+    /** Returns which of the (non-empty) problems awaiting the oracles to challenge them with next (by default, the
+     * one waiting longest) */
+    public ProblemDefinition nextChallenge(Collection<ProblemDefinition> challengeProblems) {
+        return challengeProblems.iterator().next();
+    }
+}
@@ -1,6 +1,7 @@
 package edu.cmu.cs.graphics.hopper.explore;
 
 import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.math.Fingerprint;
 import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
 
 /**A problem with associated solution sequence */
@@ -13,6 +14,9 @@ public final class ProblemSolutionEntry {
         this.solution = solution;
     }
 
+    public ProblemDefinition getProblem() {return problem;}
+    public ControlProviderDefinition<?> getSolution() {return solution;}
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -32,4 +36,9 @@ public final class ProblemSolutionEntry {
         result = 31 * result + solution.hashCode();
         return result;
     }
+
+    /** Returns a stable fingerprint of the (problem, solution) pair, eg: for naming the entry's file */
+    public Fingerprint getFingerprint() {
+        return Fingerprint.combine(problem.getFingerprint(), solution.getFingerprint());
+    }
 }
@@ -5,7 +5,6 @@ import edu.cmu.cs.graphics.hopper.control.ControlProvider;
 import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
 import edu.cmu.cs.graphics.hopper.io.IOUtils;
 import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
-import net.sf.javaml.core.kdtree.KDTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,9 +19,12 @@ public class SimpleExplorer<C extends Control> extends Explorer<C> {
     //Just a way of keeping track of which controls exist already in the ensemble
     LinkedHashSet<ControlProviderDefinition<C>> controlEnsemble;
     Iterator<ControlProviderDefinition<C>> nextControlProviderIter;
+    //Entries whose controls were added to the ensemble, in order (for checkpoints)
+    List<ProblemSolutionEntry> ensembleEntries;
 
     public SimpleExplorer() {
         controlEnsemble = new LinkedHashSet<ControlProviderDefinition<C>>();
+        ensembleEntries = new ArrayList<ProblemSolutionEntry>();
     }
 
     @Override
@@ -43,13 +45,6 @@ public class SimpleExplorer<C extends Control> extends Explorer<C> {
         nextControlProviderIter = controlEnsemble.iterator();
     }
 
-    @Override
-    protected ProblemDefinition getNextProblemToTest() {
-        if (unsolvedProblems.size() > 0)
-            return unsolvedProblems.iterator().next();
-        return null;
-    }
-
     @Override
     protected ControlProviderDefinition<C> getNextControlSequence(ProblemDefinition p) {
         //Just return next sequence in the list, if available
@@ -60,23 +55,22 @@ public class SimpleExplorer<C extends Control> extends Explorer<C> {
         return provider;
     }
 
-    @Override
-    protected ProblemDefinition getNextChallengeProblem() {
-        //Return something arbitrary from the map of marked oracle problems
-        if (!oracleChallengeProblems.isEmpty())
-            return oracleChallengeProblems.iterator().next();
-        return null;
-    }
-
     @Override
     protected void addToControlEnsemble(ProblemDefinition problem, ControlProviderDefinition<C> control) {
         //Add the new solution to our ensemble (control vocabulary)
         //Note that we don't particular care about the problem it solved in this simple explorer
 
-        if (!controlEnsemble.contains(control))
+        if (!controlEnsemble.contains(control)) {
             controlEnsemble.add(control);
+            ensembleEntries.add(new ProblemSolutionEntry(problem, control));
+        }
         else {
             log.info("Note: Declined to add a duplicate challenge solution to control ensemble.");
         }
     }
+
+    @Override
+    protected List<ProblemSolutionEntry> getControlEnsembleEntries() {
+        return ensembleEntries;
+    }
 }
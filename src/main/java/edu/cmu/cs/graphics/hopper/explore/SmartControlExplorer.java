@@ -4,9 +4,8 @@ import edu.cmu.cs.graphics.hopper.control.Control;
 import edu.cmu.cs.graphics.hopper.control.ControlProvider;
 import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
 import edu.cmu.cs.graphics.hopper.io.IOUtils;
-import edu.cmu.cs.graphics.hopper.math.MathUtils;
+import edu.cmu.cs.graphics.hopper.math.KDIndex;
 import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
-import net.sf.javaml.core.kdtree.KDTree;
 
 import java.util.*;
 
@@ -16,21 +15,31 @@ public class SmartControlExplorer<C extends Control> extends Explorer<C> {
 //    KDTree controlsByProblem;
 //    int numControlsByProblem;
 
-    //Map of control sequences, where each entry is a KD tree containing all the problems that
-    //the sequence is known to solve (in the tree, keys are problem param arrays, vals are ProblemDefinition objects)
-    LinkedHashMap<ControlProviderDefinition, KDTree> problemsByControlSolution;
-    int numTotalProblems = 0;
+    //Every problem known to be solved by an ensemble control, keyed by problem params (vals are the solving controls)
+    KDIndex<ControlProviderDefinition<C>> solvedProblemIndex;
+    //Each control in the ensemble, numbered in order added (so controls equally near a problem are tried in that order)
+    LinkedHashMap<ControlProviderDefinition<C>, Integer> controlOrder;
+    //Every (problem, control) added to the above, in order (for checkpoints)
+    List<ProblemSolutionEntry> ensembleEntries;
 
-    //Ordered list of controls to attempt for current problem
-    List<ControlProviderDefinition<C>> sequencesToTryForProblem;
-    int nextControlSequenceIdx;
+    //Solved problems nearest the current problem first; controls are ranked lazily, as each next one is needed
+    Iterator<KDIndex.Entry<ControlProviderDefinition<C>>> nearestSolvedProblems;
+    Set<ControlProviderDefinition<C>> controlsTriedForProblem;
+
+    //Number of top-ranked controls launched at once for each problem (lower-ranked runs are cancelled
+    //once a higher-ranked one succeeds). If 1, controls are tested one after another.
+    int speculativeTopK = 1;
 
     public SmartControlExplorer() {
         super();
-        problemsByControlSolution = new LinkedHashMap<ControlProviderDefinition, KDTree>();
-        numTotalProblems = 0;
+        solvedProblemIndex = null;
+        controlOrder = new LinkedHashMap<ControlProviderDefinition<C>, Integer>();
+        controlsTriedForProblem = new HashSet<ControlProviderDefinition<C>>();
+        ensembleEntries = new ArrayList<ProblemSolutionEntry>();
     }
 
+    public void setSpeculativeTopK(int val) {speculativeTopK = val;}
+
     @Override
     public void loadEnsemble(String inputEnsemblePath) {
         //For now: load sol files, add corresponding controls to ensemble
@@ -44,104 +53,53 @@ public class SmartControlExplorer<C extends Control> extends Explorer<C> {
     }
 
     @Override
-    protected void prepareForProblem(ProblemDefinition problemDef) {
-        if (sequencesToTryForProblem == null)
-            sequencesToTryForProblem = new ArrayList<ControlProviderDefinition<C>>();
-
-        nextControlSequenceIdx = 0;
-        sequencesToTryForProblem.clear();
-
-//        //Generate order to test controls based on similarity to given problem
-//        double[] problemParams = problemDef.getParamsArray();
-//        final int MAX_NEAREST_TO_RETURN = 50;
-//        int nearestK = Math.min(numControlsByProblem, MAX_NEAREST_TO_RETURN); //KD tree seems to explode if this is too high (null pointer exception)
-//        if (controlsByProblem != null) {
-//            Object[] orderedControls = controlsByProblem.nearest(problemParams, nearestK);
-//            for (Object orderedControl : orderedControls)
-//                sequencesToTryForProblem.add((ControlProviderDefinition<C>)orderedControl);
-//        }
-
-        //Generate order to test controls based on their most similar problem that they already solve
-        double[] newProblemParams = problemDef.getParamsArray();
-        int numControls = problemsByControlSolution.size();
-
-        Pair<ControlProviderDefinition, Double>[] controlsWithDistanceSqrdToProblem = new Pair[numControls];
-        int controlIdx = 0;
-        for (Map.Entry<ControlProviderDefinition, KDTree> entry : problemsByControlSolution.entrySet()) {
-            double[] nearestProbParams = (double[])entry.getValue().nearest(newProblemParams);
-            double deltaSqrd = MathUtils.deltaSqrd(newProblemParams, nearestProbParams);
-            controlsWithDistanceSqrdToProblem[controlIdx] = new Pair<ControlProviderDefinition, Double>(entry.getKey(), deltaSqrd);
-            controlIdx++;
-        }
-
-        Arrays.sort(controlsWithDistanceSqrdToProblem, new SortOnDoubleComparator<ControlProviderDefinition>());
-        for (Pair<ControlProviderDefinition, Double> controlPair : controlsWithDistanceSqrdToProblem)
-            sequencesToTryForProblem.add(controlPair.first);
+    protected int getEvalBatchSize() {
+        return Math.max(super.getEvalBatchSize(), speculativeTopK);
     }
 
     @Override
-    protected ProblemDefinition getNextProblemToTest() {
-        if (unsolvedProblems.size() > 0)
-            return unsolvedProblems.iterator().next();
-        return null;
+    protected void prepareForProblem(ProblemDefinition problemDef) {
+        //Controls are tried in order of their most similar problem that they already solve (ties in order added):
+        //the first time each control turns up in a nearest-first walk over all solved problems
+        controlsTriedForProblem.clear();
+        if (solvedProblemIndex != null)
+            nearestSolvedProblems = solvedProblemIndex.nearest(problemDef.getParamsArray());
+        else
+            nearestSolvedProblems = null;
     }
 
     @Override
     protected ControlProviderDefinition<C> getNextControlSequence(ProblemDefinition p) {
-        //Return next item in list
-        ControlProviderDefinition<C> provider = null;
-        if (nextControlSequenceIdx <= sequencesToTryForProblem.size() - 1) {
-            provider = sequencesToTryForProblem.get(nextControlSequenceIdx);
-            nextControlSequenceIdx++;
+        //Return next control not yet tried, if any
+        if (nearestSolvedProblems == null)
+            return null;
+        while (nearestSolvedProblems.hasNext()) {
+            ControlProviderDefinition<C> provider = nearestSolvedProblems.next().value;
+            if (controlsTriedForProblem.add(provider))
+                return provider;
         }
-        return provider;
-    }
-
-    @Override
-    protected ProblemDefinition getNextChallengeProblem() {
-        //Return something arbitrary from the map of marked oracle problems
-        if (!oracleChallengeProblems.isEmpty())
-            return oracleChallengeProblems.iterator().next();
         return null;
     }
 
     @Override
     protected void addToControlEnsemble(ProblemDefinition problem, ControlProviderDefinition<C> control) {
         double[] problemParams = problem.getParamsArray();
-        int k = problemParams.length;
-
-//        if (controlsByProblem == null) {
-//            int k = problemParams.length;
-//            controlsByProblem = new KDTree(k);
-//            numControlsByProblem = 0;
-//        }
-//
-//        //Add the solution to ensemble, indexed by problem
-//        controlsByProblem.insert(problemParams, control);
-//        numControlsByProblem++;
-
-        //Add entry for this control if it doesn't yet exist
-        if (!problemsByControlSolution.containsKey(control))
-            problemsByControlSolution.put(control, new KDTree(k));
-
-        problemsByControlSolution.get(control).insert(problemParams, problemParams);
-        numTotalProblems++;
-    }
-
-    private class Pair<F, S> {
-        public final F first;
-        public final S second;
-
-        public Pair(F first, S second) {
-            this.first = first;
-            this.second = second;
+        if (solvedProblemIndex == null)
+            solvedProblemIndex = new KDIndex<ControlProviderDefinition<C>>(problemParams.length);
+
+        //Number this control if it's new to the ensemble
+        Integer order = controlOrder.get(control);
+        if (order == null) {
+            order = controlOrder.size();
+            controlOrder.put(control, order);
         }
+
+        solvedProblemIndex.insert(problemParams, control, order);
+        ensembleEntries.add(new ProblemSolutionEntry(problem, control));
     }
 
-    private class SortOnDoubleComparator<F> implements  Comparator<Pair<F, Double>> {
-        @Override
-        public int compare(Pair<F, Double> pair1, Pair<F, Double> pair2) {
-            return Double.compare(pair1.second, pair2.second);
-        }
-    };
+    @Override
+    protected List<ProblemSolutionEntry> getControlEnsembleEntries() {
+        return ensembleEntries;
+    }
 }
@@ -0,0 +1,112 @@
+package edu.cmu.cs.graphics.hopper.io;
+
+import edu.cmu.cs.graphics.hopper.eval.Evaluator;
+import edu.cmu.cs.graphics.hopper.math.Fingerprint;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/** Results of a batch evaluation, loaded from a file written by BatchResultsWriter (see there for the layout).
+ * Columns are held as primitive arrays indexed by row. */
+public class BatchResults {
+    private static final Evaluator.Status[] STATUSES = Evaluator.Status.values();
+
+    Fingerprint[] problemKeys;
+    Fingerprint[] controlKeys;
+
+    int numRows;
+    int[] problemIdxs = new int[0];
+    int[] controlIdxs = new int[0];
+    byte[] statuses = new byte[0];
+    float[] simTimes = new float[0];
+    int[] steps = new int[0];
+    float[] fitnesses = new float[0];
+
+    public static BatchResults load(String filePath) throws IOException {
+        BatchResults results = new BatchResults();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath), 1 << 16));
+        try {
+            if (in.readInt() != BatchResultsWriter.MAGIC)
+                throw new IOException("Not a batch results file: " + filePath);
+            int version = in.readInt();
+            if (version != BatchResultsWriter.VERSION)
+                throw new IOException("Unsupported batch results version " + version + " in " + filePath);
+
+            results.problemKeys = new Fingerprint[in.readInt()];
+            results.controlKeys = new Fingerprint[in.readInt()];
+            for (int i = 0; i < results.problemKeys.length; i++)
+                results.problemKeys[i] = new Fingerprint(in.readLong(), in.readLong());
+            for (int i = 0; i < results.controlKeys.length; i++)
+                results.controlKeys[i] = new Fingerprint(in.readLong(), in.readLong());
+
+            while (true) {
+                int n;
+                try {
+                    n = in.readInt();
+                }
+                catch (EOFException endOfGroups) {
+                    break;
+                }
+                results.readRowGroup(in, n);
+            }
+        }
+        finally {
+            in.close();
+        }
+        return results;
+    }
+
+    public int getNumProblems() {return problemKeys.length;}
+    public int getNumControls() {return controlKeys.length;}
+    public Fingerprint getProblemFingerprint(int problemIdx) {return problemKeys[problemIdx];}
+    public Fingerprint getControlFingerprint(int controlIdx) {return controlKeys[controlIdx];}
+
+    public int getNumRows() {return numRows;}
+    public int getProblemIdx(int row) {return problemIdxs[row];}
+    public int getControlIdx(int row) {return controlIdxs[row];}
+    public Evaluator.Status getStatus(int row) {return STATUSES[statuses[row]];}
+    public float getSimTime(int row) {return simTimes[row];}
+    public int getSteps(int row) {return steps[row];}
+    public float getFitness(int row) {return fitnesses[row];}
+
+    /** Returns number of rows with given status */
+    public int count(Evaluator.Status status) {
+        int count = 0;
+        for (int i = 0; i < numRows; i++) {
+            if (statuses[i] == status.ordinal())
+                count++;
+        }
+        return count;
+    }
+
+    private void readRowGroup(DataInputStream in, int n) throws IOException {
+        int start = numRows;
+        int end = start + n;
+        if (end > problemIdxs.length) {
+            int capacity = Math.max(end, problemIdxs.length * 2);
+            problemIdxs = Arrays.copyOf(problemIdxs, capacity);
+            controlIdxs = Arrays.copyOf(controlIdxs, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+            simTimes = Arrays.copyOf(simTimes, capacity);
+            steps = Arrays.copyOf(steps, capacity);
+            fitnesses = Arrays.copyOf(fitnesses, capacity);
+        }
+
+        for (int i = start; i < end; i++)
+            problemIdxs[i] = in.readInt();
+        for (int i = start; i < end; i++)
+            controlIdxs[i] = in.readInt();
+        in.readFully(statuses, start, n);
+        for (int i = start; i < end; i++)
+            simTimes[i] = in.readFloat();
+        for (int i = start; i < end; i++)
+            steps[i] = in.readInt();
+        for (int i = start; i < end; i++)
+            fitnesses[i] = in.readFloat();
+        numRows = end;
+    }
+}
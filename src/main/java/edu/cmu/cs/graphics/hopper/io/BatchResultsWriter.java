@@ -0,0 +1,115 @@
+package edu.cmu.cs.graphics.hopper.io;
+
+import edu.cmu.cs.graphics.hopper.eval.Evaluator;
+import edu.cmu.cs.graphics.hopper.math.Fingerprint;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/** Streams results of a batch evaluation (problem x control matrix) to a compact binary file, laid out by column.
+ * Rows are buffered into fixed-size row groups; each full group is written as one block per column, so readers can
+ * pull out a single column (eg: status) without parsing the rest, while memory use stays bounded for huge batches.
+ * Layout (all big-endian, as written by DataOutputStream):
+ *   header:    int MAGIC, int VERSION, int numProblems, int numControls
+ *   keys:      problem fingerprints, then control fingerprints (as 2 longs each: hi, lo)
+ *   groups:    int numRows, then int[] problemIdx, int[] controlIdx, byte[] status (Evaluator.Status ordinal),
+ *              float[] simTime, int[] steps, float[] fitness (numRows each); repeated until end of file
+ * Fitness is the evaluator's graded measure of a run (eg: how far forward the hopper got, for BipedObstacleEvaluator).
+ * Rows are in completion order, not matrix order. See BatchResults for reading these files back.
+ * Not safe for use by multiple threads (callers should synchronize on the writer). */
+public class BatchResultsWriter implements Closeable {
+    public static final int MAGIC = 0x48424552;     //"HBER"
+    public static final int VERSION = 2;            //1 keyed problems & controls by 32-bit hash codes
+    public static final int DEFAULT_ROW_GROUP_SIZE = 4096;
+
+    final DataOutputStream out;
+    final int[] problemIdxs;
+    final int[] controlIdxs;
+    final byte[] statuses;
+    final float[] simTimes;
+    final int[] steps;
+    final float[] fitnesses;
+    int numBufferedRows;
+    long numRows;
+
+    /** Creates a writer to given file for a batch over problems & controls with given fingerprints */
+    public BatchResultsWriter(String filePath, Fingerprint[] problemKeys, Fingerprint[] controlKeys) throws IOException {
+        this(filePath, problemKeys, controlKeys, DEFAULT_ROW_GROUP_SIZE);
+    }
+
+    public BatchResultsWriter(String filePath, Fingerprint[] problemKeys, Fingerprint[] controlKeys, int rowGroupSize)
+            throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath), 1 << 16));
+        problemIdxs = new int[rowGroupSize];
+        controlIdxs = new int[rowGroupSize];
+        statuses = new byte[rowGroupSize];
+        simTimes = new float[rowGroupSize];
+        steps = new int[rowGroupSize];
+        fitnesses = new float[rowGroupSize];
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(problemKeys.length);
+        out.writeInt(controlKeys.length);
+        for (Fingerprint key : problemKeys) {
+            out.writeLong(key.hi);
+            out.writeLong(key.lo);
+        }
+        for (Fingerprint key : controlKeys) {
+            out.writeLong(key.hi);
+            out.writeLong(key.lo);
+        }
+    }
+
+    /** Returns number of rows written so far (including those still buffered) */
+    public long getNumRows() {return numRows;}
+
+    public void write(int problemIdx, int controlIdx, Evaluator.Status status, float simTime, int stepCount, float fitness)
+            throws IOException {
+        int i = numBufferedRows++;
+        problemIdxs[i] = problemIdx;
+        controlIdxs[i] = controlIdx;
+        statuses[i] = (byte)status.ordinal();
+        simTimes[i] = simTime;
+        steps[i] = stepCount;
+        fitnesses[i] = fitness;
+        numRows++;
+
+        if (numBufferedRows == problemIdxs.length)
+            flushRowGroup();
+    }
+
+    /** Writes out any buffered rows as a (possibly partial) row group & flushes the file */
+    public void flush() throws IOException {
+        flushRowGroup();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+    private void flushRowGroup() throws IOException {
+        int n = numBufferedRows;
+        if (n == 0)
+            return;
+        out.writeInt(n);
+        for (int i = 0; i < n; i++)
+            out.writeInt(problemIdxs[i]);
+        for (int i = 0; i < n; i++)
+            out.writeInt(controlIdxs[i]);
+        out.write(statuses, 0, n);
+        for (int i = 0; i < n; i++)
+            out.writeFloat(simTimes[i]);
+        for (int i = 0; i < n; i++)
+            out.writeInt(steps[i]);
+        for (int i = 0; i < n; i++)
+            out.writeFloat(fitnesses[i]);
+        numBufferedRows = 0;
+    }
+}
@@ -0,0 +1,150 @@
+package edu.cmu.cs.graphics.hopper.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Loads every file with given extension(s) in a directory, parsing them on multiple threads.
+ * Files are listed with an NIO directory stream, and results come back in listing order (as File.listFiles() would
+ * give them), so loading order doesn't depend on thread timing. A file that fails to parse is logged & skipped, rather
+ * than aborting the load or adding a null entry. */
+public class DirLoader {
+    private static final Logger log = LoggerFactory.getLogger(DirLoader.class);
+
+    /** Parses a single file, adding whatever it holds to out. Called from multiple threads at once. */
+    public interface FileParser<T> {
+        void parse(Path file, List<T> out) throws Exception;
+    }
+
+    /** Told of progress every so often during a load (& once at the end). Calls are never concurrent. */
+    public interface ProgressListener {
+        void onProgress(String dirPath, int numFilesDone, int numFiles, int numFilesFailed);
+    }
+
+    int numThreads = Runtime.getRuntime().availableProcessors();
+    int progressInterval = 1000;
+
+    public void setNumThreads(int val) {numThreads = val;}
+    /** Sets number of files parsed between progress calls */
+    public void setProgressInterval(int val) {progressInterval = val;}
+
+    /** Returns contents of all files in dir whose names end in one of the given extensions (case-insensitive).
+     * Returns an empty list if dir doesn't exist. */
+    public <T> List<T> load(final String dirPath, final String[] extensions, final FileParser<T> parser,
+                            final ProgressListener listener) {
+        final List<Path> files = listFiles(dirPath, extensions);
+        final int numFiles = files.size();
+        if (numFiles == 0)
+            return new ArrayList<T>();
+
+        final List<List<T>> results = new ArrayList<List<T>>(Collections.<List<T>>nCopies(numFiles, null));
+        final AtomicInteger nextFile = new AtomicInteger();
+        final int[] progress = new int[2];     //files done, files failed (guarded by progress)
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int fileIdx;
+                while ((fileIdx = nextFile.getAndIncrement()) < numFiles) {
+                    Path file = files.get(fileIdx);
+                    List<T> fileResults = new ArrayList<T>(1);
+                    boolean failed = false;
+                    try {
+                        parser.parse(file, fileResults);
+                        results.set(fileIdx, fileResults);
+                    }
+                    catch (Exception error) {
+                        log.warn("Skipping unreadable file " + file + ": " + firstLine(error));
+                        failed = true;
+                    }
+
+                    synchronized (progress) {
+                        progress[0]++;
+                        if (failed)
+                            progress[1]++;
+                        if (listener != null && progressInterval > 0 && progress[0] % progressInterval == 0 &&
+                                progress[0] < numFiles)
+                            listener.onProgress(dirPath, progress[0], numFiles, progress[1]);
+                    }
+                }
+            }
+        };
+
+        int threadCount = Math.max(1, Math.min(numThreads, numFiles));
+        Thread[] threads = new Thread[threadCount - 1];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(worker, "DirLoader-" + t);
+            threads[t].start();
+        }
+        worker.run();
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            }
+            catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while loading files in " + dirPath, interrupted);
+            }
+        }
+
+        List<T> loaded = new ArrayList<T>(numFiles);
+        for (List<T> fileResults : results) {
+            if (fileResults != null)
+                loaded.addAll(fileResults);
+        }
+        if (progress[1] > 0)
+            log.warn(progress[1] + "/" + numFiles + " files in " + dirPath + " couldn't be read");
+        if (listener != null)
+            listener.onProgress(dirPath, numFiles, numFiles, progress[1]);
+        return loaded;
+    }
+
+    /** Returns first line of error's description (parse errors, eg: from XStream, can run to dozens of lines) */
+    private static String firstLine(Exception error) {
+        String description = error.toString();
+        int lineEnd = description.indexOf('\n');
+        return (lineEnd >= 0) ? description.substring(0, lineEnd).trim() : description;
+    }
+
+    private static List<Path> listFiles(String dirPath, final String[] extensions) {
+        List<Path> files = new ArrayList<Path>();
+        Path dir = Paths.get(dirPath);
+        if (!Files.isDirectory(dir))
+            return files;
+
+        DirectoryStream.Filter<Path> filter = new DirectoryStream.Filter<Path>() {
+            @Override
+            public boolean accept(Path entry) {
+                String name = entry.getFileName().toString().toLowerCase();
+                for (String extension : extensions) {
+                    if (name.endsWith(extension))
+                        return true;
+                }
+                return false;
+            }
+        };
+        try {
+            DirectoryStream<Path> stream = Files.newDirectoryStream(dir, filter);
+            try {
+                for (Path file : stream)
+                    files.add(file);
+            }
+            finally {
+                stream.close();
+            }
+        }
+        catch (IOException error) {
+            log.error("Error listing files in " + dirPath + ": " + error);
+        }
+        return files;
+    }
+}
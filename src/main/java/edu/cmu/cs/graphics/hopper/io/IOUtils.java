@@ -19,7 +19,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /** Just a class to centralize read/write of various things...
@@ -29,16 +34,27 @@ public class IOUtils {
 
     //Singleton
     private static IOUtils _instance;
-    public static IOUtils instance() {
+    public static synchronized IOUtils instance() {
         if (_instance == null)
             _instance = new IOUtils();
         return _instance;
     }
 
-    private XStream xstream;
+    //One (de)serializer per thread, so that directories can be loaded on many threads at once
+    private final ThreadLocal<XStream> xstreams = new ThreadLocal<XStream>() {
+        @Override
+        protected XStream initialValue() {
+            return createXStream();
+        }
+    };
+
+    private final DirLoader dirLoader = new DirLoader();
 
     private IOUtils() {
-        xstream = new XStream(new StaxDriver());
+    }
+
+    private static XStream createXStream() {
+        XStream xstream = new XStream(new StaxDriver());
         xstream.alias("CtrlProvider", ControlProvider.class);
         xstream.alias("CtrlProviderDef", ControlProviderDefinition.class);
 //        xstream.omitField(ControlProvider.class, "currControlIdx");
@@ -52,8 +68,12 @@ public class IOUtils {
         xstream.alias("key", EvalCacheKey.class);
         xstream.alias("value", EvalCacheValue.class);
         xstream.alias("status", Evaluator.Status.class);
+        return xstream;
     }
 
+    /** Sets number of threads used to load directories of entries */
+    public void setNumLoadThreads(int val) {dirLoader.setNumThreads(val);}
+
     public void ensurePathExists(String path) {
         File filePath = new File(path);
         if (!filePath.exists())     {
@@ -67,108 +87,147 @@ public class IOUtils {
         }
     }
 
-    public void saveProblemSolutionEntry(ProblemSolutionEntry entry, String path, String filename) {
-        String entryXML = xstream.toXML(entry);
-        saveToFile(entryXML, path, filename);
+    /** Saves entry as a (binary) .sol file; see SolutionBundle */
+    public void saveProblemSolutionEntry(ProblemSolutionEntry entry, String path, String filename) throws IOException {
+        ensurePathExists(path);
+        File tempFile = tempFileFor(path, filename);
+        SolutionBundle.write(Collections.singletonList(entry), tempFile.getPath());
+        replaceWith(tempFile, path, filename);
     }
 
+    /** Saves entries to a single (binary) .solb bundle file; see SolutionBundle */
+    public void saveSolutionBundle(List<ProblemSolutionEntry> entries, String path, String filename) throws IOException {
+        ensurePathExists(path);
+        File tempFile = tempFileFor(path, filename);
+        SolutionBundle.write(entries, tempFile.getPath());
+        replaceWith(tempFile, path, filename);
+    }
+
+    /** Loads every entry in given dir: each .sol file (binary or XML) & all entries of each .solb bundle file */
     public List<ProblemSolutionEntry> loadAllProblemSolutionEntriesInDir(String path) {
-        File[] files = new File(path).listFiles(new FilenameFilter() {
-            public boolean accept(File dir, String name) {
-                return name.toLowerCase().endsWith(".sol");
-            }
-        });
+        return loadAllProblemSolutionEntriesInDir(path, null);
+    }
+
+    /** As above, loading files in parallel & reporting progress to listener (if non-null); unreadable files are skipped */
+    public List<ProblemSolutionEntry> loadAllProblemSolutionEntriesInDir(String path, DirLoader.ProgressListener listener) {
+        return dirLoader.load(path, new String[]{".sol", SolutionBundle.EXTENSION},
+                new DirLoader.FileParser<ProblemSolutionEntry>() {
+                    @Override
+                    public void parse(Path file, List<ProblemSolutionEntry> out) throws Exception {
+                        if (file.getFileName().toString().toLowerCase().endsWith(SolutionBundle.EXTENSION))
+                            out.addAll(SolutionBundle.read(file.toString()));
+                        else
+                            out.add(readProblemSolutionEntry(file.toFile()));
+                    }
+                }, listener);
+    }
 
-        List<ProblemSolutionEntry> entries = new ArrayList<ProblemSolutionEntry>();
-        if (files != null) {
-            for (File file : files)
-                entries.add(this.loadProblemSolutionEntry(path, file.getName()));
+    public List<ProblemSolutionEntry> loadSolutionBundle(String path, String filename) {
+        try {
+            return SolutionBundle.read(path + filename);
+        }
+        catch (IOException error) {
+            log.error("Problem occurred reading solution bundle " + filename);
+            logStackTraceError(error);
+            return Collections.emptyList();
         }
-        return entries;
     }
 
+    /** Loads a .sol file, in either the binary or (older) XML format; returns null if it can't be read */
     public ProblemSolutionEntry loadProblemSolutionEntry(String path, String filename) {
-        ProblemSolutionEntry entry = null;
-        FileReader fileReader = null;
         try {
-            fileReader = new FileReader(path + filename);
-            entry = (ProblemSolutionEntry)xstream.fromXML(fileReader);
+            return readProblemSolutionEntry(new File(path + filename));
         }
         catch (Exception error) {
             log.error("Problem occurred reading problem solution entry for file " + filename);
             logStackTraceError(error);
+            return null;
         }
-        finally {
-            try {fileReader.close();}
-            catch (Exception error) {
-                log.error("Problem occurred while closing file " + filename);
-                logStackTraceError(error);
-            }
-        }
+    }
 
-        return entry;
+    private ProblemSolutionEntry readProblemSolutionEntry(File file) throws Exception {
+        if (SolutionBundle.isBinary(file)) {
+            List<ProblemSolutionEntry> entries = SolutionBundle.read(file.getPath());
+            if (entries.size() != 1)
+                throw new IOException("Expected a single entry in " + file + ", found " + entries.size());
+            return entries.get(0);
+        }
+        return (ProblemSolutionEntry)readXML(file);
     }
 
-    public void saveEvalCacheEntry(EvalCacheEntry entry, String path, String filename) {
-        String entryXML = xstream.toXML(entry);
+    public void saveEvalCacheEntry(EvalCacheEntry entry, String path, String filename) throws IOException {
+        String entryXML = xstreams.get().toXML(entry);
         saveToFile(entryXML, path, filename);
     }
 
     public List<EvalCacheEntry> loadAllEvalCacheEntriesInDir(String path) {
-        File[] files = new File(path).listFiles(new FilenameFilter() {
-            public boolean accept(File dir, String name) {
-                return name.toLowerCase().endsWith(".ech");
-            }
-        });
+        return loadAllEvalCacheEntriesInDir(path, null);
+    }
 
-        List<EvalCacheEntry> entries = new ArrayList<EvalCacheEntry>();
-        if (files != null) {
-            for (File file : files)
-                entries.add(this.loadEvalCacheEntry(path, file.getName()));
-        }
-        return entries;
+    /** As above, loading files in parallel & reporting progress to listener (if non-null); unreadable files are skipped */
+    public List<EvalCacheEntry> loadAllEvalCacheEntriesInDir(String path, DirLoader.ProgressListener listener) {
+        return dirLoader.load(path, new String[]{".ech"},
+                new DirLoader.FileParser<EvalCacheEntry>() {
+                    @Override
+                    public void parse(Path file, List<EvalCacheEntry> out) throws Exception {
+                        out.add((EvalCacheEntry)readXML(file.toFile()));
+                    }
+                }, listener);
     }
 
+    /** Loads an .ech file; returns null if it can't be read */
     public EvalCacheEntry loadEvalCacheEntry(String path, String filename) {
-        EvalCacheEntry entry = null;
-        FileReader fileReader = null;
         try {
-            fileReader = new FileReader(path + filename);
-            entry = (EvalCacheEntry)xstream.fromXML(fileReader);
+            return (EvalCacheEntry)readXML(new File(path + filename));
         }
         catch (Exception error) {
             log.error("Problem occurred reading eval cache entry for file " + filename);
             logStackTraceError(error);
+            return null;
+        }
+    }
+
+    private Object readXML(File file) throws Exception {
+        Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "utf-8"));
+        try {
+            Object obj = xstreams.get().fromXML(reader);
+            if (obj == null)
+                throw new IOException("No entry found in " + file);
+            return obj;
         }
         finally {
-            try {fileReader.close();}
-            catch (Exception error) {
-                log.error("Problem occurred while closing file " + filename);
-                logStackTraceError(error);
-            }
+            reader.close();
         }
-
-        return entry;
     }
 
-    private void saveToFile(String data, String path, String filename) {
+    private void saveToFile(String data, String path, String filename) throws IOException {
         ensurePathExists(path);
 
         //Write contents
-        Writer writer = null;
+        File tempFile = tempFileFor(path, filename);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), "utf-8"));
         try {
-            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path + filename), "utf-8"));
             writer.write(data);
-        } catch (IOException error) {
-            log.error("Error writing file: " + filename);
-            logStackTraceError(error);
-        } finally {
-            try {
-                writer.close();
-            } catch (Exception error) {
-                log.warn("Exception while closing file: " + filename);
-                logStackTraceError(error);
-            }
+        }
+        finally {
+            writer.close();
+        }
+        replaceWith(tempFile, path, filename);
+    }
+
+    //Files are written under a temporary name & then renamed into place, so that a crash mid-write never leaves a
+    //truncated entry behind (temp files don't end in an entry extension, so directory loads ignore any left over)
+    private static File tempFileFor(String path, String filename) {
+        return new File(path + filename + ".tmp");
+    }
+
+    private static void replaceWith(File tempFile, String path, String filename) throws IOException {
+        Path target = new File(path + filename).toPath();
+        try {
+            Files.move(tempFile.toPath(), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException unsupported) {
+            Files.move(tempFile.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
@@ -0,0 +1,185 @@
+package edu.cmu.cs.graphics.hopper.io;
+
+import edu.cmu.cs.graphics.hopper.control.BipedHopperControl;
+import edu.cmu.cs.graphics.hopper.control.Control;
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.control.WormControl;
+import edu.cmu.cs.graphics.hopper.explore.ProblemSolutionEntry;
+import edu.cmu.cs.graphics.hopper.problems.ObstacleProblemDefinition;
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+import edu.cmu.cs.graphics.hopper.problems.TerrainProblemDefinition;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Compact binary file of problem solution entries (a single entry, as a binary .sol file, or a packed "bundle" of
+ * many, as a .solb file), replacing one verbose XML file per entry. Files are memory-mapped & read in one sequential scan.
+ * Layout (all big-endian):
+ *   header:    int MAGIC, int VERSION, int numEntries
+ *   entries:   problem, then control sequence, numEntries times
+ *   problem:   byte type (PROBLEM_*), int numParams, float[numParams] (as from getParamsArray())
+ *   sequence:  int numControls, then per control: byte type (CONTROL_*), int numVals, float[numVals] (toNumericArray())
+ * The format is versioned: readers reject versions they don't know. */
+public class SolutionBundle {
+    public static final int MAGIC = 0x48534F4C;     //"HSOL"
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".solb";
+
+    static final byte PROBLEM_TERRAIN = 1;
+    static final byte PROBLEM_OBSTACLE = 2;
+    static final byte CONTROL_BIPED_HOPPER = 1;
+    static final byte CONTROL_WORM = 2;
+
+    /** Writes given entries to a file */
+    public static void write(List<ProblemSolutionEntry> entries, String filePath) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (ProblemSolutionEntry entry : entries) {
+                writeProblem(out, entry.getProblem());
+                writeControls(out, entry.getSolution());
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /** Reads all entries of a file */
+    public static List<ProblemSolutionEntry> read(String filePath) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filePath, "r");
+        try {
+            ByteBuffer in = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            if (in.remaining() < 12 || in.getInt() != MAGIC)
+                throw new IOException("Not a solution bundle: " + filePath);
+            int version = in.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported solution bundle version " + version + " in " + filePath);
+
+            int numEntries = in.getInt();
+            List<ProblemSolutionEntry> entries = new ArrayList<ProblemSolutionEntry>(numEntries);
+            for (int i = 0; i < numEntries; i++) {
+                ProblemDefinition problem = readProblem(in);
+                ControlProviderDefinition<Control> solution = readControls(in);
+                entries.add(new ProblemSolutionEntry(problem, solution));
+            }
+            return entries;
+        }
+        catch (RuntimeException error) {
+            //Buffer underflows, unknown types, etc. all just mean a corrupt file
+            throw new IOException("Corrupt solution bundle: " + filePath, error);
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    /** Returns true if file starts like a binary solution file (rather than, eg: XML) */
+    public static boolean isBinary(File file) throws IOException {
+        if (file.length() < 4)
+            return false;
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            return in.readInt() == MAGIC;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /** Writes a single problem in bundle layout (also used by other binary formats holding problems, eg: checkpoints) */
+    public static void writeProblem(DataOutputStream out, ProblemDefinition problem) throws IOException {
+        if (problem instanceof TerrainProblemDefinition)
+            out.writeByte(PROBLEM_TERRAIN);
+        else if (problem instanceof ObstacleProblemDefinition)
+            out.writeByte(PROBLEM_OBSTACLE);
+        else
+            throw new IOException("Unsupported problem type for solution bundle: " + problem.getClass().getName());
+
+        double[] params = problem.getParamsArray();
+        out.writeInt(params.length);
+        for (double param : params)
+            out.writeFloat((float)param);
+    }
+
+    public static ProblemDefinition readProblem(ByteBuffer in) throws IOException {
+        byte type = in.get();
+        float[] params = new float[in.getInt()];
+        for (int i = 0; i < params.length; i++)
+            params[i] = in.getFloat();
+
+        switch (type) {
+            case PROBLEM_TERRAIN: {
+                //Params are heights, then the (one fewer) x deltas between them
+                int numHeights = (params.length + 1) / 2;
+                List<Float> heights = new ArrayList<Float>(numHeights);
+                List<Float> peakXDeltas = new ArrayList<Float>(numHeights - 1);
+                for (int i = 0; i < numHeights; i++)
+                    heights.add(params[i]);
+                for (int i = numHeights; i < params.length; i++)
+                    peakXDeltas.add(params[i]);
+                return new TerrainProblemDefinition(heights, peakXDeltas);
+            }
+            case PROBLEM_OBSTACLE:
+                return new ObstacleProblemDefinition(params[0], params[1]);
+            default:
+                throw new IOException("Unknown problem type in solution bundle: " + type);
+        }
+    }
+
+    /** Writes a single control sequence in bundle layout */
+    public static void writeControls(DataOutputStream out, ControlProviderDefinition<?> controlDef) throws IOException {
+        out.writeInt(controlDef.controls.size());
+        for (Control control : controlDef.controls) {
+            if (control instanceof BipedHopperControl)
+                out.writeByte(CONTROL_BIPED_HOPPER);
+            else if (control instanceof WormControl)
+                out.writeByte(CONTROL_WORM);
+            else
+                throw new IOException("Unsupported control type for solution bundle: " + control.getClass().getName());
+
+            float[] vals = control.toNumericArray();
+            out.writeInt(vals.length);
+            for (float val : vals)
+                out.writeFloat(val);
+        }
+    }
+
+    public static ControlProviderDefinition<Control> readControls(ByteBuffer in) throws IOException {
+        int numControls = in.getInt();
+        List<Control> controls = new ArrayList<Control>(numControls);
+        for (int i = 0; i < numControls; i++) {
+            byte type = in.get();
+            float[] vals = new float[in.getInt()];
+            for (int j = 0; j < vals.length; j++)
+                vals[j] = in.getFloat();
+
+            Control control;
+            switch (type) {
+                case CONTROL_BIPED_HOPPER:
+                    control = new BipedHopperControl();
+                    break;
+                case CONTROL_WORM:
+                    control = new WormControl(vals.length);
+                    break;
+                default:
+                    throw new IOException("Unknown control type in solution bundle: " + type);
+            }
+            control.fillFromNumericArray(vals);
+            controls.add(control);
+        }
+        return new ControlProviderDefinition<Control>(controls);
+    }
+}
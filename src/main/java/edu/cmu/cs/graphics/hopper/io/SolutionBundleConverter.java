@@ -0,0 +1,71 @@
+package edu.cmu.cs.graphics.hopper.io;
+
+import edu.cmu.cs.graphics.hopper.explore.ProblemSolutionEntry;
+import org.apache.commons.cli.*;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/** One-shot program that packs directories of .sol files (XML or binary) into a single binary solution bundle (see
+ * SolutionBundle), so that ensembles & oracle solution sets load in one sequential read rather than parsing every file.
+ * Duplicate entries are dropped. A bundle placed in an ensemble/solutions dir is loaded along with any .sol files there.
+ * Usage: SolutionBundleConverter -out <bundle file> -solDir <dir> [-solDir <dir> ...] */
+public class SolutionBundleConverter {
+
+    private static final Logger log = LoggerFactory.getLogger(SolutionBundleConverter.class);
+
+    public static void main(String[] args) {
+        DOMConfigurator.configure("config/log4j.xml");
+
+        Options options = new Options();
+        options.addOption("out", true, "Solution bundle file to write (conventionally ending in " + SolutionBundle.EXTENSION + ")");
+        options.addOption("solDir", true, "Directory of .sol (or " + SolutionBundle.EXTENSION + ") files to pack (may be repeated)");
+
+        CommandLineParser parser = new GnuParser();
+        CommandLine cmd = null;
+        try {
+            cmd = parser.parse(options, args);
+        }
+        catch (ParseException parseError) {
+            log.error("Error occurred while parsing command line inputs");
+            parseError.printStackTrace();
+            return;
+        }
+
+        String outPath = cmd.getOptionValue("out");
+        String[] solDirs = cmd.getOptionValues("solDir");
+        if (outPath == null || solDirs == null) {
+            log.error("Both -out and -solDir must be given! Exiting... ");
+            return;
+        }
+
+        long t0 = System.currentTimeMillis();
+        Set<ProblemSolutionEntry> entries = new LinkedHashSet<ProblemSolutionEntry>();
+        for (String solDir : solDirs) {
+            String dirPath = solDir.endsWith(File.separator) || solDir.endsWith("/") ? solDir : solDir + File.separator;
+            for (ProblemSolutionEntry entry : IOUtils.instance().loadAllProblemSolutionEntriesInDir(dirPath)) {
+                if (entry != null)
+                    entries.add(entry);
+            }
+        }
+
+        try {
+            File outFile = new File(outPath);
+            if (outFile.getParentFile() != null)
+                IOUtils.instance().ensurePathExists(outFile.getParentFile().getPath());
+            SolutionBundle.write(new ArrayList<ProblemSolutionEntry>(entries), outPath);
+            log.info("Packed " + entries.size() + " solution entries into " + outPath + " (" + outFile.length() +
+                     " bytes) in " + (System.currentTimeMillis() - t0) + " ms");
+        }
+        catch (IOException error) {
+            log.error("Error writing solution bundle to " + outPath);
+            error.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package edu.cmu.cs.graphics.hopper.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/** Performs file writes on a background thread, in submission order, so that callers don't wait on disk latency.
+ * The queue is bounded: once it's full, submit() blocks until the writer catches up (back-pressure), & the time spent
+ * blocked is tallied. Writes are pulled off the queue in batches of up to maxBatchSize.
+ * Queued writes are drained by flush() & close(); while the queue is open, a JVM shutdown hook also drains it, so
+ * writes submitted before an orderly exit (eg: Ctrl-C) aren't lost. */
+public class WriteBehindQueue {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    /** A single deferred write. Runs on the writer thread, so must only touch data that's no longer being modified. */
+    public static abstract class Write {
+        public abstract void perform() throws Exception;
+    }
+
+    //Marks end of the queue for the writer thread
+    private static final Write END = new Write() {
+        @Override
+        public void perform() {}
+    };
+
+    final BlockingQueue<Write> queue;
+    final int maxBatchSize;
+    Thread writerThread;
+    Thread shutdownHook;
+
+    //Submission stats (guarded by this)
+    long numSubmitted;
+    long numBlockedSubmits;
+    long blockedNanos;
+    int maxQueueDepth;
+
+    //Completion stats, written by writer thread (guarded by this)
+    long numCompleted;
+    long numFailed;
+    long numBatches;
+
+    public WriteBehindQueue(int capacity, int maxBatchSize) {
+        this.queue = new ArrayBlockingQueue<Write>(capacity);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /** Number of writes waiting to be performed */
+    public int getQueueDepth() {return queue.size();}
+    public synchronized int getMaxQueueDepth() {return maxQueueDepth;}
+    public synchronized long getNumSubmitted() {return numSubmitted;}
+    public synchronized long getNumCompleted() {return numCompleted;}
+    public synchronized long getNumFailed() {return numFailed;}
+    public synchronized long getNumBatches() {return numBatches;}
+    /** Number of submits that had to wait for room in the queue */
+    public synchronized long getNumBlockedSubmits() {return numBlockedSubmits;}
+    /** Total time submitters spent waiting for room in the queue */
+    public synchronized long getBlockedMillis() {return blockedNanos / 1000000;}
+
+    public synchronized void start() {
+        if (writerThread != null)
+            return;
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "WriteBehind");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        shutdownHook = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainForShutdown();
+            }
+        }, "WriteBehind-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /** Queues write to be performed on the writer thread, blocking while the queue is full.
+     * If the queue isn't running (never started, or already closed), write is performed right away on this thread. */
+    public void submit(Write write) {
+        synchronized (this) {
+            numSubmitted++;
+            if (writerThread == null) {
+                performNow(write);
+                return;
+            }
+        }
+
+        if (!queue.offer(write)) {
+            long t0 = System.nanoTime();
+            putUninterruptibly(write);
+            synchronized (this) {
+                numBlockedSubmits++;
+                blockedNanos += System.nanoTime() - t0;
+            }
+        }
+        int depth = queue.size();
+        synchronized (this) {
+            if (depth > maxQueueDepth)
+                maxQueueDepth = depth;
+            //If close() finished draining the queue while this was being queued, nothing else will perform it
+            if (writerThread == null && queue.remove(write))
+                performNow(write);
+        }
+    }
+
+    /** Blocks until every write submitted so far has been performed */
+    public void flush() {
+        boolean interrupted = false;
+        synchronized (this) {
+            long target = numSubmitted;
+            while (numCompleted < target && writerThread != null) {
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /** Performs all queued writes & stops the writer thread; later submits are performed synchronously */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            thread = writerThread;
+            if (thread == null)
+                return;
+            if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                }
+                catch (IllegalStateException alreadyShuttingDown) {
+                    //Hook is running (or about to); it'll find the queue closed
+                }
+            }
+            shutdownHook = null;
+        }
+
+        putUninterruptibly(END);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        synchronized (this) {
+            writerThread = null;
+            //Anything a racing submit() queued behind END is performed here rather than dropped (& any it queues after
+            //this, it performs itself)
+            List<Write> leftovers = new ArrayList<Write>();
+            queue.drainTo(leftovers);
+            for (Write write : leftovers) {
+                if (write != END)
+                    performNow(write);
+            }
+            notifyAll();
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "writes=" + numCompleted + "/" + numSubmitted + ", failed=" + numFailed + ", batches=" + numBatches +
+               ", maxQueueDepth=" + maxQueueDepth + ", blockedSubmits=" + numBlockedSubmits +
+               ", blockedMs=" + (blockedNanos / 1000000);
+    }
+
+    private void writeLoop() {
+        List<Write> batch = new ArrayList<Write>(maxBatchSize);
+        boolean ended = false;
+        while (!ended) {
+            batch.clear();
+            try {
+                batch.add(queue.take());
+            }
+            catch (InterruptedException e) {
+                continue;   //only close() stops the writer, so that nothing queued is dropped
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+
+            int batchFailed = 0;
+            int batchCompleted = 0;
+            for (Write write : batch) {
+                if (write == END) {
+                    ended = true;
+                    continue;
+                }
+                try {
+                    write.perform();
+                }
+                catch (Exception error) {
+                    log.error("Error performing queued write: " + error);
+                    batchFailed++;
+                }
+                batchCompleted++;
+            }
+
+            synchronized (this) {
+                numCompleted += batchCompleted;
+                numFailed += batchFailed;
+                if (batchCompleted > 0)
+                    numBatches++;
+                notifyAll();
+            }
+        }
+    }
+
+    private void drainForShutdown() {
+        synchronized (this) {
+            if (writerThread == null)
+                return;
+            log.info("Draining " + queue.size() + " queued write(s) before exit");
+        }
+        close();
+    }
+
+    //Performs write on this thread, counting it as completed (call with this locked)
+    private void performNow(Write write) {
+        try {
+            write.perform();
+        }
+        catch (Exception error) {
+            log.error("Error performing write: " + error);
+            numFailed++;
+        }
+        numCompleted++;
+    }
+
+    private void putUninterruptibly(Write write) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(write);
+                break;
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
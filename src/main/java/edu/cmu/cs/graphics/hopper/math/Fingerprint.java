@@ -0,0 +1,138 @@
+package edu.cmu.cs.graphics.hopper.math;
+
+/** A stable 128-bit content fingerprint (eg: of a problem or control definition's numeric parameters).
+ * Unlike hashCode(), fingerprints are the same across runs & JVMs, so they can identify files & persistent records;
+ * at 128 bits, distinct contents collide with negligible probability, so equal fingerprints may be taken to mean equal
+ * contents. The all-zero fingerprint is never produced (reserved to mark empty slots in hash indices). */
+public final class Fingerprint {
+    public final long hi;
+    public final long lo;
+
+    public Fingerprint(long hi, long lo) {
+        this.hi = hi;
+        this.lo = lo;
+    }
+
+    /** Returns fingerprint of the ordered pair (a, b) */
+    public static Fingerprint combine(Fingerprint a, Fingerprint b) {
+        return new Hasher().add(a.hi).add(a.lo).add(b.hi).add(b.lo).build();
+    }
+
+    /** Parses the 32 hex digit form returned by toString() */
+    public static Fingerprint parse(String str) {
+        if (str.length() != 32)
+            throw new NumberFormatException("Not a fingerprint: " + str);
+        return new Fingerprint(parseHex(str.substring(0, 16)), parseHex(str.substring(16)));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Fingerprint that = (Fingerprint) o;
+
+        return hi == that.hi && lo == that.lo;
+    }
+
+    @Override
+    public int hashCode() {
+        //Bits are already well mixed, so any 32 of them will do
+        return (int)lo;
+    }
+
+    /** Returns fingerprint as 32 hex digits (suitable for use as a filename) */
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", hi, lo);
+    }
+
+    private static long parseHex(String str) {
+        return (Long.parseLong(str.substring(0, 8), 16) << 32) | Long.parseLong(str.substring(8), 16);
+    }
+
+    /** Accumulates a sequence of values into a fingerprint (MurmurHash3 x64_128, taking values as 64-bit words) */
+    public static final class Hasher {
+        private static final long C1 = 0x87C37B91114253D5L;
+        private static final long C2 = 0x4CF5AD432745937FL;
+
+        long h1 = 0x2545F4914F6CDD1DL;
+        long h2 = 0x9E3779B97F4A7C15L;
+        long pending;
+        boolean hasPending = false;
+        long length = 0;
+
+        public Hasher add(long val) {
+            if (hasPending) {
+                mixBlock(pending, val);
+                hasPending = false;
+            }
+            else {
+                pending = val;
+                hasPending = true;
+            }
+            length += 8;
+            return this;
+        }
+
+        public Hasher add(int val) {return add((long)val);}
+        public Hasher add(float val) {return add((long)Float.floatToIntBits(val));}
+        public Hasher add(double val) {return add(Double.doubleToLongBits(val));}
+
+        public Hasher add(String val) {
+            add(val.length());
+            for (int i = 0; i < val.length(); i++)
+                add((long)val.charAt(i));
+            return this;
+        }
+
+        public Fingerprint build() {
+            long a = h1;
+            long b = h2;
+            if (hasPending) {
+                long k1 = pending * C1;
+                k1 = Long.rotateLeft(k1, 31);
+                k1 *= C2;
+                a ^= k1;
+            }
+            a ^= length;
+            b ^= length;
+            a += b;
+            b += a;
+            a = fmix(a);
+            b = fmix(b);
+            a += b;
+            b += a;
+            if (a == 0 && b == 0)
+                b = 1;
+            return new Fingerprint(a, b);
+        }
+
+        private void mixBlock(long k1, long k2) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52DCE729;
+
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495AB5;
+        }
+
+        private static long fmix(long h) {
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
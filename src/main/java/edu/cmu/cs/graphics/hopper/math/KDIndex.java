@@ -0,0 +1,535 @@
+package edu.cmu.cs.graphics.hopper.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/** KD tree of points (keys of a fixed dimension) with attached values, kept in flat primitive arrays (node i's key is
+ * keys[i*numDims .. (i+1)*numDims - 1], its children are lefts[i] & rights[i], etc.).
+ * Can be built in bulk (balanced, by median splits) & added to one point at a time afterwards (without rebalancing).
+ * Searches: nearest() iterates over entries in order of increasing distance from a query point, & only does as much
+ * of the search as the entries actually pulled need (best-first traversal over nodes bounded by the boxes of their
+ * subtrees); nearest(k), withinRadius() & find() (exact key match) are built on the same boxes.
+ * Entries at equal distances come out in order of their tie-break order (order added, unless given).
+ * Duplicate keys are allowed. Removed entries are only marked as such, so boxes may stay larger than they need be.
+ * Not safe for use by multiple threads. */
+public class KDIndex<V> {
+    static final int NONE = -1;
+    //Max number of points looked at to choose each split dim in a bulk build
+    static final int SPLIT_SAMPLE_SIZE = 64;
+
+    final int numDims;
+    int size;               //live entries
+    int numNodes;           //incl. removed entries
+    int root = NONE;
+    long nextOrder;
+
+    double[] keys;
+    Object[] values;
+    long[] orders;
+    boolean[] removed;
+    int[] splitDims;
+    int[] lefts;
+    int[] rights;
+    //Bounds of all keys in each node's subtree
+    double[] boxMins;
+    double[] boxMaxs;
+
+    public KDIndex(int numDims) {
+        this(numDims, 16);
+    }
+
+    public KDIndex(int numDims, int initialCapacity) {
+        if (numDims <= 0)
+            throw new IllegalArgumentException("KD index needs at least 1 dim, got " + numDims);
+        this.numDims = numDims;
+        allocate(Math.max(initialCapacity, 1));
+    }
+
+    /** Returns a balanced index of given keys & values (tie-break order being their order in the lists) */
+    public static <V> KDIndex<V> build(int numDims, List<double[]> keys, List<V> values) {
+        if (keys.size() != values.size())
+            throw new IllegalArgumentException("Got " + keys.size() + " keys but " + values.size() + " values");
+        KDIndex<V> index = new KDIndex<V>(numDims, keys.size());
+        for (int i = 0; i < keys.size(); i++)
+            index.addNode(keys.get(i), values.get(i), i);
+        index.nextOrder = keys.size();
+
+        int[] nodes = new int[keys.size()];
+        for (int i = 0; i < nodes.length; i++)
+            nodes[i] = i;
+        index.root = index.buildSubtree(nodes, 0, nodes.length);
+        return index;
+    }
+
+    public int size() {return size;}
+    public boolean isEmpty() {return size == 0;}
+    public int getNumDims() {return numDims;}
+
+    public void insert(double[] key, V value) {
+        insert(key, value, nextOrder);
+    }
+
+    /** Inserts an entry which, among entries at the same distance from a query, comes out in order of given value */
+    public void insert(double[] key, V value, long order) {
+        checkKey(key);
+        nextOrder = Math.max(nextOrder, order + 1);
+        int newNode = addNode(key, value, order);
+        if (root == NONE) {
+            root = newNode;
+            return;
+        }
+
+        int node = root;
+        while (true) {
+            expandBox(node, key);
+            boolean goLeft = key[splitDims[node]] < keys[node*numDims + splitDims[node]];
+            int child = goLeft ? lefts[node] : rights[node];
+            if (child == NONE) {
+                //Split new node where its parent's subtree is most spread out
+                splitDims[newNode] = widestBoxDim(node);
+                if (goLeft)
+                    lefts[node] = newNode;
+                else
+                    rights[node] = newNode;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /** Removes an entry with given key & value, returning whether there was one */
+    public boolean remove(double[] key, V value) {
+        checkKey(key);
+        int node = findNode(root, key, value, false);
+        if (node == NONE)
+            return false;
+        removed[node] = true;
+        values[node] = null;
+        size--;
+        return true;
+    }
+
+    /** Returns value of the first-ordered entry with exactly the given key, or null if none */
+    public V find(double[] key) {
+        checkKey(key);
+        int node = findNode(root, key, null, true);
+        return (node != NONE) ? value(node) : null;
+    }
+
+    /** Returns iterator over all entries, nearest to query first */
+    public Iterator<Entry<V>> nearest(double[] query) {
+        checkKey(query);
+        return new NearestIterator<V>(this, query);
+    }
+
+    /** Returns (up to) k entries nearest to query, nearest first */
+    public List<Entry<V>> nearest(double[] query, int k) {
+        List<Entry<V>> entries = new ArrayList<Entry<V>>(Math.min(Math.max(k, 0), size));
+        Iterator<Entry<V>> nearest = nearest(query);
+        while (entries.size() < k && nearest.hasNext())
+            entries.add(nearest.next());
+        return entries;
+    }
+
+    /** Returns all entries within given distance of query, nearest first */
+    public List<Entry<V>> withinRadius(double[] query, double radius) {
+        checkKey(query);
+        List<Entry<V>> entries = new ArrayList<Entry<V>>();
+        double radiusSqrd = radius*radius;
+
+        //Depth-first, skipping subtrees whose boxes are out of range (cheaper than a nearest-first walk when many
+        //entries are in range), then sorted
+        int[] stack = new int[64];
+        int stackSize = 0;
+        if (root != NONE)
+            stack[stackSize++] = root;
+        while (stackSize > 0) {
+            int node = stack[--stackSize];
+            if (boxDistSqrd(node, query) > radiusSqrd)
+                continue;
+            if (!removed[node]) {
+                double distSqrd = distSqrd(node, query);
+                if (distSqrd <= radiusSqrd)
+                    entries.add(new Entry<V>(this, node, distSqrd));
+            }
+            if (stackSize + 2 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length*2);
+            if (lefts[node] != NONE)
+                stack[stackSize++] = lefts[node];
+            if (rights[node] != NONE)
+                stack[stackSize++] = rights[node];
+        }
+        Collections.sort(entries, NEAREST_FIRST);
+        return entries;
+    }
+
+    /** An entry found by a search */
+    public static final class Entry<V> {
+        public final V value;
+        public final double distSqrd;
+        final KDIndex<V> index;
+        final int node;
+
+        Entry(KDIndex<V> index, int node, double distSqrd) {
+            this.index = index;
+            this.node = node;
+            this.value = index.value(node);
+            this.distSqrd = distSqrd;
+        }
+
+        /** Returns (a copy of) entry's key */
+        public double[] getKey() {
+            return index.key(node);
+        }
+    }
+
+    static final Comparator<Entry<?>> NEAREST_FIRST = new Comparator<Entry<?>>() {
+        @Override
+        public int compare(Entry<?> a, Entry<?> b) {
+            int byDist = Double.compare(a.distSqrd, b.distSqrd);
+            if (byDist != 0)
+                return byDist;
+            long orderA = a.index.orders[a.node];
+            long orderB = b.index.orders[b.node];
+            return (orderA < orderB) ? -1 : ((orderA == orderB) ? 0 : 1);
+        }
+    };
+
+    private void checkKey(double[] key) {
+        if (key.length != numDims)
+            throw new IllegalArgumentException("Expected key of " + numDims + " dims, got " + key.length);
+    }
+
+    @SuppressWarnings("unchecked")
+    V value(int node) {
+        return (V)values[node];
+    }
+
+    double[] key(int node) {
+        return Arrays.copyOfRange(keys, node*numDims, (node + 1)*numDims);
+    }
+
+    private void allocate(int capacity) {
+        keys = new double[capacity*numDims];
+        values = new Object[capacity];
+        orders = new long[capacity];
+        removed = new boolean[capacity];
+        splitDims = new int[capacity];
+        lefts = new int[capacity];
+        rights = new int[capacity];
+        boxMins = new double[capacity*numDims];
+        boxMaxs = new double[capacity*numDims];
+    }
+
+    private int addNode(double[] key, Object value, long order) {
+        if (numNodes == values.length) {
+            int capacity = values.length*2;
+            keys = Arrays.copyOf(keys, capacity*numDims);
+            values = Arrays.copyOf(values, capacity);
+            orders = Arrays.copyOf(orders, capacity);
+            removed = Arrays.copyOf(removed, capacity);
+            splitDims = Arrays.copyOf(splitDims, capacity);
+            lefts = Arrays.copyOf(lefts, capacity);
+            rights = Arrays.copyOf(rights, capacity);
+            boxMins = Arrays.copyOf(boxMins, capacity*numDims);
+            boxMaxs = Arrays.copyOf(boxMaxs, capacity*numDims);
+        }
+
+        int node = numNodes++;
+        System.arraycopy(key, 0, keys, node*numDims, numDims);
+        System.arraycopy(key, 0, boxMins, node*numDims, numDims);
+        System.arraycopy(key, 0, boxMaxs, node*numDims, numDims);
+        values[node] = value;
+        orders[node] = order;
+        lefts[node] = NONE;
+        rights[node] = NONE;
+        size++;
+        return node;
+    }
+
+    //Builds subtree of nodes[from, to), splitting at the median of the dim in which they're most spread out
+    //(judged from a sample of them, for big subtrees). Boxes are filled in bottom-up, from the children's boxes.
+    private int buildSubtree(int[] nodes, int from, int to) {
+        if (from >= to)
+            return NONE;
+
+        int splitDim = 0;
+        double widest = -1.0;
+        int step = Math.max((to - from)/SPLIT_SAMPLE_SIZE, 1);
+        for (int d = 0; d < numDims; d++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i += step) {
+                double val = keys[nodes[i]*numDims + d];
+                min = Math.min(min, val);
+                max = Math.max(max, val);
+            }
+            if (max - min > widest) {
+                widest = max - min;
+                splitDim = d;
+            }
+        }
+
+        int mid = (from + to) >>> 1;
+        select(nodes, from, to - 1, mid, splitDim);
+        int node = nodes[mid];
+        splitDims[node] = splitDim;
+        lefts[node] = buildSubtree(nodes, from, mid);
+        rights[node] = buildSubtree(nodes, mid + 1, to);
+        if (lefts[node] != NONE)
+            expandBox(node, lefts[node]);
+        if (rights[node] != NONE)
+            expandBox(node, rights[node]);
+        return node;
+    }
+
+    //Quickselect: partially orders nodes[lo, hi] by key in dim, so that nodes[k] is where it'd be if fully sorted
+    private void select(int[] nodes, int lo, int hi, int k, int dim) {
+        while (lo < hi) {
+            double pivot = keys[nodes[(lo + hi) >>> 1]*numDims + dim];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[nodes[i]*numDims + dim] < pivot)
+                    i++;
+                while (keys[nodes[j]*numDims + dim] > pivot)
+                    j--;
+                if (i <= j) {
+                    int temp = nodes[i];
+                    nodes[i] = nodes[j];
+                    nodes[j] = temp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j)
+                hi = j;
+            else if (k >= i)
+                lo = i;
+            else
+                return;
+        }
+    }
+
+    //Expands node's box to hold child's box
+    private void expandBox(int node, int child) {
+        int base = node*numDims;
+        int childBase = child*numDims;
+        for (int i = 0; i < numDims; i++) {
+            if (boxMins[childBase + i] < boxMins[base + i])
+                boxMins[base + i] = boxMins[childBase + i];
+            if (boxMaxs[childBase + i] > boxMaxs[base + i])
+                boxMaxs[base + i] = boxMaxs[childBase + i];
+        }
+    }
+
+    private void expandBox(int node, double[] point) {
+        int base = node*numDims;
+        for (int i = 0; i < numDims; i++) {
+            double val = point[i];
+            if (val < boxMins[base + i])
+                boxMins[base + i] = val;
+            if (val > boxMaxs[base + i])
+                boxMaxs[base + i] = val;
+        }
+    }
+
+    private int widestBoxDim(int node) {
+        int base = node*numDims;
+        int widestDim = 0;
+        double widest = -1.0;
+        for (int i = 0; i < numDims; i++) {
+            double width = boxMaxs[base + i] - boxMins[base + i];
+            if (width > widest) {
+                widest = width;
+                widestDim = i;
+            }
+        }
+        return widestDim;
+    }
+
+    /** Returns squared distance from query to nearest point of node's subtree box (never more than to any key in it) */
+    double boxDistSqrd(int node, double[] query) {
+        int base = node*numDims;
+        double val = 0.0;
+        for (int i = 0; i < numDims; i++) {
+            double delta = 0.0;
+            if (query[i] < boxMins[base + i])
+                delta = boxMins[base + i] - query[i];
+            else if (query[i] > boxMaxs[base + i])
+                delta = query[i] - boxMaxs[base + i];
+            val += delta*delta;
+        }
+        return val;
+    }
+
+    /** Same as MathUtils.deltaSqrd(query, key of node), so distances agree exactly with it */
+    double distSqrd(int node, double[] query) {
+        int base = node*numDims;
+        double val = 0.0f;
+        for (int i = 0; i < numDims; i++)
+            val += (query[i] - keys[base + i])*(query[i] - keys[base + i]);
+        return val;
+    }
+
+    //Returns first-ordered live node in subtree w/ given key (& value, if matchAnyValue is false), or NONE.
+    //Descends into every subtree whose box holds the key, as duplicates of a split value may be on either side.
+    private int findNode(int node, double[] key, Object value, boolean matchAnyValue) {
+        if (node == NONE)
+            return NONE;
+        int base = node*numDims;
+        for (int i = 0; i < numDims; i++) {
+            if (key[i] < boxMins[base + i] || key[i] > boxMaxs[base + i])
+                return NONE;
+        }
+
+        int found = NONE;
+        boolean valueMatches = matchAnyValue || ((value == null) ? values[node] == null : value.equals(values[node]));
+        if (!removed[node] && valueMatches) {
+            boolean keyMatches = true;
+            for (int i = 0; i < numDims && keyMatches; i++)
+                keyMatches = keys[base + i] == key[i];
+            if (keyMatches)
+                found = node;
+        }
+        found = firstOrdered(found, findNode(lefts[node], key, value, matchAnyValue));
+        found = firstOrdered(found, findNode(rights[node], key, value, matchAnyValue));
+        return found;
+    }
+
+    private int firstOrdered(int node1, int node2) {
+        if (node1 == NONE)
+            return node2;
+        if (node2 == NONE)
+            return node1;
+        return (orders[node2] < orders[node1]) ? node2 : node1;
+    }
+
+    //Pending items of a search are kept in a binary heap over parallel arrays: each is a subtree (to be expanded)
+    //or a single entry (to be returned), ordered by distance from the query. Subtrees come before entries at the
+    //same distance (so every entry at that distance is queued before any is returned), & entries at the same
+    //distance come in tie-break order.
+    static final class NearestIterator<V> implements Iterator<Entry<V>> {
+        final KDIndex<V> index;
+        final double[] query;
+        double[] heapDists = new double[32];
+        int[] heapNodes = new int[32];
+        boolean[] heapIsSubtree = new boolean[32];
+        int heapSize;
+        Entry<V> next;
+
+        NearestIterator(KDIndex<V> index, double[] query) {
+            this.index = index;
+            this.query = query;
+            if (index.root != NONE)
+                push(index.root, true, index.boxDistSqrd(index.root, query));
+            next = findNext();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<V> next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            Entry<V> entry = next;
+            next = findNext();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private Entry<V> findNext() {
+            while (heapSize > 0) {
+                int node = heapNodes[0];
+                boolean isSubtree = heapIsSubtree[0];
+                double dist = heapDists[0];
+                pop();
+
+                if (!isSubtree)
+                    return new Entry<V>(index, node, dist);
+
+                if (!index.removed[node])
+                    push(node, false, index.distSqrd(node, query));
+                int left = index.lefts[node];
+                if (left != NONE)
+                    push(left, true, index.boxDistSqrd(left, query));
+                int right = index.rights[node];
+                if (right != NONE)
+                    push(right, true, index.boxDistSqrd(right, query));
+            }
+            return null;
+        }
+
+        private boolean before(int i, int j) {
+            if (heapDists[i] != heapDists[j])
+                return heapDists[i] < heapDists[j];
+            if (heapIsSubtree[i] != heapIsSubtree[j])
+                return heapIsSubtree[i];
+            return index.orders[heapNodes[i]] < index.orders[heapNodes[j]];
+        }
+
+        private void swap(int i, int j) {
+            double dist = heapDists[i];
+            heapDists[i] = heapDists[j];
+            heapDists[j] = dist;
+            int node = heapNodes[i];
+            heapNodes[i] = heapNodes[j];
+            heapNodes[j] = node;
+            boolean isSubtree = heapIsSubtree[i];
+            heapIsSubtree[i] = heapIsSubtree[j];
+            heapIsSubtree[j] = isSubtree;
+        }
+
+        private void push(int node, boolean isSubtree, double dist) {
+            if (heapSize == heapNodes.length) {
+                heapDists = Arrays.copyOf(heapDists, heapSize*2);
+                heapNodes = Arrays.copyOf(heapNodes, heapSize*2);
+                heapIsSubtree = Arrays.copyOf(heapIsSubtree, heapSize*2);
+            }
+            int i = heapSize++;
+            heapDists[i] = dist;
+            heapNodes[i] = node;
+            heapIsSubtree[i] = isSubtree;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(i, parent))
+                    break;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void pop() {
+            heapSize--;
+            if (heapSize == 0)
+                return;
+            heapDists[0] = heapDists[heapSize];
+            heapNodes[0] = heapNodes[heapSize];
+            heapIsSubtree[0] = heapIsSubtree[heapSize];
+            int i = 0;
+            while (true) {
+                int child = 2*i + 1;
+                if (child >= heapSize)
+                    break;
+                if (child + 1 < heapSize && before(child + 1, child))
+                    child++;
+                if (!before(child, i))
+                    break;
+                swap(i, child);
+                i = child;
+            }
+        }
+    }
+}
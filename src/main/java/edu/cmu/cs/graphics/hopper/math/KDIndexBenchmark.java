@@ -0,0 +1,240 @@
+package edu.cmu.cs.graphics.hopper.math;
+
+import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
+import edu.cmu.cs.graphics.hopper.problems.TerrainProblemGenerator;
+import net.sf.javaml.core.kdtree.KDTree;
+import org.apache.commons.cli.*;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/** Program that times KDIndex against javaml's KDTree on terrain problem params (generated as for the standard problem
+ * sets, cycling through their amplitudes, so with the default terrainLength of 5 they're 11-dimensional), & checks that both find entries at the same distances.
+ * Each timing is the best of a few passes, so the JIT has warmed up.
+ * Usage: KDIndexBenchmark [-numEntries n] [-numQueries n] [-k n] [-radius r] [-terrainLength n] [-seed n] */
+public class KDIndexBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(KDIndexBenchmark.class);
+
+    static final int NUM_PASSES = 5;
+
+    public static void main(String[] args) {
+        DOMConfigurator.configure("config/log4j.xml");
+
+        Options options = new Options();
+        options.addOption("numEntries", true, "Number of problems to index (default 20000)");
+        options.addOption("numQueries", true, "Number of problems to query with (default 2000)");
+        options.addOption("k", true, "Number of nearest neighbors to find in k-nearest searches (default 10)");
+        options.addOption("radius", true, "Radius of radius searches (default 1.0)");
+        options.addOption("terrainLength", true, "Terrain length of generated problems (default 5)");
+        options.addOption("seed", true, "Random seed (default 12345)");
+
+        CommandLineParser parser = new GnuParser();
+        CommandLine cmd = null;
+        try {
+            cmd = parser.parse(options, args);
+        }
+        catch (ParseException parseError) {
+            log.error("Error occurred while parsing command line inputs");
+            parseError.printStackTrace();
+            return;
+        }
+
+        int numEntries = Integer.parseInt(cmd.getOptionValue("numEntries", "20000"));
+        int numQueries = Integer.parseInt(cmd.getOptionValue("numQueries", "2000"));
+        int k = Integer.parseInt(cmd.getOptionValue("k", "10"));
+        double radius = Double.parseDouble(cmd.getOptionValue("radius", "1.0"));
+        int terrainLength = Integer.parseInt(cmd.getOptionValue("terrainLength", "" + TerrainProblemGenerator.DEFAULT_TERRAIN_LENGTH));
+        long seed = Long.parseLong(cmd.getOptionValue("seed", "12345"));
+
+        Random r = new Random(seed);
+        TerrainProblemGenerator generator = TerrainProblemGenerator.createDefault(terrainLength);
+        List<double[]> keys = getParams(generator.generateInterleaved(numEntries, r));
+        List<double[]> queries = getParams(generator.generateInterleaved(numQueries, r));
+        List<Integer> values = new ArrayList<Integer>(numEntries);
+        for (int i = 0; i < numEntries; i++)
+            values.add(i);
+        int numDims = keys.get(0).length;
+        k = Math.min(k, numEntries);
+        log.info("Benchmarking " + numEntries + " entries & " + numQueries + " queries of " + numDims + " dims (k=" +
+                 k + ", radius=" + radius + ")");
+
+        //Build
+        KDTree tree = null;
+        KDIndex<Integer> insertedIndex = null;
+        KDIndex<Integer> builtIndex = null;
+        long treeBuildNanos = Long.MAX_VALUE, indexInsertNanos = Long.MAX_VALUE, indexBuildNanos = Long.MAX_VALUE;
+        for (int pass = 0; pass < NUM_PASSES; pass++) {
+            long t0 = System.nanoTime();
+            tree = new KDTree(numDims);
+            for (int i = 0; i < numEntries; i++)
+                tree.insert(keys.get(i), values.get(i));
+            long t1 = System.nanoTime();
+            insertedIndex = new KDIndex<Integer>(numDims);
+            for (int i = 0; i < numEntries; i++)
+                insertedIndex.insert(keys.get(i), values.get(i));
+            long t2 = System.nanoTime();
+            builtIndex = KDIndex.build(numDims, keys, values);
+            long t3 = System.nanoTime();
+            treeBuildNanos = Math.min(treeBuildNanos, t1 - t0);
+            indexInsertNanos = Math.min(indexInsertNanos, t2 - t1);
+            indexBuildNanos = Math.min(indexBuildNanos, t3 - t2);
+        }
+        report("build (javaml inserts)", treeBuildNanos, numEntries);
+        report("build (KDIndex inserts)", indexInsertNanos, numEntries);
+        report("build (KDIndex bulk)", indexBuildNanos, numEntries);
+
+        //Exact search, for every entry
+        long treeNanos = Long.MAX_VALUE, indexNanos = Long.MAX_VALUE;
+        int numMismatches = 0;
+        for (int pass = 0; pass < NUM_PASSES; pass++) {
+            long t0 = System.nanoTime();
+            Object[] treeFound = new Object[numEntries];
+            for (int i = 0; i < numEntries; i++)
+                treeFound[i] = tree.search(keys.get(i));
+            long t1 = System.nanoTime();
+            Object[] indexFound = new Object[numEntries];
+            for (int i = 0; i < numEntries; i++)
+                indexFound[i] = builtIndex.find(keys.get(i));
+            long t2 = System.nanoTime();
+            treeNanos = Math.min(treeNanos, t1 - t0);
+            indexNanos = Math.min(indexNanos, t2 - t1);
+            numMismatches = 0;
+            for (int i = 0; i < numEntries; i++) {
+                if (treeFound[i] == null || !treeFound[i].equals(indexFound[i]))
+                    numMismatches++;
+            }
+        }
+        report("exact search (javaml)", treeNanos, numEntries);
+        report("exact search (KDIndex)", indexNanos, numEntries);
+        logMismatches("exact search", numMismatches);
+
+        //Nearest
+        treeNanos = Long.MAX_VALUE;
+        indexNanos = Long.MAX_VALUE;
+        for (int pass = 0; pass < NUM_PASSES; pass++) {
+            long t0 = System.nanoTime();
+            double[] treeDists = new double[numQueries];
+            for (int i = 0; i < numQueries; i++)
+                treeDists[i] = MathUtils.deltaSqrd(queries.get(i), keys.get((Integer)tree.nearest(queries.get(i))));
+            long t1 = System.nanoTime();
+            double[] indexDists = new double[numQueries];
+            for (int i = 0; i < numQueries; i++)
+                indexDists[i] = builtIndex.nearest(queries.get(i)).next().distSqrd;
+            long t2 = System.nanoTime();
+            treeNanos = Math.min(treeNanos, t1 - t0);
+            indexNanos = Math.min(indexNanos, t2 - t1);
+            numMismatches = countMismatches(treeDists, indexDists);
+        }
+        report("nearest (javaml)", treeNanos, numQueries);
+        report("nearest (KDIndex)", indexNanos, numQueries);
+        logMismatches("nearest", numMismatches);
+
+        //K-nearest
+        treeNanos = Long.MAX_VALUE;
+        indexNanos = Long.MAX_VALUE;
+        for (int pass = 0; pass < NUM_PASSES; pass++) {
+            long t0 = System.nanoTime();
+            double[] treeDists = new double[numQueries*k];
+            for (int i = 0; i < numQueries; i++) {
+                Object[] nearest = tree.nearest(queries.get(i), k);
+                for (int j = 0; j < k; j++)
+                    treeDists[i*k + j] = MathUtils.deltaSqrd(queries.get(i), keys.get((Integer)nearest[j]));
+            }
+            long t1 = System.nanoTime();
+            double[] indexDists = new double[numQueries*k];
+            for (int i = 0; i < numQueries; i++) {
+                List<KDIndex.Entry<Integer>> nearest = builtIndex.nearest(queries.get(i), k);
+                for (int j = 0; j < k; j++)
+                    indexDists[i*k + j] = nearest.get(j).distSqrd;
+            }
+            long t2 = System.nanoTime();
+            treeNanos = Math.min(treeNanos, t1 - t0);
+            indexNanos = Math.min(indexNanos, t2 - t1);
+            numMismatches = countMismatches(treeDists, indexDists);
+        }
+        report(k + "-nearest (javaml)", treeNanos, numQueries);
+        report(k + "-nearest (KDIndex)", indexNanos, numQueries);
+        logMismatches(k + "-nearest", numMismatches);
+
+        //Radius (javaml has no radius search, so search the box around the sphere & drop what's outside it)
+        treeNanos = Long.MAX_VALUE;
+        indexNanos = Long.MAX_VALUE;
+        long numFound = 0;
+        for (int pass = 0; pass < NUM_PASSES; pass++) {
+            long t0 = System.nanoTime();
+            double[] treeCounts = new double[numQueries];
+            for (int i = 0; i < numQueries; i++) {
+                double[] query = queries.get(i);
+                double[] low = new double[numDims];
+                double[] high = new double[numDims];
+                for (int d = 0; d < numDims; d++) {
+                    low[d] = query[d] - radius;
+                    high[d] = query[d] + radius;
+                }
+                for (Object found : tree.range(low, high)) {
+                    if (MathUtils.deltaSqrd(query, keys.get((Integer)found)) <= radius*radius)
+                        treeCounts[i]++;
+                }
+            }
+            long t1 = System.nanoTime();
+            double[] indexCounts = new double[numQueries];
+            numFound = 0;
+            for (int i = 0; i < numQueries; i++) {
+                indexCounts[i] = builtIndex.withinRadius(queries.get(i), radius).size();
+                numFound += indexCounts[i];
+            }
+            long t2 = System.nanoTime();
+            treeNanos = Math.min(treeNanos, t1 - t0);
+            indexNanos = Math.min(indexNanos, t2 - t1);
+            numMismatches = countMismatches(treeCounts, indexCounts);
+        }
+        log.info("Radius searches found " + String.format("%.1f", numFound/(double)numQueries) + " entries on average");
+        report("radius (javaml range)", treeNanos, numQueries);
+        report("radius (KDIndex)", indexNanos, numQueries);
+        logMismatches("radius", numMismatches);
+
+        //Incremental: first k entries of a nearest-first walk over the incrementally built index
+        indexNanos = Long.MAX_VALUE;
+        for (int pass = 0; pass < NUM_PASSES; pass++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < numQueries; i++) {
+                Iterator<KDIndex.Entry<Integer>> nearest = insertedIndex.nearest(queries.get(i));
+                for (int j = 0; j < k && nearest.hasNext(); j++)
+                    nearest.next();
+            }
+            indexNanos = Math.min(indexNanos, System.nanoTime() - t0);
+        }
+        report(k + "-nearest (KDIndex inserts, iterated)", indexNanos, numQueries);
+    }
+
+    static List<double[]> getParams(List<ProblemDefinition> problems) {
+        List<double[]> params = new ArrayList<double[]>(problems.size());
+        for (ProblemDefinition problem : problems)
+            params.add(problem.getParamsArray());
+        return params;
+    }
+
+    static int countMismatches(double[] expected, double[] actual) {
+        int numMismatches = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i])
+                numMismatches++;
+        }
+        return numMismatches;
+    }
+
+    static void report(String name, long nanos, int numOps) {
+        log.info(String.format("%-40s %10.2f ms %10.3f us/op", name, nanos/1.0e6, nanos/1.0e3/numOps));
+    }
+
+    static void logMismatches(String name, int numMismatches) {
+        if (numMismatches > 0)
+            log.warn(name + ": javaml & KDIndex results differ in " + numMismatches + " places");
+    }
+}
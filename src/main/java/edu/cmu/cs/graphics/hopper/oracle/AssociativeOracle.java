@@ -6,9 +6,9 @@ import edu.cmu.cs.graphics.hopper.control.ControlProvider;
 import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
 import edu.cmu.cs.graphics.hopper.eval.EvaluatorDefinition;
 import edu.cmu.cs.graphics.hopper.explore.ProblemSolutionEntry;
+import edu.cmu.cs.graphics.hopper.math.KDIndex;
 import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
 
-import net.sf.javaml.core.kdtree.KDTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,7 +23,8 @@ public class AssociativeOracle<C extends Control> extends ChallengeOracle<C> {
     private static final Logger log = LoggerFactory.getLogger(AssociativeOracle.class);
 
     //Keys are problem params put in array, vals are ControlProvider solutions for associated problem
-    KDTree solutionsByProblem;
+    //(if a problem is given more than one solution, the first added is used)
+    KDIndex<ControlProviderDefinition<C>> solutionsByProblem;
     int k; //size of k for kd tree
 
     //The full list of problem-solution entries for this map (also in KD tree, but list is useful for debug viewing)
@@ -46,7 +47,7 @@ public class AssociativeOracle<C extends Control> extends ChallengeOracle<C> {
         //Create tree if this is the first problem being added
         if (k == -1) {
             k = problemParams.length;
-            solutionsByProblem = new KDTree(k);
+            solutionsByProblem = new KDIndex<ControlProviderDefinition<C>>(k);
         }
 
         solutionsByProblem.insert(problemParams, solution);
@@ -67,7 +68,7 @@ public class AssociativeOracle<C extends Control> extends ChallengeOracle<C> {
                 return null;
             }
 
-            ControlProviderDefinition<C> solution = (ControlProviderDefinition<C>)solutionsByProblem.search(problemParams);
+            ControlProviderDefinition<C> solution = solutionsByProblem.find(problemParams);
             return solution;
         }
         return null;
@@ -0,0 +1,83 @@
+package edu.cmu.cs.graphics.hopper.problems;
+
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.contacts.Contact;
+
+import java.util.HashMap;
+
+/** Routes contact begin/end events of a problem instance's world to listeners registered for specific body pairs,
+ * so that an avatar or evaluator only hears about the contacts it cares about (eg: "chassis touched ground") rather
+ * than comparing the bodies of every contact itself. Lookups are by body, so dispatch cost doesn't grow with the
+ * number of fixtures in the world.
+ * Listeners are registered up front (see Avatar/Evaluator.registerContactListeners()) and are called from within
+ * world steps, so they should just note what happened & leave any heavier logic for their next update. */
+public class ContactIndex {
+    /** Receives contact events for a registered body pair */
+    public interface Listener {
+        /** Called when a contact between body & other begins */
+        void onBeginContact(Contact contact, Body body, Body other);
+        /** Called when a contact between body & other ends */
+        void onEndContact(Contact contact, Body body, Body other);
+    }
+
+    /** A registered listener, linked to any others registered for the same body */
+    static final class Entry {
+        final Body other;           //if null, any other body matches
+        final Listener listener;
+        Entry next;
+
+        Entry(Body other, Listener listener) {
+            this.other = other;
+            this.listener = listener;
+        }
+    }
+
+    final HashMap<Body, Entry> entriesByBody = new HashMap<Body, Entry>();
+
+    /** Registers listener for contacts between body & other (or between body & anything, if other is null).
+     * A contact matching several registrations is passed to each of them. */
+    public void register(Body body, Body other, Listener listener) {
+        Entry entry = new Entry(other, listener);
+        Entry last = entriesByBody.get(body);
+        if (last == null) {
+            entriesByBody.put(body, entry);
+        }
+        else {
+            //Keep registration order, so listeners are called in the order they registered
+            while (last.next != null)
+                last = last.next;
+            last.next = entry;
+        }
+    }
+
+    /** Removes all registrations */
+    public void clear() {
+        entriesByBody.clear();
+    }
+
+    public void beginContact(Contact contact) {
+        Body bodyA = contact.getFixtureA().getBody();
+        Body bodyB = contact.getFixtureB().getBody();
+        for (Entry entry = entriesByBody.get(bodyA); entry != null; entry = entry.next) {
+            if (entry.other == null || entry.other == bodyB)
+                entry.listener.onBeginContact(contact, bodyA, bodyB);
+        }
+        for (Entry entry = entriesByBody.get(bodyB); entry != null; entry = entry.next) {
+            if (entry.other == null || entry.other == bodyA)
+                entry.listener.onBeginContact(contact, bodyB, bodyA);
+        }
+    }
+
+    public void endContact(Contact contact) {
+        Body bodyA = contact.getFixtureA().getBody();
+        Body bodyB = contact.getFixtureB().getBody();
+        for (Entry entry = entriesByBody.get(bodyA); entry != null; entry = entry.next) {
+            if (entry.other == null || entry.other == bodyB)
+                entry.listener.onEndContact(contact, bodyA, bodyB);
+        }
+        for (Entry entry = entriesByBody.get(bodyB); entry != null; entry = entry.next) {
+            if (entry.other == null || entry.other == bodyA)
+                entry.listener.onEndContact(contact, bodyB, bodyA);
+        }
+    }
+}
@@ -2,12 +2,17 @@ package edu.cmu.cs.graphics.hopper.problems;
 
 import edu.cmu.cs.graphics.hopper.control.Control;
 import edu.cmu.cs.graphics.hopper.control.ControlProvider;
+import edu.cmu.cs.graphics.hopper.math.Fingerprint;
 import org.jbox2d.dynamics.World;
 
 /** An instantiable control problem on which we can evaluate controller performance
  * NOTE: Problems should override the hashCode() method in order to allow simple set management logic on problem definitions
- * (ie: return true if static problem definition fields are the same) */
+ * (ie: return true if static problem definition fields are the same); getFingerprint() is a cheap basis for both.
+ * Definitions must not change once created. */
 public abstract class ProblemDefinition {
+    //Computed on first use (not serialized, so entries saved before fingerprints existed load fine)
+    private transient volatile Fingerprint fingerprint;
+
     /** Creates various components for this problem definition and adds to given world*/
     public abstract void init(World world);
 
@@ -17,4 +22,27 @@ public abstract class ProblemDefinition {
 
     /** Returns a deep copy of the current state of this avatar as a POJO, suitable for serializing to JSON */
     public abstract Object getState();
+
+    /** Adds the layout of given params array (this problem's) to hasher: by default, just its length. Problems whose
+     * params are made up of variable-length parts add the length of each, so that problems whose params only differ in
+     * where one part ends & the next begins get different fingerprints. */
+    public void addParamsLayout(Fingerprint.Hasher hasher, double[] params) {
+        hasher.add(params.length);
+    }
+
+    /** Returns a stable 128-bit fingerprint of this problem's type & params (computed once, then cached) */
+    public final Fingerprint getFingerprint() {
+        Fingerprint result = fingerprint;
+        if (result == null) {
+            Fingerprint.Hasher hasher = new Fingerprint.Hasher();
+            hasher.add(getClass().getName());
+            double[] params = getParamsArray();
+            addParamsLayout(hasher, params);
+            for (int i = 0; i < params.length; i++)
+                hasher.add(params[i]);
+            result = hasher.build();
+            fingerprint = result;
+        }
+        return result;
+    }
  }
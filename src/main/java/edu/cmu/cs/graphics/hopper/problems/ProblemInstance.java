@@ -3,7 +3,7 @@ package edu.cmu.cs.graphics.hopper.problems;
 import edu.cmu.cs.graphics.hopper.control.*;
 import edu.cmu.cs.graphics.hopper.eval.Evaluator;
 import edu.cmu.cs.graphics.hopper.eval.EvaluatorDefinition;
-import org.box2d.proto.Box2D;
+import edu.cmu.cs.graphics.hopper.eval.TerminationRuleDefinition;
 import org.jbox2d.callbacks.ContactImpulse;
 import org.jbox2d.callbacks.ContactListener;
 import org.jbox2d.collision.Manifold;
@@ -11,11 +11,10 @@ import org.jbox2d.collision.shapes.EdgeShape;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.BodyType;
 import org.jbox2d.dynamics.FixtureDef;
 import org.jbox2d.dynamics.World;
 import org.jbox2d.dynamics.contacts.Contact;
-import org.jbox2d.serialization.pb.PbDeserializer;
-import org.jbox2d.serialization.pb.PbSerializer;
 import org.jbox2d.testbed.framework.TestbedSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,20 +29,13 @@ import java.util.List;
 public class ProblemInstance implements
         ContactListener {
 
-    /** A sampled state of the problem's world at a particular sim time */
-    protected final class WorldSample {
-        final float simTime;
-        final Box2D.PbWorld serializedWorld;
-
-        WorldSample(float simTime, Box2D.PbWorld serializedWorld) {
-            this.simTime = simTime;
-            this.serializedWorld = serializedWorld;
-        }
-    }
-
     protected static final Logger log = LoggerFactory.getLogger(ProblemInstance.class);
 
+    //TODO: move this to problem or avatar def... just useful to hardcode for now
+    static final float INIT_VEL_X = 2.0f;
+
     protected int stepCount;
+    int numStepsRun;            //steps actually simulated by this instance (ie: not counting any resumed past)
     float simTime;
 
     //Static definition stuff
@@ -68,15 +60,31 @@ public class ProblemInstance implements
     public boolean continuousCollision;
 
     protected List<Contact> currContacts;
+    //Routes contact events to the avatar & evaluator listeners registered for them
+    protected ContactIndex contactIndex;
 
-    //Serializers for state sampling
+    //State sampling (debugging only)
+    static final float SAMPLE_INTERVAL = 1.0f / 10.0f;    //10 Hz
+    static final int MAX_WORLD_SAMPLES = 3000;           //a couple of typical runs' worth
     boolean useSampling;
-    List<WorldSample> worldSamples;
-    PbSerializer serializer = new PbSerializer();
-    PbDeserializer deserializer = new PbDeserializer();
+    WorldSampler worldSampler;
 
     protected ControlProvider givenCtrlProvider;
 
+    //Set (possibly from another thread) to stop a run() early, leaving the evaluation status as-is
+    protected volatile boolean cancelled;
+
+    //Source of prebuilt static worlds, if any (otherwise, a new world is built on each init)
+    protected WorldTemplateCache worldTemplates;
+    protected WorldTemplateCache.WorldTemplate worldTemplate;
+
+    //Checkpoints of earlier sims of this problem, used to skip hops shared with them (if null, always sims from start)
+    protected SimCheckpointCache checkpoints;
+    int lastCtrlIdx;
+
+    //Step settings used on init
+    protected SimProfile simProfile = SimProfile.VERIFY;
+
     /** Creates a new problem instance where avatar will use default control provider */
     public ProblemInstance(ProblemDefinition problemDef, AvatarDefinition avatarDef, EvaluatorDefinition evalDef) {
         this(problemDef, avatarDef, evalDef, null);
@@ -92,7 +100,6 @@ public class ProblemInstance implements
 
         currContacts = new ArrayList<Contact>();
 
-        worldSamples = new ArrayList<WorldSample>();
         //By default, don't use sampling (only necessary for debugging in most cases)
         setUseSampling(false);
     }
@@ -102,9 +109,41 @@ public class ProblemInstance implements
      * Default is off. */
     public void setUseSampling(boolean val) {
         useSampling = val;
+        if (useSampling && worldSampler == null)
+            worldSampler = new WorldSampler(SAMPLE_INTERVAL, MAX_WORLD_SAMPLES);
+    }
+
+    /** Sets cache from which this instance takes a prebuilt world (w/ problem's static geometry) on init().
+     * If set, release() should be called once done with the instance so that the world can be reused. */
+    public void setWorldTemplates(WorldTemplateCache val) {
+        worldTemplates = val;
+    }
+
+    /** Sets step settings (timestep & solver iterations) used by this instance as of the next init().
+     * Default is full fidelity (SimProfile.VERIFY). */
+    public void setSimProfile(SimProfile val) {
+        simProfile = val;
     }
+    public SimProfile getSimProfile() {return simProfile;}
+
+    /** Sets cache of hop-boundary checkpoints from which this instance resumes on init() (if it shares a control prefix
+     * with some earlier sim) and to which it contributes checkpoints of its own as it runs. */
+    public void setCheckpoints(SimCheckpointCache val) {
+        checkpoints = val;
+    }
+
+    /** Requests that any ongoing (or future) run() of this instance exit at its next timestep.
+     * Safe to call from threads other than the one running the simulation. */
+    public void cancel() {cancelled = true;}
+    public boolean isCancelled() {return cancelled;}
 
     public float getSimTime() {return simTime;}
+    public ProblemDefinition getProblemDefinition() {return problemDef;}
+    public ControlProviderDefinition<?> getCtrlDefinition() {return ctrlDef;}
+    /** Returns number of sim steps taken since init (including any skipped by resuming from a checkpoint) */
+    public int getStepCount() {return stepCount;}
+    /** Returns number of sim steps this instance actually simulated since init */
+    public int getNumStepsRun() {return numStepsRun;}
     public World getWorld() {return world;}
     public Avatar getAvatar() {return avatar;}
     public Evaluator getEvaluator() {return eval;}
@@ -116,7 +155,7 @@ public class ProblemInstance implements
         return null;
     }
     public int getNumWorldSamples() {
-        return worldSamples.size();
+        return (worldSampler != null) ? worldSampler.getNumSamples() : 0;
     }
     /** Returns list of contact points generated at last sim update */
     public List<Contact> getCurrentContacts() {return currContacts;}
@@ -124,22 +163,42 @@ public class ProblemInstance implements
     public void init() {
         simTime = 0;
         stepCount = 0;
+        numStepsRun = 0;
 
-        //NOTE: We're going to hardcode pretty high values for now (required by biped hopper)
-        updateHz = 1000;
-        posIters = 30;
-        velIters = 50;
+        //NOTE: Full fidelity profile uses pretty high values (required by biped hopper)
+        updateHz = simProfile.updateHz;
+        posIters = simProfile.posIters;
+        velIters = simProfile.velIters;
         allowSleep = true;
         warmStarting = true;
         substepping =  false;
         continuousCollision = true;
 
-        //TODO: This really should be cleared here, but I'm preventing that to hack in
-        // ability to review prior problem instance runs in GUI. -bh, 12.5.2013
-//        worldSamples.clear();
+        //NOTE: Samples of prior runs aren't cleared here, so they can still be reviewed in GUI (the sampler is bounded,
+        // so old runs eventually drop out anyway)
 
-        Vec2 gravity = new Vec2(0, -10f);
-        world = new World(gravity);
+        //Re-init'ing an instance that still holds a template: hand it back first
+        release();
+
+        //Resume from a checkpoint of an earlier sim sharing our first few controls, if available
+        if (usingCheckpoints()) {
+            ProblemInstance checkpoint = checkpoints.getCheckpoint(problemDef, ctrlDef);
+            if (checkpoint != null) {
+                copyStateFrom(checkpoint);
+                beginSampling();
+                return;
+            }
+        }
+
+        //Reuse a prebuilt world w/ static geometry if available; otherwise, build from scratch
+        if (worldTemplates != null) {
+            worldTemplate = worldTemplates.acquire(problemDef);
+            world = worldTemplate.world;
+            groundBody = worldTemplate.groundBody;
+        }
+        else {
+            world = createWorld();
+        }
 
         world.setAllowSleep(allowSleep);
         world.setWarmStarting(warmStarting);
@@ -156,8 +215,6 @@ public class ProblemInstance implements
             if (ctrlDef != null)
                 avatar.setControlProvider(ctrlDef.create());
 
-            //TODO: move this to problem or avatar def... just useful to hardcode for now
-            final float INIT_VEL_X = 2.0f;
             final Vec2 INIT_POS = new Vec2(-7.0f, 8.0f);
             avatar.setInitState(INIT_POS, new Vec2(INIT_VEL_X, 0.0f));
             ((ControlProvider<BipedHopperControl>)avatar.getControlProvider()).getCurrControl().targetBodyVelX = INIT_VEL_X;
@@ -165,39 +222,134 @@ public class ProblemInstance implements
             avatar.init(world);
         }
 
+        if (worldTemplate == null)
+            groundBody = createStaticGeometry(world, problemDef);
+
+        contactIndex = new ContactIndex();
+        if (avatar != null)
+            avatar.registerContactListeners(contactIndex);
+        eval.registerContactListeners(this, contactIndex);
+
+        world.setContactListener(this);
+        lastCtrlIdx = 0;
+        beginSampling();
+    }
+
+    /** Keeps initial world for rebuilding the samples of this run, if sampling */
+    private void beginSampling() {
+        if (useSampling)
+            worldSampler.begin(world);
+    }
+
+    /** Replaces this instance's sim state with an exact copy of that of src, which must be an instance of the same problem,
+     * avatar & evaluator whose controls so far match ours. The copy continues with our own remaining controls. */
+    void copyStateFrom(ProblemInstance src) {
+        //Definitions are shared; anything pointing back at src (eg: the world's contact listener) now points to us
+        SimStateCopier copier = new SimStateCopier();
+        copier.substitute(src, this);
+        copier.shareInstancesOf(ProblemDefinition.class);
+        copier.shareInstancesOf(AvatarDefinition.class);
+        copier.shareInstancesOf(EvaluatorDefinition.class);
+        copier.shareInstancesOf(ControlProviderDefinition.class);
+        copier.shareInstancesOf(TerminationRuleDefinition.class);
+
+        simProfile = src.simProfile;
+        simTime = src.simTime;
+        stepCount = src.stepCount;
+        updateHz = src.updateHz;
+        posIters = src.posIters;
+        velIters = src.velIters;
+        allowSleep = src.allowSleep;
+        warmStarting = src.warmStarting;
+        substepping = src.substepping;
+        continuousCollision = src.continuousCollision;
+
+        world = copier.copy(src.world);
+        groundBody = copier.copy(src.groundBody);
+        avatar = copier.copy(src.avatar);
+        eval = copier.copy(src.eval);
+        currContacts = copier.copy(src.currContacts);
+        contactIndex = copier.copy(src.contactIndex);
+        lastCtrlIdx = src.lastCtrlIdx;
+
+        //Swap in our own controls, picking up at the same point in the sequence
+        if (ctrlDef != null && avatar != null)
+            setControlProviderAt(src.getCtrlProvider().CurrControlIdx());
+    }
+
+    //Gives avatar a fresh provider of our controls, moved on to the given control
+    @SuppressWarnings("unchecked")
+    private void setControlProviderAt(int ctrlIdx) {
+        ControlProvider<BipedHopperControl> provider = ctrlDef.create();
+        provider.getCurrControl().targetBodyVelX = INIT_VEL_X;
+        for (int i = 0; i < ctrlIdx; i++)
+            provider.goToNextControl();
+        avatar.setControlProvider(provider);
+    }
+
+    /** Creates an empty world with the standard gravity used for all problems */
+    static World createWorld() {
+        Vec2 gravity = new Vec2(0, -10f);
+        return new World(gravity);
+    }
+
+    /** Adds static geometry for given problem (and the basic flat ground shared by all problems) to world.
+     * Returns the ground body. */
+    static Body createStaticGeometry(World world, ProblemDefinition problemDef) {
         problemDef.init(world);
 
         //Create basic flat ground (TODO: Move this to ProblemDefinition defs instead?)
-        {
-            BodyDef bd = new BodyDef();
-            groundBody = getWorld().createBody(bd);
-
-            float groundLength = 200.0f;
-
-            EdgeShape shape = new EdgeShape();
-            shape.set(new Vec2(-groundLength/2, 0.0f), new Vec2(groundLength/2, 0.0f));
-            FixtureDef groundFd = new FixtureDef();
-//            groundFd.restitution = 1.0f; //assume perfectly elastic bounces
-            groundFd.density = 0.0f;
-            groundFd.friction = 100.0f;
-            groundFd.shape = shape;
-            groundBody.createFixture(groundFd);
-
-            shape.set(new Vec2(-groundLength/2, 0.0f), new Vec2(-groundLength/2, 10.0f));
-            groundBody.createFixture(shape, 0.0f);
-
-            shape.set(new Vec2(groundLength/2, 0.0f), new Vec2(groundLength/2, 10.0f));
-            groundBody.createFixture(shape, 0.0f);
+        BodyDef bd = new BodyDef();
+        Body groundBody = world.createBody(bd);
+
+        float groundLength = 200.0f;
+
+        EdgeShape shape = new EdgeShape();
+        shape.set(new Vec2(-groundLength/2, 0.0f), new Vec2(groundLength/2, 0.0f));
+        FixtureDef groundFd = new FixtureDef();
+//        groundFd.restitution = 1.0f; //assume perfectly elastic bounces
+        groundFd.density = 0.0f;
+        groundFd.friction = 100.0f;
+        groundFd.shape = shape;
+        groundBody.createFixture(groundFd);
+
+        shape.set(new Vec2(-groundLength/2, 0.0f), new Vec2(-groundLength/2, 10.0f));
+        groundBody.createFixture(shape, 0.0f);
+
+        shape.set(new Vec2(groundLength/2, 0.0f), new Vec2(groundLength/2, 10.0f));
+        groundBody.createFixture(shape, 0.0f);
+
+        return groundBody;
+    }
+
+    /** If this instance's world came from a template cache, strips the world back down to its static geometry & returns
+     * it to the cache for reuse. The instance must not be updated afterward unless init() is called again.
+     * Does nothing for instances which built their own world. */
+    public void release() {
+        if (worldTemplate == null)
+            return;
+
+        //Destroying the avatar's bodies also destroys their joints & contacts
+        world.setContactListener(null);
+        Body body = world.getBodyList();
+        while (body != null) {
+            Body nextBody = body.getNext();
+            if (body.getType() != BodyType.STATIC)
+                world.destroyBody(body);
+            body = nextBody;
         }
 
-        world.setContactListener(this);
+        worldTemplates.release(worldTemplate);
+        worldTemplate = null;
+        world = null;
+        groundBody = null;
     }
 
     public void run() {
         //Timestep through complete problem instance test
-        simTime = 0.0f;
+        //(sim time starts from wherever init() left it: 0, or the time of the checkpoint we resumed from)
         float dt = 1.0f/updateHz;
-        while (getStatus() == Evaluator.Status.RUNNING) {
+        while (getStatus() == Evaluator.Status.RUNNING && !cancelled) {
             update(dt, velIters, posIters);
         }
         finish();
@@ -209,41 +361,55 @@ public class ProblemInstance implements
         avatar.update(dt);
         world.step(dt, velIters, posIters);
         simTime += dt;
+        stepCount++;
+        numStepsRun++;
 
         eval.updateEvaluation(this);
 
-        //If sampling is enabled and enough time has passed, store a sample
-        float samplingTimestep = 1.0f / 10.0f; //10 Hz
-        if (useSampling &&
-                (worldSamples.size() == 0 ||
-                (simTime - worldSamples.get(worldSamples.size() - 1).simTime) >= samplingTimestep))
-        {
-            worldSamples.add(new WorldSample(simTime, serializer.serializeWorld(world).build()));
+        //If avatar just moved on to its next control, offer up a checkpoint of this hop boundary
+        if (usingCheckpoints()) {
+            int ctrlIdx = getCtrlProvider().CurrControlIdx();
+            if (ctrlIdx != lastCtrlIdx) {
+                lastCtrlIdx = ctrlIdx;
+                if (getStatus() == Evaluator.Status.RUNNING)
+                    checkpoints.offer(this);
+            }
         }
+
+        //If sampling is enabled, store a sample once enough time has passed
+        if (useSampling)
+            worldSampler.update(simTime, world);
     }
 
     /**Should be called when a simulation run is completed/exited in order
      * to update some final evaluation fitnes results, etc. */
     public void finish() {
         eval.finishEvaluation(this);
+        if (usingCheckpoints())
+            checkpoints.recordEnd(this);
+    }
+
+    /** Checkpoints are only shared by instances with given controls which step the same way */
+    private boolean usingCheckpoints() {
+        return checkpoints != null && ctrlDef != null && checkpoints.simProfile.equals(simProfile);
     }
 
     /** Returns sim World at given sampled index in sample list (if available)
-     * The returned object is a deep copy of the sampled world, so do with it what you will. */
+     * The returned object is rebuilt from the sample, independent of the sampled world, so do with it what you will. */
     public World getWorldSample(int sampleIdx) {
-        if (sampleIdx >= 0 && sampleIdx < worldSamples.size())
-           return deserializer.deserializeWorld(worldSamples.get(sampleIdx).serializedWorld);
-        return null;
+        return (worldSampler != null) ? worldSampler.getWorld(sampleIdx) : null;
     }
 
     @Override
     public void beginContact(Contact contact) {
         currContacts.add(contact);
+        contactIndex.beginContact(contact);
         if (avatar != null) avatar.onBeginContact(contact);
     }
 
     @Override
     public void endContact(Contact contact) {
+        contactIndex.endContact(contact);
         if (avatar != null) avatar.onEndContact(contact);
     }
 
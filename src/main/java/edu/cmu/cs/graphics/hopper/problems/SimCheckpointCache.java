@@ -0,0 +1,182 @@
+package edu.cmu.cs.graphics.hopper.problems;
+
+import edu.cmu.cs.graphics.hopper.control.Control;
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.eval.Evaluator;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Lets sims of control sequences which share a prefix with earlier sims of the same problem skip the shared hops.
+ * An avatar only moves on to its next control at a hop boundary, and sims are deterministic, so the state of a sim just
+ * after it moves on to control #h depends only on controls 0..h. Problem instances hand this cache a copy of their state
+ * (world, avatar & evaluator) at each of their first few hop boundaries (see ProblemInstance.setCheckpoints()), and later
+ * instances whose controls share the prefix resume from the deepest such checkpoint rather than from the start.
+ * Likewise, a sim which ended while using control #h would have ended identically for any sequence sharing controls
+ * 0..h, so those outcomes are kept as well (see getCachedEvaluation()).
+ * Controls past the end of a sequence are treated as repeats of its final control, just as ControlProvider does.
+ * NOTE: Only valid while the avatar, evaluator & sim settings stay fixed (ie: within a single exploration).
+ * Checkpoints are deep copies made via SimStateCopier, which needs JDK internals; check isSupported() before use.
+ * Safe for use by multiple threads. */
+public class SimCheckpointCache {
+    /** A trie node for the control prefix along the path to it */
+    static final class PrefixNode {
+        Map<Control, PrefixNode> children;
+        Evaluator.Status endStatus;     //status of a sim which ended while using the last control of this prefix, or null
+
+        PrefixNode child(Control control, boolean create) {
+            if (children == null) {
+                if (!create)
+                    return null;
+                children = new HashMap<Control, PrefixNode>(4);
+            }
+            PrefixNode child = children.get(control);
+            if (child == null && create) {
+                child = new PrefixNode();
+                children.put(control, child);
+            }
+            return child;
+        }
+    }
+
+    final LinkedHashMap<ProblemDefinition, PrefixNode> prefixesByProblem;
+    final LinkedHashMap<PrefixNode, ProblemInstance> checkpoints;
+    final int maxProblems;
+    final int maxCheckpoints;
+    final int maxCheckpointHop;
+    final SimProfile simProfile;
+
+    int numCheckpointsTaken;
+    int numResumes;
+    long numStepsSkipped;
+    int numEndStatusHits;
+
+    /** Creates a cache holding at most maxCheckpoints checkpoints (least recently used are dropped first), taken at
+     * hop boundaries up to & including control #maxCheckpointHop, for at most maxProblems distinct problems.
+     * Only instances stepped with given sim profile use the cache.
+     * Each checkpoint holds a full copy of a sim's state, so keep maxCheckpoints modest. */
+    public SimCheckpointCache(int maxProblems, int maxCheckpoints, int maxCheckpointHop, SimProfile simProfile) {
+        this.maxProblems = maxProblems;
+        this.maxCheckpoints = maxCheckpoints;
+        this.maxCheckpointHop = maxCheckpointHop;
+        this.simProfile = simProfile;
+        this.prefixesByProblem = new LinkedHashMap<ProblemDefinition, PrefixNode>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ProblemDefinition, PrefixNode> eldest) {
+                return size() > SimCheckpointCache.this.maxProblems;
+            }
+        };
+        this.checkpoints = new LinkedHashMap<PrefixNode, ProblemInstance>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PrefixNode, ProblemInstance> eldest) {
+                return size() > SimCheckpointCache.this.maxCheckpoints;
+            }
+        };
+    }
+
+    /** Returns whether this JVM lets sim state be checkpointed */
+    public static boolean isSupported() {return SimStateCopier.isSupported();}
+
+    public SimProfile getSimProfile() {return simProfile;}
+    public synchronized int getNumCheckpointsTaken() {return numCheckpointsTaken;}
+    public synchronized int getNumResumes() {return numResumes;}
+    /** Returns total sim steps which resumed instances didn't have to run */
+    public synchronized long getNumStepsSkipped() {return numStepsSkipped;}
+    public synchronized int getNumEndStatusHits() {return numEndStatusHits;}
+
+    /** Returns final status of a prior sim on problem which ended within a control prefix shared with given control
+     * sequence, or null if there is no such sim. */
+    public synchronized Evaluator.Status getCachedEvaluation(ProblemDefinition problemDef, ControlProviderDefinition<?> ctrlDef) {
+        List<? extends Control> controls = ctrlDef.controls;
+        PrefixNode node = prefixesByProblem.get(problemDef);
+        if (node == null || controls.isEmpty())
+            return null;
+
+        for (int i = 0; node != null; i++) {
+            node = node.child(controlAt(controls, i), false);
+            if (node != null && node.endStatus != null) {
+                numEndStatusHits++;
+                return node.endStatus;
+            }
+        }
+        return null;
+    }
+
+    /** Called by a problem instance at each hop boundary (just after its avatar moves on to a new control).
+     * Keeps a copy of the instance's state if it's early enough in the sequence & not already checkpointed. */
+    void offer(ProblemInstance problem) {
+        int ctrlIdx = problem.getCtrlProvider().CurrControlIdx();
+        if (ctrlIdx > maxCheckpointHop)
+            return;
+
+        PrefixNode node;
+        synchronized (this) {
+            node = getPrefixNode(problem.problemDef, problem.getCtrlDefinition().controls, ctrlIdx);
+            if (checkpoints.containsKey(node))
+                return;
+        }
+
+        //Copy outside the lock so other threads aren't held up (if two threads race to the same checkpoint, their
+        //copies are identical anyway)
+        ProblemInstance checkpoint = new ProblemInstance(problem.problemDef, problem.avatarDef, problem.evalDef, problem.ctrlDef);
+        checkpoint.copyStateFrom(problem);
+
+        synchronized (this) {
+            checkpoints.put(node, checkpoint);
+            numCheckpointsTaken++;
+        }
+    }
+
+    /** Called by a problem instance when its sim is done; remembers how it ended.
+     * Runs which were cancelled partway aren't recorded. */
+    synchronized void recordEnd(ProblemInstance problem) {
+        Evaluator.Status status = problem.getStatus();
+        if (problem.isCancelled() || status == Evaluator.Status.RUNNING || problem.ctrlDef.controls.isEmpty())
+            return;
+        int ctrlIdx = problem.getCtrlProvider().CurrControlIdx();
+        getPrefixNode(problem.problemDef, problem.getCtrlDefinition().controls, ctrlIdx).endStatus = status;
+    }
+
+    /** Returns the checkpoint sharing the longest control prefix with given sequence on problem, or null if none.
+     * The returned instance must only be read (eg: copied via ProblemInstance.copyStateFrom()), never run. */
+    ProblemInstance getCheckpoint(ProblemDefinition problemDef, ControlProviderDefinition<?> ctrlDef) {
+        List<? extends Control> controls = ctrlDef.controls;
+        ProblemInstance bestCheckpoint = null;
+        synchronized (this) {
+            PrefixNode node = prefixesByProblem.get(problemDef);
+            if (node == null || controls.isEmpty())
+                return null;
+
+            for (int i = 0; i <= maxCheckpointHop && node != null; i++) {
+                node = node.child(controlAt(controls, i), false);
+                ProblemInstance checkpoint = (node != null) ? checkpoints.get(node) : null;
+                if (checkpoint != null)
+                    bestCheckpoint = checkpoint;
+            }
+            if (bestCheckpoint != null) {
+                numResumes++;
+                numStepsSkipped += bestCheckpoint.stepCount;
+            }
+        }
+        return bestCheckpoint;
+    }
+
+    /** Returns (creating if need be) trie node for controls 0..lastCtrlIdx of given sequence on problem */
+    private PrefixNode getPrefixNode(ProblemDefinition problemDef, List<? extends Control> controls, int lastCtrlIdx) {
+        PrefixNode node = prefixesByProblem.get(problemDef);
+        if (node == null) {
+            node = new PrefixNode();
+            prefixesByProblem.put(problemDef, node);
+        }
+        for (int i = 0; i <= lastCtrlIdx; i++)
+            node = node.child(controlAt(controls, i), true);
+        return node;
+    }
+
+    /** Returns control used at given hop index (clamped to the final control, as in ControlProvider) */
+    static Control controlAt(List<? extends Control> controls, int idx) {
+        return controls.get(Math.min(idx, controls.size() - 1));
+    }
+}
@@ -0,0 +1,53 @@
+package edu.cmu.cs.graphics.hopper.problems;
+
+/** Named settings for stepping the simulation of a problem instance.
+ * Lower fidelity profiles run faster, but their outcomes may not agree with those at full fidelity
+ * (see SimProfileAgreement for measuring how often they flip). */
+public final class SimProfile {
+    /** Full fidelity profile; any result that's reported or saved should come from this */
+    public static final SimProfile VERIFY = new SimProfile("verify", 1000, 30, 50);
+
+    /** Cheaper profile for screening candidate controls before verifying apparent successes.
+     * NOTE: The biped hopper's controller is tuned for 1000Hz, and outcomes are much more sensitive to velocity than
+     * position iterations, so only the latter are cut much. */
+    public static final SimProfile SCREENING = new SimProfile("screening", 1000, 10, 40);
+
+    public final String name;
+    public final int updateHz;             //determines simulation update timestep (1/updateHz)
+    public final int posIters;
+    public final int velIters;
+
+    public SimProfile(String name, int updateHz, int posIters, int velIters) {
+        this.name = name;
+        this.updateHz = updateHz;
+        this.posIters = posIters;
+        this.velIters = velIters;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SimProfile that = (SimProfile) o;
+
+        if (updateHz != that.updateHz) return false;
+        if (posIters != that.posIters) return false;
+        if (velIters != that.velIters) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = updateHz;
+        result = 31 * result + posIters;
+        result = 31 * result + velIters;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + updateHz + "Hz, " + posIters + " pos iters, " + velIters + " vel iters)";
+    }
+}
@@ -0,0 +1,80 @@
+package edu.cmu.cs.graphics.hopper.problems;
+
+import edu.cmu.cs.graphics.hopper.control.AvatarDefinition;
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.eval.Evaluator;
+import edu.cmu.cs.graphics.hopper.eval.EvaluatorDefinition;
+
+import java.util.List;
+
+/** Tallies how often pass/fail outcomes of the same control on the same problem flip between two sim profiles
+ * (a "test" profile, eg: screening, and a "reference" profile, eg: verify). Useful for judging how far sim fidelity can
+ * be lowered before lower-fidelity results stop being trustworthy. Safe for use by multiple threads. */
+public class SimProfileAgreement {
+    final SimProfile testProfile;
+    final SimProfile refProfile;
+
+    int numPassPass;
+    int numPassFail;        //passed under test profile, failed under reference
+    int numFailPass;        //failed under test profile, passed under reference
+    int numFailFail;
+
+    public SimProfileAgreement(SimProfile testProfile, SimProfile refProfile) {
+        this.testProfile = testProfile;
+        this.refProfile = refProfile;
+    }
+
+    /** Runs every given control on every given problem under both profiles & returns the resulting agreement */
+    public static SimProfileAgreement compare(List<ProblemDefinition> problems, List<? extends ControlProviderDefinition<?>> controls,
+                                              AvatarDefinition avatarDef, EvaluatorDefinition evalDef,
+                                              SimProfile testProfile, SimProfile refProfile) {
+        SimProfileAgreement agreement = new SimProfileAgreement(testProfile, refProfile);
+        for (ProblemDefinition problemDef : problems) {
+            for (ControlProviderDefinition<?> control : controls) {
+                Evaluator.Status testStatus = run(problemDef, avatarDef, evalDef, control, testProfile);
+                Evaluator.Status refStatus = run(problemDef, avatarDef, evalDef, control, refProfile);
+                agreement.record(testStatus, refStatus);
+            }
+        }
+        return agreement;
+    }
+
+    private static Evaluator.Status run(ProblemDefinition problemDef, AvatarDefinition avatarDef, EvaluatorDefinition evalDef,
+                                        ControlProviderDefinition<?> control, SimProfile profile) {
+        ProblemInstance problem = new ProblemInstance(problemDef, avatarDef, evalDef, control);
+        problem.setSimProfile(profile);
+        problem.init();
+        problem.run();
+        return problem.getStatus();
+    }
+
+    /** Records outcome of a single control/problem pair under each profile */
+    public synchronized void record(Evaluator.Status testStatus, Evaluator.Status refStatus) {
+        boolean testPassed = (testStatus == Evaluator.Status.SUCCESS);
+        boolean refPassed = (refStatus == Evaluator.Status.SUCCESS);
+        if (testPassed && refPassed) numPassPass++;
+        else if (testPassed) numPassFail++;
+        else if (refPassed) numFailPass++;
+        else numFailFail++;
+    }
+
+    public SimProfile getTestProfile() {return testProfile;}
+    public SimProfile getRefProfile() {return refProfile;}
+
+    public synchronized int getNumPairs() {return numPassPass + numPassFail + numFailPass + numFailFail;}
+    public synchronized int getNumFlips() {return numPassFail + numFailPass;}
+    public synchronized int getNumPassFail() {return numPassFail;}
+    public synchronized int getNumFailPass() {return numFailPass;}
+
+    /** Returns fraction of all recorded pairs whose outcome flipped (0 if none recorded) */
+    public synchronized float getFlipRate() {
+        int numPairs = getNumPairs();
+        return (numPairs > 0) ? (float)getNumFlips() / numPairs : 0.0f;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s vs %s: %d/%d outcomes flipped (%.2f%%); %d pass->fail, %d fail->pass",
+                testProfile.name, refProfile.name, getNumFlips(), getNumPairs(), 100.0f * getFlipRate(), numPassFail, numFailPass);
+    }
+}
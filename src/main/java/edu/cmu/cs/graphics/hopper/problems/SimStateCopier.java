@@ -0,0 +1,207 @@
+package edu.cmu.cs.graphics.hopper.problems;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Makes exact deep copies of live simulation state (worlds, avatars, evaluators).
+ * Box2D keeps a lot of hidden state that affects later steps (warm-starting impulses on joints & contacts, broadphase
+ * tree layout, contact ordering, etc.), none of which can be restored through its public API, so a checkpointed sim
+ * can only resume bit-for-bit identically from a complete copy of its object graph.
+ * Copies are made field-by-field through reflection; copied objects are created without running their constructors,
+ * via the JDK's serialization constructor factory (sun.reflect.ReflectionFactory, looked up reflectively). If a JVM
+ * doesn't offer that, isSupported() returns false & copy() throws, so callers should check first (copying is only used
+ * by opt-in features: sim checkpoints & world sampling).
+ * Objects registered via share() or substitute() aren't copied (eg: immutable definitions, or the problem instance
+ * that owns the copied state).
+ * A copier is meant for a single copy operation (objects copied via multiple copy() calls on it share references). */
+final class SimStateCopier {
+    private static final Object reflectionFactory;
+    private static final Method newConstructorForSerialization;
+    private static final Constructor<Object> objectConstructor;
+    static {
+        Object factory = null;
+        Method method = null;
+        Constructor<Object> constructor = null;
+        try {
+            Class<?> factoryClass = Class.forName("sun.reflect.ReflectionFactory");
+            factory = factoryClass.getMethod("getReflectionFactory").invoke(null);
+            method = factoryClass.getMethod("newConstructorForSerialization", Class.class, Constructor.class);
+            constructor = Object.class.getDeclaredConstructor();
+        }
+        catch (Exception error) {
+            factory = null;
+        }
+        reflectionFactory = factory;
+        newConstructorForSerialization = method;
+        objectConstructor = constructor;
+    }
+
+    /** Returns whether this JVM lets sim state be copied */
+    static boolean isSupported() {return reflectionFactory != null;}
+
+    /** Cached (non-static) fields of a class, & a constructor creating its instances without initializing them */
+    private static final class FieldLayout {
+        final Field[] fields;
+        final Constructor<?> constructor;
+
+        FieldLayout(Class<?> type) {
+            List<Field> fieldList = new ArrayList<Field>();
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        fieldList.add(field);
+                    }
+                }
+            }
+            fields = fieldList.toArray(new Field[fieldList.size()]);
+            try {
+                constructor = (Constructor<?>)newConstructorForSerialization.invoke(reflectionFactory, type, objectConstructor);
+                constructor.setAccessible(true);
+            }
+            catch (Exception error) {
+                throw new IllegalStateException("Can't copy sim state containing an instance of " + type.getName(), error);
+            }
+        }
+    }
+
+    private static final Map<Class<?>, FieldLayout> layouts = new ConcurrentHashMap<Class<?>, FieldLayout>();
+
+    //Source objects mapped to their copies (or to themselves, if shared)
+    private final IdentityHashMap<Object, Object> copies = new IdentityHashMap<Object, Object>();
+    private final List<Class<?>> sharedTypes = new ArrayList<Class<?>>();
+
+    /** Any instance of given type (or its subtypes) will be referenced by copies rather than copied itself */
+    public void shareInstancesOf(Class<?> type) {sharedTypes.add(type);}
+
+    /** Given object will be referenced as-is by copies */
+    public void share(Object obj) {substitute(obj, obj);}
+
+    /** References to src will be replaced with references to dst in copies */
+    public void substitute(Object src, Object dst) {
+        if (src != null)
+            copies.put(src, dst);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T copy(T src) {
+        return (T)copyObject(src);
+    }
+
+    private Object copyObject(Object src) {
+        if (src == null)
+            return null;
+        Object dst = copies.get(src);
+        if (dst != null)
+            return dst;
+
+        Class<?> type = src.getClass();
+        if (isImmutable(type) || isSharedType(type)) {
+            copies.put(src, src);
+            return src;
+        }
+
+        if (type.isArray())
+            return copyArray(src, type);
+
+        //Collections are rebuilt through their public API, since their internals aren't accessible
+        if (type == ArrayList.class) {
+            List<?> srcList = (List<?>)src;
+            List<Object> dstList = new ArrayList<Object>(srcList.size());
+            copies.put(src, dstList);
+            for (Object elem : srcList)
+                dstList.add(copyObject(elem));
+            return dstList;
+        }
+        if (type == HashMap.class) {
+            Map<?,?> srcMap = (Map<?,?>)src;
+            Map<Object, Object> dstMap = new HashMap<Object, Object>(srcMap.size() * 2);
+            copies.put(src, dstMap);
+            for (Map.Entry<?,?> entry : srcMap.entrySet())
+                dstMap.put(copyObject(entry.getKey()), copyObject(entry.getValue()));
+            return dstMap;
+        }
+        if (type.getName().startsWith("java."))
+            throw new IllegalStateException("Can't copy sim state containing an instance of " + type.getName());
+
+        if (!isSupported())
+            throw new IllegalStateException("Copying sim state isn't supported by this JVM");
+
+        FieldLayout layout = layouts.get(type);
+        if (layout == null) {
+            layout = new FieldLayout(type);
+            layouts.put(type, layout);
+        }
+        try {
+            dst = layout.constructor.newInstance();
+            copies.put(src, dst);
+            for (Field field : layout.fields) {
+                Class<?> fieldType = field.getType();
+                if (!fieldType.isPrimitive())
+                    field.set(dst, copyObject(field.get(src)));
+                else if (fieldType == float.class)
+                    field.setFloat(dst, field.getFloat(src));
+                else if (fieldType == int.class)
+                    field.setInt(dst, field.getInt(src));
+                else if (fieldType == boolean.class)
+                    field.setBoolean(dst, field.getBoolean(src));
+                else if (fieldType == double.class)
+                    field.setDouble(dst, field.getDouble(src));
+                else if (fieldType == long.class)
+                    field.setLong(dst, field.getLong(src));
+                else if (fieldType == short.class)
+                    field.setShort(dst, field.getShort(src));
+                else if (fieldType == byte.class)
+                    field.setByte(dst, field.getByte(src));
+                else
+                    field.setChar(dst, field.getChar(src));
+            }
+        }
+        catch (ReflectiveOperationException error) {
+            throw new IllegalStateException("Can't copy sim state containing an instance of " + type.getName(), error);
+        }
+        return dst;
+    }
+
+    private Object copyArray(Object src, Class<?> type) {
+        int length = Array.getLength(src);
+        Object dst = Array.newInstance(type.getComponentType(), length);
+        copies.put(src, dst);
+        if (type.getComponentType().isPrimitive()) {
+            System.arraycopy(src, 0, dst, 0, length);
+        }
+        else {
+            Object[] srcElems = (Object[])src;
+            Object[] dstElems = (Object[])dst;
+            for (int i = 0; i < length; i++)
+                dstElems[i] = copyObject(srcElems[i]);
+        }
+        return dst;
+    }
+
+    private boolean isSharedType(Class<?> type) {
+        for (int i = 0; i < sharedTypes.size(); i++) {
+            if (sharedTypes.get(i).isAssignableFrom(type))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isImmutable(Class<?> type) {
+        return type.isEnum() || (type.getSuperclass() != null && type.getSuperclass().isEnum()) ||
+                type == String.class || type == Integer.class || type == Float.class || type == Double.class ||
+                type == Long.class || type == Short.class || type == Byte.class || type == Character.class ||
+                type == Boolean.class || type == Class.class ||
+                //Unmodifiable views are only handed out by definitions, which are never mutated during a sim
+                type.getName().startsWith("java.util.Collections$Unmodifiable");
+    }
+}
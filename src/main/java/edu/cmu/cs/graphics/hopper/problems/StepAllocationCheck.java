@@ -0,0 +1,130 @@
+package edu.cmu.cs.graphics.hopper.problems;
+
+import edu.cmu.cs.graphics.hopper.control.BipedHopperControl;
+import edu.cmu.cs.graphics.hopper.control.BipedHopperDefinition;
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.eval.BipedObstacleEvaluatorDefinition;
+import edu.cmu.cs.graphics.hopper.eval.Evaluator;
+import edu.cmu.cs.graphics.hopper.eval.EvaluatorDefinition;
+import org.apache.commons.cli.*;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Random;
+
+/** Program that checks the sim step loop (ProblemInstance.update()) doesn't allocate in steady state, by measuring the
+ * bytes allocated by this thread (com.sun.management.ThreadMXBean.getThreadAllocatedBytes()) over the steps of each run
+ * after a warm-up. Box2D allocates a little whenever new contacts are made, so a small average is tolerated.
+ * Exits with status 1 if any run allocates more than maxBytesPerStep on average, so it can be used as a build gate.
+ * Usage: StepAllocationCheck [-numProblems n] [-numControls n] [-warmupSteps n] [-maxBytesPerStep b] [-seed n] */
+public class StepAllocationCheck {
+
+    private static final Logger log = LoggerFactory.getLogger(StepAllocationCheck.class);
+
+    public static void main(String[] args) {
+        DOMConfigurator.configure("config/log4j.xml");
+
+        Options options = new Options();
+        options.addOption("numProblems", true, "Number of problems to sim (default 2)");
+        options.addOption("numControls", true, "Number of control sequences to sim on each problem (default 3)");
+        options.addOption("warmupSteps", true, "Steps of each run (& of a first, unmeasured run) not measured (default 2000)");
+        options.addOption("maxBytesPerStep", true, "Max average bytes allocated per measured step (default 1.0)");
+        options.addOption("terrainMaxAmp", true, "Max terrain amplitude of generated problems (default 1.0)");
+        options.addOption("seed", true, "Random seed (default 12345)");
+
+        CommandLineParser parser = new GnuParser();
+        CommandLine cmd = null;
+        try {
+            cmd = parser.parse(options, args);
+        }
+        catch (ParseException parseError) {
+            log.error("Error occurred while parsing command line inputs");
+            parseError.printStackTrace();
+            return;
+        }
+
+        int numProblems = Integer.parseInt(cmd.getOptionValue("numProblems", "2"));
+        int numControls = Integer.parseInt(cmd.getOptionValue("numControls", "3"));
+        int warmupSteps = Integer.parseInt(cmd.getOptionValue("warmupSteps", "2000"));
+        double maxBytesPerStep = Double.parseDouble(cmd.getOptionValue("maxBytesPerStep", "1.0"));
+        float terrainMaxAmp = Float.parseFloat(cmd.getOptionValue("terrainMaxAmp", "1.0"));
+        long seed = Long.parseLong(cmd.getOptionValue("seed", "12345"));
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            log.error("This JVM can't measure per-thread allocation");
+            return;
+        }
+        com.sun.management.ThreadMXBean allocBean = (com.sun.management.ThreadMXBean)threadBean;
+        if (!allocBean.isThreadAllocatedMemorySupported()) {
+            log.error("This JVM can't measure per-thread allocation");
+            return;
+        }
+        allocBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        Random r = new Random(seed);
+        List<ControlProviderDefinition<BipedHopperControl>> ctrlDefs = WorldTemplateCheck.generateControls(numControls, r);
+        TerrainProblemGenerator generator = new TerrainProblemGenerator(TerrainProblemGenerator.DEFAULT_TERRAIN_LENGTH,
+                TerrainProblemGenerator.DEFAULT_TERRAIN_DELTA_X, new float[] {terrainMaxAmp});
+        List<ProblemDefinition> problemDefs = generator.generateInterleaved(numProblems, r);
+        BipedHopperDefinition avatarDef = new BipedHopperDefinition();
+        EvaluatorDefinition evalDef = new BipedObstacleEvaluatorDefinition(15.0f, generator.getTerrainEndX(), 1.0f, 3.0f);
+
+        //An unmeasured first run, so the step path is loaded & compiled before anything's measured
+        runSteps(new ProblemInstance(problemDefs.get(0), avatarDef, evalDef, ctrlDefs.get(0)), warmupSteps, -1, null, null);
+
+        int numOverBudget = 0;
+        double worstBytesPerStep = 0;
+        for (ProblemDefinition problemDef : problemDefs) {
+            for (ControlProviderDefinition<BipedHopperControl> ctrlDef : ctrlDefs) {
+                long[] measured = new long[2];
+                runSteps(new ProblemInstance(problemDef, avatarDef, evalDef, ctrlDef), warmupSteps, threadId, allocBean, measured);
+                if (measured[0] == 0)
+                    continue;
+                double bytesPerStep = measured[1]/(double)measured[0];
+                worstBytesPerStep = Math.max(worstBytesPerStep, bytesPerStep);
+                if (bytesPerStep > maxBytesPerStep) {
+                    numOverBudget++;
+                    log.warn("Problem " + problemDefs.indexOf(problemDef) + ", control " + ctrlDefs.indexOf(ctrlDef) + ": " +
+                             String.format("%.2f", bytesPerStep) + " bytes/step over " + measured[0] + " steps");
+                }
+            }
+        }
+        log.info("Worst run allocated " + String.format("%.3f", worstBytesPerStep) + " bytes/step (max " +
+                 maxBytesPerStep + "); " + numOverBudget + " of " + problemDefs.size()*ctrlDefs.size() + " runs over");
+        if (numOverBudget > 0)
+            System.exit(1);
+    }
+
+    //Sims problem to its end; steps after the first warmupSteps have their count & allocated bytes put in measured[]
+    static void runSteps(ProblemInstance problem, int warmupSteps, long threadId,
+                         com.sun.management.ThreadMXBean allocBean, long[] measured) {
+        problem.init();
+        float dt = 1.0f/problem.updateHz;
+        int step = 0;
+        while (step < warmupSteps && problem.getStatus() == Evaluator.Status.RUNNING) {
+            problem.update(dt, problem.velIters, problem.posIters);
+            step++;
+        }
+        if (allocBean == null) {
+            problem.run();
+            return;
+        }
+
+        long numSteps = 0;
+        long bytesBefore = allocBean.getThreadAllocatedBytes(threadId);
+        while (problem.getStatus() == Evaluator.Status.RUNNING) {
+            problem.update(dt, problem.velIters, problem.posIters);
+            numSteps++;
+        }
+        long bytesAfter = allocBean.getThreadAllocatedBytes(threadId);
+        problem.finish();
+        measured[0] = numSteps;
+        measured[1] = bytesAfter - bytesBefore;
+    }
+}
@@ -1,6 +1,7 @@
 package edu.cmu.cs.graphics.hopper.problems;
 
 import edu.cmu.cs.graphics.hopper.control.ControlProvider;
+import edu.cmu.cs.graphics.hopper.math.Fingerprint;
 import org.jbox2d.collision.shapes.ChainShape;
 import org.jbox2d.collision.shapes.PolygonShape;
 import org.jbox2d.common.Vec2;
@@ -57,6 +58,18 @@ public final class TerrainProblemDefinition extends ProblemDefinition {
         terrainBody.createFixture(shape, 0.0f);
     }
 
+    /** Returns height of the first terrain vertex beyond given x position (or of the flat ground, past the terrain's end) */
+    public float getNextVertexHeight(float x) {
+        float vertX = 0.0f;
+        for (int i = 0; i < heights.size(); i++) {
+            if (vertX > x)
+                return heights.get(i);
+            if (i < heights.size() - 1)
+                vertX += peakXDeltas.get(i);
+        }
+        return 0.0f;
+    }
+
     @Override
     public double[] getParamsArray() {
         int n = heights.size() + peakXDeltas.size();
@@ -88,6 +101,13 @@ public final class TerrainProblemDefinition extends ProblemDefinition {
         return s;
     }
 
+    @Override
+    public void addParamsLayout(Fingerprint.Hasher hasher, double[] params) {
+        //Params are the heights followed by the x deltas, so both lengths are needed to tell where one ends
+        hasher.add(heights.size());
+        hasher.add(peakXDeltas.size());
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -95,17 +115,13 @@ public final class TerrainProblemDefinition extends ProblemDefinition {
 
         TerrainProblemDefinition that = (TerrainProblemDefinition) o;
 
-        if (!heights.equals(that.heights)) return false;
-        if (!peakXDeltas.equals(that.peakXDeltas)) return false;
-
-        return true;
+        //Compare cached fingerprints rather than walking the (boxed) height lists
+        return getFingerprint().equals(that.getFingerprint());
     }
 
     @Override
     public int hashCode() {
-        int result = heights.hashCode();
-        result = 31 * result + peakXDeltas.hashCode();
-        return result;
+        return getFingerprint().hashCode();
     }
 }
 
@@ -0,0 +1,66 @@
+package edu.cmu.cs.graphics.hopper.problems;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Generates sets of random terrain problems: terrains of terrainLength vertices (after an initial "ground" vertex at
+ * height 0) spaced terrainDeltaX apart, with heights drawn uniformly from [0, maxAmp) (or 0, for negative amplitudes).
+ * Every program exploring or evaluating generated problem sets goes through here, so that given the same problem set
+ * properties they all work on exactly the same problems. */
+public class TerrainProblemGenerator {
+    //Terrain properties of the standard problem sets (see expconfigs/terrain_mag_big.properties), for programs which
+    //generate problems without a config
+    public static final int DEFAULT_TERRAIN_LENGTH = 5;
+    public static final float DEFAULT_TERRAIN_DELTA_X = 2.0f;
+    static final float[] DEFAULT_MAX_AMPS = {0.5f, 1.0f, 2.0f, 3.0f, 4.0f, 5.0f, 6.0f};
+
+    final int terrainLength;
+    final float terrainDeltaX;
+    final float[] maxAmps;
+
+    public TerrainProblemGenerator(int terrainLength, float terrainDeltaX, float[] maxAmps) {
+        this.terrainLength = terrainLength;
+        this.terrainDeltaX = terrainDeltaX;
+        this.maxAmps = maxAmps;
+    }
+
+    /** Creates generator of terrains of given length, spaced & scaled as in the standard problem sets */
+    public static TerrainProblemGenerator createDefault(int terrainLength) {
+        return new TerrainProblemGenerator(terrainLength, DEFAULT_TERRAIN_DELTA_X, DEFAULT_MAX_AMPS.clone());
+    }
+
+    public int getTerrainLength() {return terrainLength;}
+    public float getTerrainDeltaX() {return terrainDeltaX;}
+    /** Returns x coordinate of the end of generated terrains */
+    public float getTerrainEndX() {return terrainLength * terrainDeltaX;}
+
+    /** Returns numProblems problems for each max amplitude in turn. Each amplitude's problems are drawn from a Random
+     * seeded with the same seed, so problems at the same index of different amplitudes differ only in scale. */
+    public List<ProblemDefinition> generate(int numProblems, long seed) {
+        List<ProblemDefinition> problems = new ArrayList<ProblemDefinition>(numProblems * maxAmps.length);
+        for (float maxAmp : maxAmps) {
+            Random r = new Random(seed);
+            for (int i = 0; i < numProblems; i++)
+                problems.add(createTerrain(maxAmp, r));
+        }
+        return problems;
+    }
+
+    /** Returns numProblems problems, cycling through the max amplitudes, all drawn from r */
+    public List<ProblemDefinition> generateInterleaved(int numProblems, Random r) {
+        List<ProblemDefinition> problems = new ArrayList<ProblemDefinition>(numProblems);
+        for (int i = 0; i < numProblems; i++)
+            problems.add(createTerrain(maxAmps[i % maxAmps.length], r));
+        return problems;
+    }
+
+    /** Returns a single terrain with heights in [0, maxAmp), drawn from r */
+    public TerrainProblemDefinition createTerrain(float maxAmp, Random r) {
+        List<Float> verts = new ArrayList<Float>(terrainLength + 1);
+        verts.add(0.0f);      //initial "ground" node
+        for (int j = 0; j < terrainLength; j++)
+            verts.add(Math.max(maxAmp*r.nextFloat(), 0.0f));
+        return new TerrainProblemDefinition(verts, terrainDeltaX);
+    }
+}
@@ -0,0 +1,155 @@
+package edu.cmu.cs.graphics.hopper.problems;
+
+import edu.cmu.cs.graphics.hopper.control.AvatarDefinition;
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import org.jbox2d.callbacks.ContactListener;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyType;
+import org.jbox2d.dynamics.World;
+
+/** Records the state of a world at regular sim time intervals in a compact form, such that a World can be rebuilt
+ * for any retained sample on demand (for debugging/reviewing runs).
+ * A copy of the world is kept once at the start of each run, after which each sample only holds the transforms &
+ * velocities of the world's non-static bodies. Samples are kept in a ring buffer of fixed capacity, so the oldest ones
+ * are dropped once it's full. Samples from earlier runs (since the last clear()) are kept too, each tied to its run's
+ * initial world. */
+public class WorldSampler {
+    static final int FLOATS_PER_BODY = 6;  //x, y, angle, linear vel x, linear vel y, angular vel
+
+    /** Copy of a world at the start of a run, from which that run's samples are rebuilt */
+    static final class BaseWorld {
+        final World world;
+        final int numBodies;       //non-static bodies
+
+        BaseWorld(World world, int numBodies) {
+            this.world = world;
+            this.numBodies = numBodies;
+        }
+    }
+
+    final float sampleInterval;
+    final BaseWorld[] sampleBases;
+    final float[] sampleTimes;
+    final float[][] sampleStates;
+    int numSamples;
+    int nextSampleIdx;            //ring buffer slot to be written next
+
+    BaseWorld currBase;
+    float lastSampleTime;
+    boolean sampledSinceBegin;
+
+    /** Creates a sampler which samples every sampleInterval secs of sim time & retains up to capacity samples */
+    public WorldSampler(float sampleInterval, int capacity) {
+        this.sampleInterval = sampleInterval;
+        this.sampleBases = new BaseWorld[capacity];
+        this.sampleTimes = new float[capacity];
+        this.sampleStates = new float[capacity][];
+    }
+
+    public int getNumSamples() {return numSamples;}
+
+    /** Returns sim time (within its run) of sample at given index (0 is oldest retained sample) */
+    public float getSampleTime(int sampleIdx) {return sampleTimes[toSlot(sampleIdx)];}
+
+    /** Drops all samples */
+    public void clear() {
+        for (int i = 0; i < sampleBases.length; i++) {
+            sampleBases[i] = null;
+            sampleStates[i] = null;
+        }
+        numSamples = 0;
+        nextSampleIdx = 0;
+        currBase = null;
+    }
+
+    /** Starts sampling a new run in given world (which should be fully set up, but not yet stepped) */
+    public void begin(World world) {
+        //Listener (ie: the owning problem instance) isn't part of the world's state, so it's detached from the copy
+        SimStateCopier copier = new SimStateCopier();
+        copier.shareInstancesOf(ContactListener.class);
+        copier.shareInstancesOf(ProblemDefinition.class);
+        copier.shareInstancesOf(AvatarDefinition.class);
+        copier.shareInstancesOf(ControlProviderDefinition.class);
+        World baseWorld = copier.copy(world);
+        baseWorld.setContactListener(null);
+        currBase = new BaseWorld(baseWorld, countDynamicBodies(world));
+        sampledSinceBegin = false;
+    }
+
+    /** Stores a sample of given world if at least the sample interval has passed since the last one this run */
+    public void update(float simTime, World world) {
+        if (currBase == null || (sampledSinceBegin && (simTime - lastSampleTime) < sampleInterval))
+            return;
+
+        int slot = nextSampleIdx;
+        float[] state = sampleStates[slot];
+        int stateLength = currBase.numBodies * FLOATS_PER_BODY;
+        if (state == null || state.length != stateLength) {
+            state = new float[stateLength];
+            sampleStates[slot] = state;
+        }
+
+        int i = 0;
+        for (Body body = world.getBodyList(); body != null && i < stateLength; body = body.getNext()) {
+            if (body.getType() == BodyType.STATIC)
+                continue;
+            Vec2 pos = body.getPosition();
+            Vec2 vel = body.getLinearVelocity();
+            state[i++] = pos.x;
+            state[i++] = pos.y;
+            state[i++] = body.getAngle();
+            state[i++] = vel.x;
+            state[i++] = vel.y;
+            state[i++] = body.getAngularVelocity();
+        }
+        sampleBases[slot] = currBase;
+        sampleTimes[slot] = simTime;
+
+        nextSampleIdx = (slot + 1) % sampleBases.length;
+        numSamples = Math.min(numSamples + 1, sampleBases.length);
+        lastSampleTime = simTime;
+        sampledSinceBegin = true;
+    }
+
+    /** Returns a new World rebuilt from sample at given index (0 is oldest retained sample), or null if there's no
+     * such sample. The world is independent of the sampled one, so do with it what you will.
+     * NOTE: Only body states are restored; solver warm-starting & contact state come from the start of the run. */
+    public World getWorld(int sampleIdx) {
+        if (sampleIdx < 0 || sampleIdx >= numSamples)
+            return null;
+        int slot = toSlot(sampleIdx);
+        float[] state = sampleStates[slot];
+
+        World world = new SimStateCopier().copy(sampleBases[slot].world);
+        int i = 0;
+        Vec2 pos = new Vec2();
+        Vec2 vel = new Vec2();
+        for (Body body = world.getBodyList(); body != null && i < state.length; body = body.getNext()) {
+            if (body.getType() == BodyType.STATIC)
+                continue;
+            pos.set(state[i], state[i + 1]);
+            body.setTransform(pos, state[i + 2]);
+            vel.set(state[i + 3], state[i + 4]);
+            body.setLinearVelocity(vel);
+            body.setAngularVelocity(state[i + 5]);
+            body.setAwake(true);
+            i += FLOATS_PER_BODY;
+        }
+        return world;
+    }
+
+    private int toSlot(int sampleIdx) {
+        int oldestSlot = (numSamples < sampleBases.length) ? 0 : nextSampleIdx;
+        return (oldestSlot + sampleIdx) % sampleBases.length;
+    }
+
+    private static int countDynamicBodies(World world) {
+        int numBodies = 0;
+        for (Body body = world.getBodyList(); body != null; body = body.getNext()) {
+            if (body.getType() != BodyType.STATIC)
+                numBodies++;
+        }
+        return numBodies;
+    }
+}
@@ -0,0 +1,82 @@
+package edu.cmu.cs.graphics.hopper.problems;
+
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.World;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Keeps prebuilt worlds containing only the static geometry (problem terrain/obstacles & ground) of recently
+ * used problem definitions, so that repeated problem instance runs on the same problem don't have to allocate a new
+ * World & rebuild its static shapes every time.
+ * A template is checked out by a single problem instance at a time (see ProblemInstance.setWorldTemplates()) and is
+ * returned once that instance is released, with all of its dynamic bodies destroyed. Safe for use by multiple threads.
+ * NOTE: Templates build the avatar into a world that already holds the static geometry (fresh worlds build it first),
+ * so sims in templates only match sims in fresh worlds because Box2D's results don't depend on that ordering here;
+ * WorldTemplateCheck compares their step-by-step trajectories, & should be re-run after changing either. */
+public class WorldTemplateCache {
+    /** A world holding the static geometry for a single problem definition */
+    public static final class WorldTemplate {
+        final ProblemDefinition problemDef;
+        final World world;
+        final Body groundBody;
+
+        WorldTemplate(ProblemDefinition problemDef, World world, Body groundBody) {
+            this.problemDef = problemDef;
+            this.world = world;
+            this.groundBody = groundBody;
+        }
+    }
+
+    //Idle templates for each problem, with least recently used problems evicted once we hold too many
+    final LinkedHashMap<ProblemDefinition, Deque<WorldTemplate>> idleTemplates;
+    final int maxProblems;
+
+    int numTemplatesBuilt;
+    int numTemplatesReused;
+
+    /** Creates a cache which keeps idle templates for at most maxProblems distinct problem definitions */
+    public WorldTemplateCache(int maxProblems) {
+        this.maxProblems = maxProblems;
+        this.idleTemplates = new LinkedHashMap<ProblemDefinition, Deque<WorldTemplate>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ProblemDefinition, Deque<WorldTemplate>> eldest) {
+                return size() > WorldTemplateCache.this.maxProblems;
+            }
+        };
+    }
+
+    public synchronized int getNumTemplatesBuilt() {return numTemplatesBuilt;}
+    public synchronized int getNumTemplatesReused() {return numTemplatesReused;}
+
+    /** Returns an idle template for given problem (building a new one if none is available).
+     * The caller has exclusive use of the template's world until it's given back via release(). */
+    public WorldTemplate acquire(ProblemDefinition problemDef) {
+        synchronized (this) {
+            Deque<WorldTemplate> templates = idleTemplates.get(problemDef);
+            if (templates != null && !templates.isEmpty()) {
+                numTemplatesReused++;
+                return templates.pop();
+            }
+            numTemplatesBuilt++;
+        }
+
+        //Build outside the lock so other threads aren't held up by world creation
+        World world = ProblemInstance.createWorld();
+        Body groundBody = ProblemInstance.createStaticGeometry(world, problemDef);
+        return new WorldTemplate(problemDef, world, groundBody);
+    }
+
+    /** Returns template to the idle pool. All non-static bodies (and, with them, their joints & contacts)
+     * must already have been removed from the template's world. */
+    public synchronized void release(WorldTemplate template) {
+        Deque<WorldTemplate> templates = idleTemplates.get(template.problemDef);
+        if (templates == null) {
+            templates = new ArrayDeque<WorldTemplate>();
+            idleTemplates.put(template.problemDef, templates);
+        }
+        templates.push(template);
+    }
+}
@@ -0,0 +1,146 @@
+package edu.cmu.cs.graphics.hopper.problems;
+
+import edu.cmu.cs.graphics.hopper.control.BipedHopperControl;
+import edu.cmu.cs.graphics.hopper.control.BipedHopperDefinition;
+import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
+import edu.cmu.cs.graphics.hopper.eval.BipedObstacleEvaluatorDefinition;
+import edu.cmu.cs.graphics.hopper.eval.Evaluator;
+import edu.cmu.cs.graphics.hopper.eval.EvaluatorDefinition;
+import org.apache.commons.cli.*;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.jbox2d.dynamics.Body;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Program that checks sims run in worlds taken from a WorldTemplateCache follow exactly the same trajectories as sims
+ * run in freshly built worlds. A template world has its static geometry built before the avatar (& reused templates
+ * hand the avatar broadphase proxies freed by earlier avatars), while fresh worlds build the avatar first, so this
+ * records every body's position, angle & velocities (as raw float bits) at every step of both & compares them.
+ * Each problem/control pair is run several times, so most template runs are in reused templates.
+ * Usage: WorldTemplateCheck [-numProblems n] [-numControls n] [-numRepeats n] [-terrainMaxAmp a] [-seed n] */
+public class WorldTemplateCheck {
+
+    private static final Logger log = LoggerFactory.getLogger(WorldTemplateCheck.class);
+
+    static final int CONTROLS_PER_SEQUENCE = 6;
+
+    public static void main(String[] args) {
+        DOMConfigurator.configure("config/log4j.xml");
+
+        Options options = new Options();
+        options.addOption("numProblems", true, "Number of problems to sim (default 8)");
+        options.addOption("numControls", true, "Number of control sequences to sim on each problem (default 6)");
+        options.addOption("numRepeats", true, "Number of times each problem/control pair is simmed (default 2)");
+        options.addOption("terrainMaxAmp", true, "Max terrain amplitude of generated problems (default 1.0)");
+        options.addOption("seed", true, "Random seed (default 12345)");
+
+        CommandLineParser parser = new GnuParser();
+        CommandLine cmd = null;
+        try {
+            cmd = parser.parse(options, args);
+        }
+        catch (ParseException parseError) {
+            log.error("Error occurred while parsing command line inputs");
+            parseError.printStackTrace();
+            return;
+        }
+
+        int numProblems = Integer.parseInt(cmd.getOptionValue("numProblems", "8"));
+        int numControls = Integer.parseInt(cmd.getOptionValue("numControls", "6"));
+        int numRepeats = Integer.parseInt(cmd.getOptionValue("numRepeats", "2"));
+        float terrainMaxAmp = Float.parseFloat(cmd.getOptionValue("terrainMaxAmp", "1.0"));
+        long seed = Long.parseLong(cmd.getOptionValue("seed", "12345"));
+
+        Random r = new Random(seed);
+        List<ControlProviderDefinition<BipedHopperControl>> ctrlDefs = generateControls(numControls, r);
+        TerrainProblemGenerator generator = new TerrainProblemGenerator(TerrainProblemGenerator.DEFAULT_TERRAIN_LENGTH,
+                TerrainProblemGenerator.DEFAULT_TERRAIN_DELTA_X, new float[] {terrainMaxAmp});
+        List<ProblemDefinition> problemDefs = generator.generateInterleaved(numProblems, r);
+        BipedHopperDefinition avatarDef = new BipedHopperDefinition();
+        EvaluatorDefinition evalDef = new BipedObstacleEvaluatorDefinition(15.0f, generator.getTerrainEndX(), 1.0f, 3.0f);
+        WorldTemplateCache templates = new WorldTemplateCache(1);
+
+        int numRuns = 0;
+        int numDiverged = 0;
+        long numSteps = 0;
+        for (int i = 0; i < numProblems; i++) {
+            ProblemDefinition problemDef = problemDefs.get(i);
+            for (int repeat = 0; repeat < numRepeats; repeat++) {
+                for (ControlProviderDefinition<BipedHopperControl> ctrlDef : ctrlDefs) {
+                    List<Long> fresh = recordTrajectory(new ProblemInstance(problemDef, avatarDef, evalDef, ctrlDef));
+                    ProblemInstance problem = new ProblemInstance(problemDef, avatarDef, evalDef, ctrlDef);
+                    problem.setWorldTemplates(templates);
+                    List<Long> templated = recordTrajectory(problem);
+
+                    int divergedStep = firstDifference(fresh, templated);
+                    if (divergedStep >= 0) {
+                        numDiverged++;
+                        log.warn("Problem " + i + ", control " + ctrlDefs.indexOf(ctrlDef) + ", repeat " + repeat +
+                                 ": trajectories diverge at step " + divergedStep + " (of " + fresh.size() + " fresh, " +
+                                 templated.size() + " templated)");
+                    }
+                    numRuns++;
+                    numSteps += fresh.size();
+                }
+            }
+        }
+        log.info("Compared " + numRuns + " runs (" + numSteps + " steps; " + templates.getNumTemplatesBuilt() +
+                 " templates built, " + templates.getNumTemplatesReused() + " reused): " + numDiverged + " diverged");
+    }
+
+    //Sims problem to its end, returning a hash of the raw state of the avatar's bodies after each step
+    @SuppressWarnings("unchecked")
+    static List<Long> recordTrajectory(ProblemInstance problem) {
+        List<Long> trajectory = new ArrayList<Long>();
+        problem.init();
+        float dt = 1.0f/problem.updateHz;
+        while (problem.getStatus() == Evaluator.Status.RUNNING) {
+            problem.update(dt, problem.velIters, problem.posIters);
+            long hash = 17;
+            List<Body> bodies = problem.getAvatar().getBodies();
+            for (Body body : bodies) {
+                hash = 31*hash + Float.floatToRawIntBits(body.getPosition().x);
+                hash = 31*hash + Float.floatToRawIntBits(body.getPosition().y);
+                hash = 31*hash + Float.floatToRawIntBits(body.getAngle());
+                hash = 31*hash + Float.floatToRawIntBits(body.getLinearVelocity().x);
+                hash = 31*hash + Float.floatToRawIntBits(body.getLinearVelocity().y);
+                hash = 31*hash + Float.floatToRawIntBits(body.getAngularVelocity());
+            }
+            trajectory.add(hash);
+        }
+        problem.finish();
+        problem.release();
+        return trajectory;
+    }
+
+    //Returns first step at which given trajectories differ, or -1 if they're identical
+    static int firstDifference(List<Long> a, List<Long> b) {
+        int length = Math.min(a.size(), b.size());
+        for (int i = 0; i < length; i++) {
+            if (!a.get(i).equals(b.get(i)))
+                return i;
+        }
+        return (a.size() == b.size()) ? -1 : length;
+    }
+
+    static List<ControlProviderDefinition<BipedHopperControl>> generateControls(int numControls, Random r) {
+        List<ControlProviderDefinition<BipedHopperControl>> ctrlDefs =
+                new ArrayList<ControlProviderDefinition<BipedHopperControl>>(numControls);
+        for (int i = 0; i < numControls; i++) {
+            List<BipedHopperControl> controls = new ArrayList<BipedHopperControl>(CONTROLS_PER_SEQUENCE);
+            for (int j = 0; j < CONTROLS_PER_SEQUENCE; j++) {
+                BipedHopperControl control = new BipedHopperControl();
+                control.targetBodyVelX = 0.5f + 3.0f*r.nextFloat();
+                control.activeThrustDelta = 0.1f + 0.6f*r.nextFloat();
+                control.targetBodyPitch = 0.3f*(r.nextFloat() - 0.5f);
+                controls.add(control);
+            }
+            ctrlDefs.add(new ControlProviderDefinition<BipedHopperControl>(controls));
+        }
+        return ctrlDefs;
+    }
+}
@@ -6,10 +6,10 @@ import edu.cmu.cs.graphics.hopper.control.ControlProviderDefinition;
 import edu.cmu.cs.graphics.hopper.eval.BipedObstacleEvaluatorDefinition;
 import edu.cmu.cs.graphics.hopper.eval.Evaluator;
 import edu.cmu.cs.graphics.hopper.eval.EvaluatorDefinition;
+import edu.cmu.cs.graphics.hopper.explore.ConfigUtils;
 import edu.cmu.cs.graphics.hopper.net.*;
 import edu.cmu.cs.graphics.hopper.problems.ProblemDefinition;
 import edu.cmu.cs.graphics.hopper.problems.ProblemInstance;
-import edu.cmu.cs.graphics.hopper.problems.TerrainProblemDefinition;
 import org.apache.commons.cli.*;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
@@ -19,9 +19,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 /** Program that can load a hopper problem, obtain a predicted control, and reports the result
  * to a crowdanim control server*/
@@ -68,37 +66,10 @@ public class RetrievalTest {
             return;
         }
 
-        int numProblems = config.getInt("numProblems");
-        int terrainSeed = config.getInt("terrainSeed");
-        int terrainLength = config.getInt("terrainLength");
-        float terrainDeltaX = config.getFloat("terrainDeltaX");
-        String[] terrainMaxAmpStrs = config.getStringArray("terrainMaxAmp");
-        float[] terrainMaxAmps = new float[terrainMaxAmpStrs.length];
-        for (int i = 0; i < terrainMaxAmps.length; i++)
-            terrainMaxAmps[i] = Float.parseFloat(terrainMaxAmpStrs[i]);
-
         long t0 = System.currentTimeMillis();
 
-        List<ProblemDefinition> problems = new ArrayList<ProblemDefinition>();
-
         //Terrain test
-        for (int ampIdx = 0; ampIdx < terrainMaxAmps.length; ampIdx++) {
-            float terrainMaxAmp = terrainMaxAmps[ampIdx];
-            Random r = new Random();
-            r.setSeed(terrainSeed);
-            for (int i = 0; i < numProblems; i++) {
-                float y = 0.0f;
-                List<Float> verts = new ArrayList<Float>(terrainLength);
-                verts.add(0.0f);      //initial "ground" node
-                for (int j = 0; j < terrainLength; j++) {
-                    y = terrainMaxAmp*(r.nextFloat());
-                    if (y < 0)
-                        y = 0;
-                    verts.add(y);
-                }
-                problems.add(new TerrainProblemDefinition(verts, terrainDeltaX));
-            }
-        }
+        List<ProblemDefinition> problems = ConfigUtils.createProblems(config);
 
         ContolServerInterface server = new ContolServerInterface("gs13099.sp.cs.cmu.edu", 8081);
         server.sendTestMsg();
@@ -106,7 +77,7 @@ public class RetrievalTest {
         AvatarDefinition avatarDef = new BipedHopperDefinition();
 
         float maxTime = 15.0f;
-        float minXForSuccess = terrainLength * terrainDeltaX;
+        float minXForSuccess = ConfigUtils.createTerrainGenerator(config).getTerrainEndX();
         float maxUprightDeviation = 1.0f;
         float minConsecutiveUprightTimeAfterMinXReached = 3.0f;
         EvaluatorDefinition evalDef = new BipedObstacleEvaluatorDefinition(maxTime, minXForSuccess, maxUprightDeviation, minConsecutiveUprightTimeAfterMinXReached);